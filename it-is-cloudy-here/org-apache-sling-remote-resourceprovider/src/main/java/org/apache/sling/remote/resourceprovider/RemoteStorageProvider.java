@@ -18,6 +18,8 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package org.apache.sling.remote.resourceprovider;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
@@ -116,6 +118,64 @@ public interface RemoteStorageProvider {
     @Nullable
     Directory getDirectory(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo);
 
+    /**
+     * Retrieves the {@link File}s identified by multiple {@code references}. The default implementation calls
+     * {@link #getFile(RemoteResourceReference, Map)} for each reference.
+     *
+     * @param references         the file references
+     * @param authenticationInfo the authentication information
+     * @return a map from the storage paths of the references for which a file was found to their files, iterating in the order of
+     * {@code references}
+     * @since 1.1.0
+     */
+    @NotNull
+    default Map<String, File> getFiles(@NotNull Collection<RemoteResourceReference> references,
+                                       @NotNull Map<String, Object> authenticationInfo) {
+        Map<String, File> files = new LinkedHashMap<>();
+        for (RemoteResourceReference reference : references) {
+            File file = getFile(reference, authenticationInfo);
+            if (file != null) {
+                files.put(reference.getPath(), file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Retrieves the {@link Directory} objects identified by multiple {@code references}. The default implementation calls
+     * {@link #getDirectory(RemoteResourceReference, Map)} for each reference.
+     *
+     * @param references         the directory references
+     * @param authenticationInfo the authentication information
+     * @return a map from the storage paths of the references for which a directory was found to their directories, iterating in the
+     * order of {@code references}
+     * @since 1.1.0
+     */
+    @NotNull
+    default Map<String, Directory> getDirectories(@NotNull Collection<RemoteResourceReference> references,
+                                                  @NotNull Map<String, Object> authenticationInfo) {
+        Map<String, Directory> directories = new LinkedHashMap<>();
+        for (RemoteResourceReference reference : references) {
+            Directory directory = getDirectory(reference, authenticationInfo);
+            if (directory != null) {
+                directories.put(reference.getPath(), directory);
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Indicates if {@code this RemoteStorageProvider} implements {@link #getFiles(Collection, Map)} and
+     * {@link #getDirectories(Collection, Map)} with real batch requests to its storage. When it does, the associated
+     * {@link org.apache.sling.spi.resource.provider.ResourceProvider} will prefer them over resolving items one by one in parallel.
+     *
+     * @return {@code true} if batch requests are supported, {@code false} otherwise
+     * @since 1.1.0
+     */
+    default boolean supportsBatchRequests() {
+        return false;
+    }
+
     /**
      * Indicates if {@code this RemoteStorageProvider} is read only or not. If a
      * {@link org.apache.sling.spi.resource.provider.ResourceProvider} should be associated to {@code this} {@code RemoteStorageProvider},
@@ -115,6 +115,20 @@ public final class CacheableResource extends AbstractResource {
         this.children = children;
     }
 
+    /**
+     * Checks if {@code other} describes the same version of this resource, disregarding the children.
+     */
+    boolean hasSameContent(CacheableResource other) {
+        return other != null &&
+                Objects.equals(this.path, other.path) &&
+                Objects.equals(this.resourceType, other.resourceType) &&
+                Objects.equals(this.resourceSuperType, other.resourceSuperType) &&
+                Objects.equals(this.remoteStorageProvider, other.remoteStorageProvider) &&
+                Objects.equals(this.remoteResourceReference.getRevision(), other.remoteResourceReference.getRevision()) &&
+                Objects.equals(this.resourceMetadata, other.resourceMetadata) &&
+                Objects.equals(this.valueMap, other.valueMap);
+    }
+
     @Override
     public int hashCode() {
         return super.hashCode();
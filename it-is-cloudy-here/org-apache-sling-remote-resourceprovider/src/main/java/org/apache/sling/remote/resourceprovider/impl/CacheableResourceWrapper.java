@@ -42,12 +42,15 @@ class CacheableResourceWrapper extends ResourceWrapper {
 
     private final ResolveContext<RemoteResourceProviderContext> context;
     private final CacheableResource resource;
+    private final DiskBinaryCache binaryCache;
     private final ResourceMetadata resourceMetadata;
 
-    CacheableResourceWrapper(@NotNull ResolveContext<RemoteResourceProviderContext> context, @NotNull CacheableResource resource) {
+    CacheableResourceWrapper(@NotNull ResolveContext<RemoteResourceProviderContext> context, @NotNull CacheableResource resource,
+                             @NotNull DiskBinaryCache binaryCache) {
         super(resource);
         this.context = context;
         this.resource = resource;
+        this.binaryCache = binaryCache;
         resourceMetadata = (ResourceMetadata) resource.getResourceMetadata().clone();
     }
 
@@ -88,7 +91,7 @@ class CacheableResourceWrapper extends ResourceWrapper {
             File file = resource.getRemoteStorageProvider().getFile(remoteResourceReference, authenticationInfo);
             if (file != null) {
                 try {
-                    return (AdapterType) file.getInputStream();
+                    return (AdapterType) binaryCache.getInputStream(file);
                 } catch (IOException e) {
                     LOGGER.error(String.format("Unable to convert resource %s to an InputStream.", getPath()), e);
                 }
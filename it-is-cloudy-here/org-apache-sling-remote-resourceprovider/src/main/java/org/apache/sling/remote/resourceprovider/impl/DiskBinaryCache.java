@@ -0,0 +1,169 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.apache.sling.remote.resourceprovider.File;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size-bounded on-disk cache for the binary contents of remote files. Entries are keyed by the file's storage path and are only served as
+ * long as the file's revision (or last modified date, for providers without revisions) did not change.
+ */
+class DiskBinaryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskBinaryCache.class);
+    private static final long KB = 1024;
+
+    private final Path directory;
+    private final long maxSize;
+    private final Cache<String, Entry> internalCache;
+
+    /**
+     * Creates a cache storing its files in {@code directory}.
+     *
+     * @param directory the directory where the cached files are stored; it will be created if needed and removed by {@link #clear()}
+     * @param maxSize   the maximum size of the cache in bytes; 0 or a negative value disable the cache
+     */
+    DiskBinaryCache(@NotNull Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        internalCache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(maxSize / KB, 0))
+                .weigher((String key, Entry entry) -> weigh(entry.size))
+                .executor(Runnable::run)
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        delete(entry.file);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns a stream with the contents of {@code file}, downloading them from the remote storage only if no current copy is cached.
+     *
+     * @param file the remote file
+     * @return the binary contents of the file
+     * @throws IOException if the contents cannot be retrieved
+     */
+    @NotNull
+    InputStream getInputStream(@NotNull File file) throws IOException {
+        if (maxSize <= 0 || file.getSize() > maxSize) {
+            return file.getInputStream();
+        }
+        String storagePath = file.getPath();
+        String version = getVersion(file);
+        Entry entry = internalCache.getIfPresent(storagePath);
+        if (entry != null && entry.version.equals(version)) {
+            try {
+                return Channels.newInputStream(FileChannel.open(entry.file, StandardOpenOption.READ));
+            } catch (NoSuchFileException e) {
+                internalCache.asMap().remove(storagePath, entry);
+            }
+        }
+        Files.createDirectories(directory);
+        Path download = Files.createTempFile(directory, "download-", ".tmp");
+        try {
+            long size;
+            try (InputStream inputStream = file.getInputStream()) {
+                size = Files.copy(inputStream, download, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (size > maxSize) {
+                // the remote size was not accurate; don't let the file flush the whole cache
+                return Channels.newInputStream(FileChannel.open(download, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE));
+            }
+            Path target = Files.createTempFile(directory, "binary-", ".bin");
+            Files.move(download, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // open the channel before publishing the entry, so that an immediate eviction cannot pull the file from under us
+            FileChannel channel = FileChannel.open(target, StandardOpenOption.READ);
+            internalCache.put(storagePath, new Entry(version, target, size));
+            return Channels.newInputStream(channel);
+        } finally {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    void remove(@NotNull String storagePath) {
+        internalCache.invalidate(storagePath);
+    }
+
+    void clear() {
+        internalCache.invalidateAll();
+        internalCache.cleanUp();
+        // a disabled cache never wrote to its directory, which might be a shared one
+        if (maxSize > 0 && Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(this::delete);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Unable to clean up binary cache directory %s.", directory), e);
+            }
+        }
+    }
+
+    long size() {
+        return internalCache.estimatedSize();
+    }
+
+    @NotNull
+    private static String getVersion(@NotNull File file) {
+        String revision = file.getRevision();
+        return revision != null ? "r" + revision : "m" + file.getLastModified();
+    }
+
+    private static int weigh(long size) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, (size + KB - 1) / KB));
+    }
+
+    private void delete(@NotNull Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Unable to delete cached binary %s.", path), e);
+        }
+    }
+
+    private static final class Entry {
+        private final String version;
+        private final Path file;
+        private final long size;
+
+        private Entry(String version, Path file, long size) {
+            this.version = version;
+            this.file = file;
+            this.size = size;
+        }
+    }
+}
@@ -18,29 +18,110 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package org.apache.sling.remote.resourceprovider.impl;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 
 class InMemoryResourceCache {
 
-    private final Cache<String, CacheableResource> internalCache;
+    private final Cache<String, Entry> internalCache;
+    private final Ticker ticker;
+    private final boolean weighted;
+    private final long refreshAfterNanos;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong bytes = new AtomicLong();
 
     InMemoryResourceCache(int size, int lruMinutesExpiration) {
-        internalCache = Caffeine.newBuilder()
-                .maximumSize(size)
-                .expireAfterAccess(lruMinutesExpiration, TimeUnit.MINUTES)
+        this(Capacity.entries(size), lruMinutesExpiration);
+    }
+
+    InMemoryResourceCache(Capacity capacity, int lruMinutesExpiration) {
+        ticker = Ticker.systemTicker();
+        weighted = capacity.weighted;
+        refreshAfterNanos = -1;
+        internalCache = build(capacity, Caffeine.newBuilder().expireAfterAccess(lruMinutesExpiration, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Creates a stale-while-revalidate cache: entries older than {@code refreshAfter} are still served, but {@link #startRefresh(String)}
+     * will signal that they should be refreshed; entries older than {@code expireAfter} are removed.
+     */
+    InMemoryResourceCache(Capacity capacity, long refreshAfter, long expireAfter, TimeUnit unit) {
+        this(capacity, refreshAfter, expireAfter, unit, Ticker.systemTicker());
+    }
+
+    InMemoryResourceCache(Capacity capacity, long refreshAfter, long expireAfter, TimeUnit unit, Ticker ticker) {
+        this.ticker = ticker;
+        weighted = capacity.weighted;
+        refreshAfterNanos = unit.toNanos(refreshAfter);
+        internalCache = build(capacity, Caffeine.newBuilder().expireAfter(new WriteExpiry(unit.toNanos(expireAfter))).ticker(ticker));
+    }
+
+    private Cache<String, Entry> build(Capacity capacity, Caffeine<Object, Object> builder) {
+        // maintenance runs on the writing thread, so the weighted size and the running total are current after each write
+        builder.recordStats().executor(Runnable::run);
+        if (capacity.weighted) {
+            return builder.maximumWeight(capacity.value).weigher((String key, Entry entry) -> entry.weight).build();
+        }
+        return builder.maximumSize(capacity.value)
+                .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        bytes.addAndGet(-entry.bytes);
+                    }
+                })
                 .build();
     }
 
     CacheableResource get(String key) {
-        return internalCache.getIfPresent(key);
+        Entry entry = internalCache.getIfPresent(key);
+        return entry == null ? null : entry.resource;
     }
 
     void put(String key, CacheableResource value) {
-        internalCache.put(key, value);
+        long now = ticker.read();
+        internalCache.put(key, newEntry(value, now, now));
+    }
+
+    /**
+     * Marks the entry identified by {@code key} as fresh again, without replacing its value. The entry still expires once it is older
+     * than the hard expiration time, counted from when it was {@link #put(String, CacheableResource)}.
+     */
+    void touch(String key) {
+        internalCache.asMap().computeIfPresent(key,
+                (k, entry) -> newEntry(entry.resource, entry.bytes, entry.written, ticker.read()));
+    }
+
+    /**
+     * Updates the estimated size of the entry identified by {@code key}, after its value was modified in place (e.g. its children were
+     * set).
+     */
+    void updated(String key) {
+        internalCache.asMap().computeIfPresent(key, (k, entry) -> newEntry(entry.resource, entry.written, entry.refreshed));
+    }
+
+    /**
+     * Checks if the entry identified by {@code key} is stale and not already being refreshed. If this method returns {@code true}, the
+     * caller is responsible for refreshing the entry and for calling {@link #endRefresh(String)} afterwards.
+     */
+    boolean startRefresh(String key) {
+        if (refreshAfterNanos < 0) {
+            return false;
+        }
+        Entry entry = internalCache.getIfPresent(key);
+        return entry != null && ticker.read() - entry.refreshed >= refreshAfterNanos && refreshing.add(key);
+    }
+
+    void endRefresh(String key) {
+        refreshing.remove(key);
     }
 
     void clear() {
@@ -52,4 +133,104 @@ class InMemoryResourceCache {
         internalCache.invalidate(key);
     }
 
+    CacheStats stats() {
+        return internalCache.stats();
+    }
+
+    long size() {
+        return internalCache.estimatedSize();
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the cached resources: the weighted size of a memory bound cache, or a running
+     * total maintained on writes and removals otherwise.
+     */
+    long estimatedBytes() {
+        if (weighted) {
+            return internalCache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        }
+        return bytes.get();
+    }
+
+    private Entry newEntry(CacheableResource resource, long written, long refreshed) {
+        return newEntry(resource, ResourceSizeEstimator.estimate(resource), written, refreshed);
+    }
+
+    private Entry newEntry(CacheableResource resource, long size, long written, long refreshed) {
+        if (!weighted) {
+            bytes.addAndGet(size);
+        }
+        return new Entry(resource, written, refreshed, size, weighted ? (int) Math.min(Integer.MAX_VALUE, size) : 1);
+    }
+
+    /**
+     * The bound of a cache, either as a number of entries or as an estimated number of bytes retained by the entries.
+     */
+    static final class Capacity {
+
+        private final long value;
+        private final boolean weighted;
+
+        private Capacity(long value, boolean weighted) {
+            this.value = value;
+            this.weighted = weighted;
+        }
+
+        static Capacity entries(long entries) {
+            return new Capacity(entries, false);
+        }
+
+        static Capacity megabytes(long megabytes) {
+            return new Capacity(megabytes * 1024 * 1024, true);
+        }
+    }
+
+    /**
+     * Expires entries a fixed time after they were written through {@link #put(String, CacheableResource)}; unlike
+     * {@code expireAfterWrite}, {@link #touch(String)} and {@link #updated(String)} do not extend their lifetime.
+     */
+    private static final class WriteExpiry implements Expiry<Object, Object> {
+
+        private final long expireAfterNanos;
+
+        private WriteExpiry(long expireAfterNanos) {
+            this.expireAfterNanos = expireAfterNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return remaining((Entry) value, currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return remaining((Entry) value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long remaining(Entry entry, long currentTime) {
+            return Math.max(0, expireAfterNanos - (currentTime - entry.written));
+        }
+    }
+
+    private static final class Entry {
+        private final CacheableResource resource;
+        private final long written;
+        private final long refreshed;
+        private final long bytes;
+        private final int weight;
+
+        private Entry(CacheableResource resource, long written, long refreshed, long bytes, int weight) {
+            this.resource = resource;
+            this.written = written;
+            this.refreshed = refreshed;
+            this.bytes = bytes;
+            this.weight = weight;
+        }
+    }
+
 }
@@ -19,15 +19,21 @@
 package org.apache.sling.remote.resourceprovider.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -65,6 +71,9 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     private final ThreadPool threadPool;
     private final ContentParser jsonParser;
     private final InMemoryResourceCache cache;
+    private final DiskBinaryCache binaryCache;
+    private final int childrenResolutionConcurrency;
+    private final Prefetched noPrefetch = new Prefetched(Collections.emptyMap(), Collections.emptyMap());
     private final ShallowReferenceTree tree;
     private final RemoteStorageProvider remoteStorageProvider;
     private final boolean requiresAuthentication;
@@ -78,14 +87,17 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     }
 
     RemoteResourceProvider(ThreadPoolManager threadPoolManager, ContentParser jsonParser, InMemoryResourceCache cache,
-                           RemoteStorageProvider remoteStorageProvider,
-                           boolean requiresAuthentication) {
+                           DiskBinaryCache binaryCache, RemoteStorageProvider remoteStorageProvider,
+                           boolean requiresAuthentication, int childrenResolutionConcurrency) {
         this.threadPoolManager = threadPoolManager;
         this.threadPool = threadPoolManager.get(remoteStorageProvider.getClass().getName() + "-" + System.currentTimeMillis());
         this.jsonParser = jsonParser;
         this.cache = cache;
+        this.binaryCache = binaryCache;
+        this.childrenResolutionConcurrency = childrenResolutionConcurrency;
         negativeHits = new ConcurrentHashMap<>();
         tree = new ShallowReferenceTree(removed -> {
+            this.binaryCache.remove(removed.getPath());
             for (String resourceRemoved : removed.getProvidedResourcePaths()) {
                 this.cache.remove(resourceRemoved);
                 if (!requiresAuthentication) {
@@ -118,6 +130,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
             threadPoolManager.release(threadPool);
         }
         cache.clear();
+        binaryCache.clear();
         accessMappings.clear();
         negativeHits.clear();
     }
@@ -148,7 +161,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                 ctx.getProviderState().getAuthenticationInfo();
         CacheableResource cacheableResource = getOrBuildResource(path, authenticationInfo);
         if (cacheableResource != null) {
-            return new CacheableResourceWrapper(ctx, cacheableResource);
+            return new CacheableResourceWrapper(ctx, cacheableResource, binaryCache);
         }
         return null;
     }
@@ -206,67 +219,20 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
                     } else {
                         _parent.setChildren(new LinkedHashSet<>(Collections.emptySet()));
                     }
+                    cache.updated(_parent.getPath());
                 } else if (remoteResourceReference.getType() == RemoteResourceReference.Type.DIRECTORY) {
                     LinkedHashSet<CacheableResource> children = new LinkedHashSet<>();
                     Directory directory = remoteStorageProvider.getDirectory(remoteResourceReference, authenticationInfo);
                     if (directory != null) {
-                        for (RemoteResourceReference child : directory.getChildren()) {
-                            String slingPath = remoteStorageProvider.slingPath(child.getPath());
-                            if (slingPath != null) {
-                                if (child.getType() == RemoteResourceReference.Type.FILE) {
-                                    if (SLING_META_FILE.equals(child.getName())) {
-                                        try {
-                                            File file = remoteStorageProvider.getFile(child, authenticationInfo);
-                                            if (file != null) {
-                                                jsonParser.parse((String path, Map<String, Object> properties) -> {
-                                                            if (path.length() > 1 && !path.substring(1).contains("/")) {
-                                                                String childSlingPath =
-                                                                        ResourceUtil.normalize(ResourceUtil.getParent(slingPath) + path);
-                                                                CacheableResource resource = queryCaches(slingPath, user);
-                                                                if (resource == null) {
-                                                                    resource = new CacheableResource(remoteStorageProvider, child,
-                                                                            childSlingPath, properties);
-                                                                    populateCaches(resource, user);
-                                                                }
-                                                                children.add(resource);
-
-                                                            }
-                                                        },
-                                                        file.getInputStream(),
-                                                        JSON_PARSER_OPTIONS);
-                                            }
-                                        } catch (IOException e) {
-                                            LOGGER.error("Unable to parse file " + child.getPath(), e);
-                                        }
-                                    } else {
-                                        CacheableResource resource = queryCaches(slingPath, user);
-                                        if (resource == null) {
-                                            File file = remoteStorageProvider.getFile(child, authenticationInfo);
-                                            if (file != null) {
-                                                resource = buildResource(slingPath, file);
-                                                populateCaches(resource, user);
-                                            }
-                                        }
-                                        if (resource != null) {
-                                            children.add(resource);
-                                        }
-                                    }
-                                } else if (child.getType() == RemoteResourceReference.Type.DIRECTORY) {
-                                    CacheableResource resource = queryCaches(slingPath, user);
-                                    if (resource == null) {
-                                        Directory d = remoteStorageProvider.getDirectory(child, authenticationInfo);
-                                        if (d != null) {
-                                            resource = buildResource(authenticationInfo, slingPath, child, d);
-                                            populateCaches(resource, user);
-                                        }
-                                    }
-                                    children.add(resource);
-                                }
-                            }
+                        List<RemoteResourceReference> references = directory.getChildren();
+                        Prefetched prefetched = prefetch(references, authenticationInfo, user);
+                        for (List<CacheableResource> resolved : resolveChildren(references, prefetched, authenticationInfo, user)) {
+                            children.addAll(resolved);
                         }
                     }
                     if (!requiresAuthentication) {
                         _parent.setChildren(children);
+                        cache.updated(_parent.getPath());
                     }
                     return getCacheableResourceWrapperIterator(ctx, children);
                 }
@@ -276,6 +242,169 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         return null;
     }
 
+    /**
+     * If the remote storage supports batch requests, retrieves the directories and files needed to build the resources for a directory's
+     * children, including the meta files of the child directories, with one request for the directories and one for the files.
+     */
+    @NotNull
+    private Prefetched prefetch(@NotNull List<RemoteResourceReference> references, @NotNull Map<String, Object> authenticationInfo,
+                                @NotNull String user) {
+        if (!remoteStorageProvider.supportsBatchRequests()) {
+            return noPrefetch;
+        }
+        List<RemoteResourceReference> directoryReferences = new ArrayList<>();
+        List<RemoteResourceReference> fileReferences = new ArrayList<>();
+        for (RemoteResourceReference child : references) {
+            String slingPath = remoteStorageProvider.slingPath(child.getPath());
+            if (slingPath != null) {
+                if (child.getType() == RemoteResourceReference.Type.FILE) {
+                    if (SLING_META_FILE.equals(child.getName()) || queryCaches(slingPath, user) == null) {
+                        fileReferences.add(child);
+                    }
+                } else if (child.getType() == RemoteResourceReference.Type.DIRECTORY && queryCaches(slingPath, user) == null) {
+                    directoryReferences.add(child);
+                }
+            }
+        }
+        Map<String, Directory> directories = directoryReferences.isEmpty() ? Collections.emptyMap() :
+                remoteStorageProvider.getDirectories(directoryReferences, authenticationInfo);
+        for (Directory directory : directories.values()) {
+            for (RemoteResourceReference child : directory.getChildren()) {
+                if (child.getType() == RemoteResourceReference.Type.FILE && SLING_META_FILE.equals(child.getName())) {
+                    fileReferences.add(child);
+                    break;
+                }
+            }
+        }
+        Map<String, File> files = fileReferences.isEmpty() ? Collections.emptyMap() :
+                remoteStorageProvider.getFiles(fileReferences, authenticationInfo);
+        return new Prefetched(files, directories);
+    }
+
+    /**
+     * Resolves the {@code references} of a directory's children into resources. The remote calls needed for each child are fanned out on
+     * the provider's thread pool, using at most {@code childrenResolutionConcurrency} threads, including the calling one; the returned
+     * list has the same order as {@code references}.
+     */
+    @NotNull
+    private List<List<CacheableResource>> resolveChildren(@NotNull List<RemoteResourceReference> references,
+                                                          @NotNull Prefetched prefetched, @NotNull Map<String, Object> authenticationInfo,
+                                                          @NotNull String user) {
+        int size = references.size();
+        AtomicReferenceArray<List<CacheableResource>> resolved = new AtomicReferenceArray<>(size);
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < size) {
+                resolved.set(index, resolveChild(references.get(index), prefetched, authenticationInfo, user));
+            }
+        };
+        List<Future<?>> helpers = new ArrayList<>();
+        if (threadPool != null) {
+            int helpersCount = Math.min(childrenResolutionConcurrency, size) - 1;
+            for (int i = 0; i < helpersCount; i++) {
+                helpers.add(threadPool.submit(worker));
+            }
+        }
+        // the calling thread works as well, so a saturated pool cannot stall the listing
+        worker.run();
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> helper : helpers) {
+            // helpers that did not start yet have nothing left to do
+            if (helper.cancel(false)) {
+                continue;
+            }
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (CancellationException e) {
+                    break;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        List<List<CacheableResource>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<CacheableResource> resources = resolved.get(i);
+            result.add(resources == null ? Collections.emptyList() : resources);
+        }
+        return result;
+    }
+
+    @NotNull
+    private List<CacheableResource> resolveChild(@NotNull RemoteResourceReference child, @NotNull Prefetched prefetched,
+                                                 @NotNull Map<String, Object> authenticationInfo, @NotNull String user) {
+        List<CacheableResource> children = new ArrayList<>();
+        String slingPath = remoteStorageProvider.slingPath(child.getPath());
+        if (slingPath != null) {
+            if (child.getType() == RemoteResourceReference.Type.FILE) {
+                if (SLING_META_FILE.equals(child.getName())) {
+                    try {
+                        File file = prefetched.getFile(child, authenticationInfo);
+                        if (file != null) {
+                            jsonParser.parse((String path, Map<String, Object> properties) -> {
+                                        if (path.length() > 1 && !path.substring(1).contains("/")) {
+                                            String childSlingPath = ResourceUtil.normalize(ResourceUtil.getParent(slingPath) + path);
+                                            CacheableResource resource = queryCaches(slingPath, user);
+                                            if (resource == null) {
+                                                resource = new CacheableResource(remoteStorageProvider, child, childSlingPath, properties);
+                                                populateCaches(resource, user);
+                                            }
+                                            children.add(resource);
+
+                                        }
+                                    },
+                                    file.getInputStream(),
+                                    JSON_PARSER_OPTIONS);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.error("Unable to parse file " + child.getPath(), e);
+                    }
+                } else {
+                    CacheableResource resource = queryCaches(slingPath, user);
+                    if (resource == null) {
+                        File file = prefetched.getFile(child, authenticationInfo);
+                        if (file != null) {
+                            resource = buildResource(slingPath, file);
+                            populateCaches(resource, user);
+                        }
+                    }
+                    if (resource != null) {
+                        children.add(resource);
+                    }
+                }
+            } else if (child.getType() == RemoteResourceReference.Type.DIRECTORY) {
+                CacheableResource resource = queryCaches(slingPath, user);
+                if (resource == null) {
+                    Directory d = prefetched.getDirectory(child, authenticationInfo);
+                    if (d != null) {
+                        resource = buildResource(authenticationInfo, slingPath, child, d, prefetched);
+                        populateCaches(resource, user);
+                    }
+                }
+                if (resource != null) {
+                    children.add(resource);
+                }
+            }
+        }
+        return children;
+    }
+
     @Nullable
     private Iterator<Resource> getCacheableResourceWrapperIterator(@NotNull ResolveContext<RemoteResourceProviderContext> ctx,
                                                                    Set<CacheableResource> children) {
@@ -289,7 +418,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
 
                 @Override
                 public Resource next() {
-                    return new CacheableResourceWrapper(ctx, iterator.next());
+                    return new CacheableResourceWrapper(ctx, iterator.next(), binaryCache);
                 }
             };
         }
@@ -307,55 +436,15 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         }
         CacheableResource cacheableResource = queryCaches(slingPath, user);
         if (cacheableResource == null) {
-            String storagePath = remoteStorageProvider.storagePath(slingPath);
-            RemoteResourceReference resource = remoteStorageProvider.findResource(slingPath, authenticationInfo);
-            if (resource != null) {
-                if (storagePath.equals(resource.getPath())) {
-                    if (resource.getType() == RemoteResourceReference.Type.FILE) {
-                        cacheableResource = buildResource(slingPath, resource);
-                    } else if (resource.getType() == RemoteResourceReference.Type.DIRECTORY) {
-                        Directory directory = remoteStorageProvider.getDirectory(resource, authenticationInfo);
-                        if (directory != null) {
-                            cacheableResource = buildResource(authenticationInfo, slingPath, resource, directory);
-                        }
-                    }
-                } else if (resource.getType() == RemoteResourceReference.Type.DIRECTORY) {
-                    Directory directory = remoteStorageProvider.getDirectory(resource, authenticationInfo);
-                    if (directory != null && storagePath.startsWith(resource.getPath())) {
-                        String relativePath = storagePath.substring(resource.getPath().length());
-                        for (RemoteResourceReference r : directory.getChildren()) {
-                            if (SLING_META_FILE.equals(r.getName())) {
-                                File metaFile = remoteStorageProvider.getFile(r, authenticationInfo);
-                                if (metaFile != null) {
-                                    AtomicReference<CacheableResource> resourceReference = new AtomicReference<>();
-                                    try {
-                                        jsonParser.parse((String path, Map<String, Object> properties) -> {
-                                                    if (relativePath.equals(path)) {
-                                                        resourceReference
-                                                                .set(new CacheableResource(remoteStorageProvider, r, slingPath,
-                                                                        properties));
-                                                    }
-                                                },
-                                                metaFile.getInputStream(),
-                                                JSON_PARSER_OPTIONS);
-                                        cacheableResource = resourceReference.get();
-                                    } catch (IOException e) {
-                                        LOGGER.error("Unable to parse file " + metaFile.getPath(), e);
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-                if (cacheableResource != null) {
-                    populateCaches(cacheableResource, user);
-                } else {
-                    markNegativeHit(slingPath, user);
-                }
+            cacheableResource = loadResource(slingPath, authenticationInfo);
+            if (cacheableResource != null) {
+                populateCaches(cacheableResource, user);
             } else {
                 markNegativeHit(slingPath, user);
             }
+        } else if (threadPool != null && cache.startRefresh(slingPath)) {
+            Map<String, Object> refreshAuthenticationInfo = new HashMap<>(authenticationInfo);
+            threadPool.execute(() -> refresh(slingPath, refreshAuthenticationInfo, user));
         }
         if (requiresAuthentication) {
             if (accessMappings.containsKey(slingPath) &&
@@ -368,6 +457,91 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         }
     }
 
+    /**
+     * Retrieves the resource identified by {@code slingPath} from the remote storage, without querying or populating the caches.
+     */
+    @Nullable
+    private CacheableResource loadResource(@NotNull String slingPath, @NotNull Map<String, Object> authenticationInfo) {
+        CacheableResource cacheableResource = null;
+        String storagePath = remoteStorageProvider.storagePath(slingPath);
+        RemoteResourceReference resource = remoteStorageProvider.findResource(slingPath, authenticationInfo);
+        if (resource != null) {
+            if (storagePath.equals(resource.getPath())) {
+                if (resource.getType() == RemoteResourceReference.Type.FILE) {
+                    cacheableResource = buildResource(slingPath, resource);
+                } else if (resource.getType() == RemoteResourceReference.Type.DIRECTORY) {
+                    Directory directory = remoteStorageProvider.getDirectory(resource, authenticationInfo);
+                    if (directory != null) {
+                        cacheableResource = buildResource(authenticationInfo, slingPath, resource, directory, noPrefetch);
+                    }
+                }
+            } else if (resource.getType() == RemoteResourceReference.Type.DIRECTORY) {
+                Directory directory = remoteStorageProvider.getDirectory(resource, authenticationInfo);
+                if (directory != null && storagePath.startsWith(resource.getPath())) {
+                    String relativePath = storagePath.substring(resource.getPath().length());
+                    for (RemoteResourceReference r : directory.getChildren()) {
+                        if (SLING_META_FILE.equals(r.getName())) {
+                            File metaFile = remoteStorageProvider.getFile(r, authenticationInfo);
+                            if (metaFile != null) {
+                                AtomicReference<CacheableResource> resourceReference = new AtomicReference<>();
+                                try {
+                                    jsonParser.parse((String path, Map<String, Object> properties) -> {
+                                                if (relativePath.equals(path)) {
+                                                    resourceReference
+                                                            .set(new CacheableResource(remoteStorageProvider, r, slingPath,
+                                                                    properties));
+                                                }
+                                            },
+                                            metaFile.getInputStream(),
+                                            JSON_PARSER_OPTIONS);
+                                    cacheableResource = resourceReference.get();
+                                } catch (IOException e) {
+                                    LOGGER.error("Unable to parse file " + metaFile.getPath(), e);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return cacheableResource;
+    }
+
+    /**
+     * Refreshes a stale cache entry in the background. If the remote resource did not change, the cached resource is kept; the children
+     * of a directory are not described by its own metadata though, so they are dropped and listed again on next use.
+     */
+    private void refresh(@NotNull String slingPath, @NotNull Map<String, Object> authenticationInfo, @NotNull String user) {
+        try {
+            CacheableResource fresh = loadResource(slingPath, authenticationInfo);
+            CacheableResource cached = cache.get(slingPath);
+            if (fresh != null && fresh.hasSameContent(cached)) {
+                if (cached.getRemoteResourceReference().getType() == RemoteResourceReference.Type.DIRECTORY
+                        && cached.getChildrenSet() != null) {
+                    cached.setChildren(null);
+                    cache.updated(slingPath);
+                }
+                cache.touch(slingPath);
+            } else {
+                if (fresh == null) {
+                    cache.remove(slingPath);
+                } else {
+                    populateCaches(fresh, user);
+                }
+                // the parent's cached children still point to the previous version
+                String parent = ResourceUtil.getParent(slingPath);
+                if (parent != null) {
+                    cache.remove(parent);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("Unable to refresh resource %s.", slingPath), e);
+        } finally {
+            cache.endRefresh(slingPath);
+        }
+    }
+
     @NotNull
     private CacheableResource buildResource(@NotNull String path, @NotNull RemoteResourceReference reference) {
         return new CacheableResource(remoteStorageProvider, reference, path, FILE_RESOURCE_PROPERTIES);
@@ -377,14 +551,15 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     private CacheableResource buildResource(@NotNull Map<String, Object> authenticationInfo,
                                             @NotNull String path,
                                             @NotNull RemoteResourceReference reference,
-                                            @NotNull Directory directory) {
+                                            @NotNull Directory directory,
+                                            @NotNull Prefetched prefetched) {
         Map<String, Object> properties = new HashMap<>();
         properties.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, "sling:Folder");
         for (RemoteResourceReference remoteResourceReference : directory.getChildren()) {
             if (remoteResourceReference.getType() == RemoteResourceReference.Type.FILE &&
                     SLING_META_FILE.equals(remoteResourceReference.getName())) {
                 try {
-                    File file = remoteStorageProvider.getFile(remoteResourceReference, authenticationInfo);
+                    File file = prefetched.getFile(remoteResourceReference, authenticationInfo);
                     if (file != null) {
                         jsonParser.parse(
                                 (String parsedPath, Map<String, Object> propertiesMap) -> {
@@ -440,7 +615,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
             throw new IllegalStateException(String.format("Cannot determine user for RemoteStorageProvider %s requiring " +
                     "authentication.", remoteStorageProvider));
         }
-        Set<String> allowed = accessMappings.computeIfAbsent(cacheableResource.getPath(), key -> new HashSet<>());
+        Set<String> allowed = accessMappings.computeIfAbsent(cacheableResource.getPath(), key -> ConcurrentHashMap.newKeySet());
         allowed.add(user);
     }
 
@@ -450,7 +625,7 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
     }
 
     private void markNegativeHit(@NotNull String slingPath, @NotNull String user) {
-        Set<String> negativeHitsSet = negativeHits.computeIfAbsent(slingPath, key -> new HashSet<>());
+        Set<String> negativeHitsSet = negativeHits.computeIfAbsent(slingPath, key -> ConcurrentHashMap.newKeySet());
         negativeHitsSet.add(user);
     }
 
@@ -461,6 +636,29 @@ public final class RemoteResourceProvider extends ResourceProvider<RemoteResourc
         return ANY;
     }
 
+    /**
+     * Files and directories retrieved ahead of time through batch requests; anything else is retrieved from the remote storage on demand.
+     */
+    private final class Prefetched {
 
+        private final Map<String, File> files;
+        private final Map<String, Directory> directories;
 
+        private Prefetched(@NotNull Map<String, File> files, @NotNull Map<String, Directory> directories) {
+            this.files = files;
+            this.directories = directories;
+        }
+
+        @Nullable
+        File getFile(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo) {
+            File file = files.get(reference.getPath());
+            return file != null ? file : remoteStorageProvider.getFile(reference, authenticationInfo);
+        }
+
+        @Nullable
+        Directory getDirectory(@NotNull RemoteResourceReference reference, @NotNull Map<String, Object> authenticationInfo) {
+            Directory directory = directories.get(reference.getPath());
+            return directory != null ? directory : remoteStorageProvider.getDirectory(reference, authenticationInfo);
+        }
+    }
 }
@@ -18,11 +18,18 @@
  ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 package org.apache.sling.remote.resourceprovider.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.apache.sling.contentparser.api.ContentParser;
@@ -40,7 +47,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.osgi.service.component.annotations.ReferenceCardinality.MULTIPLE;
+import static org.osgi.service.component.annotations.ReferenceCardinality.OPTIONAL;
 import static org.osgi.service.component.annotations.ReferencePolicy.DYNAMIC;
+import static org.osgi.service.component.annotations.ReferencePolicyOption.GREEDY;
 
 @Component(immediate = true)
 @Designate(ocd = RemoteResourceProviderFactoryConfiguration.class)
@@ -60,6 +69,11 @@ public class RemoteResourceProviderFactory {
     @Reference
     private ThreadPoolManager threadPoolManager;
 
+    @Reference(cardinality = OPTIONAL,
+               policyOption = GREEDY,
+               target = "(name=sling)")
+    private MetricRegistry metricRegistry;
+
     @Reference(cardinality = MULTIPLE,
                policy = DYNAMIC)
     private synchronized void bindRemoteStorageProvider(RemoteStorageProvider remoteStorageProvider, Map<String, Object> properties) {
@@ -114,6 +128,9 @@ public class RemoteResourceProviderFactory {
     @Deactivate
     private void deactivate() {
         for (RegistrationMapping mapping : mappings.values()) {
+            if (mapping.metrics != null) {
+                mapping.metrics.unregister();
+            }
             mapping.resourceProviderServiceRegistration.unregister();
         }
         mappings.clear();
@@ -124,6 +141,7 @@ public class RemoteResourceProviderFactory {
         private final Hashtable<String, Object> resourceProviderRegistrationProperties;
         private ServiceRegistration<?> resourceProviderServiceRegistration;
         private RemoteResourceProvider resourceProvider;
+        private ResourceCacheMetrics metrics;
 
         RegistrationMapping(RemoteStorageProvider remoteStorageProvider,
                             Hashtable<String, Object> resourceProviderRegistrationProperties) {
@@ -148,10 +166,24 @@ public class RemoteResourceProviderFactory {
                 int cacheSize = configuration.cacheSize() >= 100 ? configuration.cacheSize() : 0;
                 int lastAccessedExpirationTime = configuration.lastAccessedExpirationTime() >= 0 ?
                         configuration.lastAccessedExpirationTime() : 0;
-                resourceProvider = new RemoteResourceProvider(threadPoolManager, jsonParser, new InMemoryResourceCache(cacheSize,
-                        lastAccessedExpirationTime),
+                InMemoryResourceCache.Capacity capacity = configuration.cacheMemorySize() > 0 ?
+                        InMemoryResourceCache.Capacity.megabytes(configuration.cacheMemorySize()) :
+                        InMemoryResourceCache.Capacity.entries(cacheSize);
+                InMemoryResourceCache cache;
+                if (configuration.refreshAfterWriteTime() > 0) {
+                    cache = new InMemoryResourceCache(capacity, configuration.refreshAfterWriteTime(),
+                            Math.max(configuration.expireAfterWriteTime(), configuration.refreshAfterWriteTime()), TimeUnit.SECONDS);
+                } else {
+                    cache = new InMemoryResourceCache(capacity, lastAccessedExpirationTime);
+                }
+                if (metricRegistry != null) {
+                    String root = (String) resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_ROOT);
+                    metrics = new ResourceCacheMetrics(metricRegistry, ResourceCacheMetrics.prefix(root), cache);
+                }
+                resourceProvider = new RemoteResourceProvider(threadPoolManager, jsonParser, cache, createBinaryCache(bundleContext),
                         remoteStorageProvider, !ResourceProvider.AUTHENTICATE_NO
-                        .equals(resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_AUTHENTICATE)));
+                        .equals(resourceProviderRegistrationProperties.get(ResourceProvider.PROPERTY_AUTHENTICATE)),
+                        Math.max(configuration.childrenResolutionConcurrency(), 1));
                 resourceProviderServiceRegistration = bundleContext.registerService(ResourceProvider.class,
                         resourceProvider,
                         resourceProviderRegistrationProperties);
@@ -161,7 +193,34 @@ public class RemoteResourceProviderFactory {
             }
         }
 
+        private DiskBinaryCache createBinaryCache(BundleContext bundleContext) {
+            long binaryCacheSize = configuration.binaryCacheSize() > 0 ? configuration.binaryCacheSize() * 1024L * 1024L : 0;
+            Path base;
+            if (StringUtils.isNotEmpty(configuration.binaryCacheDirectory())) {
+                base = Paths.get(configuration.binaryCacheDirectory());
+            } else {
+                File dataFile = bundleContext.getDataFile("binaries");
+                base = dataFile != null ? dataFile.toPath() : Paths.get(System.getProperty("java.io.tmpdir"));
+            }
+            Path directory = base;
+            if (binaryCacheSize > 0) {
+                try {
+                    Files.createDirectories(base);
+                    directory = Files.createTempDirectory(base, "remote-resources-");
+                } catch (IOException e) {
+                    LOGGER.warn(String.format("Unable to create a binary cache directory in %s; the binary cache will be disabled.", base),
+                            e);
+                    binaryCacheSize = 0;
+                }
+            }
+            return new DiskBinaryCache(directory, binaryCacheSize);
+        }
+
         void unregisterResourceProvider() {
+            if (metrics != null) {
+                metrics.unregister();
+                metrics = null;
+            }
             if (resourceProviderServiceRegistration != null) {
                 try {
                     resourceProvider.cleanup();
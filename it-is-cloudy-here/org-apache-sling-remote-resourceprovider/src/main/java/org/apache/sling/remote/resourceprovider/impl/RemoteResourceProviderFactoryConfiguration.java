@@ -35,6 +35,13 @@ public @interface RemoteResourceProviderFactoryConfiguration {
     )
     int cacheSize() default 10000;
 
+    @AttributeDefinition(
+            name = "Resource Tree Cache Memory Size",
+            description = "The number of megabytes of heap the resources stored in memory by each registered Resource Provider are " +
+                    "estimated to retain. If set to a positive value, it bounds the cache instead of the \"Resource Tree Cache Size\"."
+    )
+    int cacheMemorySize() default 0;
+
     @AttributeDefinition(
             name = "Access Cache Expiration",
             description = "The number of minutes since the last access operation of a cached entry after which the entry will be removed " +
@@ -42,4 +49,41 @@ public @interface RemoteResourceProviderFactoryConfiguration {
     )
     int lastAccessedExpirationTime() default 5;
 
+    @AttributeDefinition(
+            name = "Cache Refresh Time",
+            description = "The number of seconds since an entry was cached after which it is considered stale. Stale entries are still " +
+                    "served, while they are refreshed in the background. 0 or a negative value disable this mode, in which case " +
+                    "entries expire according to the \"Access Cache Expiration\" setting."
+    )
+    int refreshAfterWriteTime() default 0;
+
+    @AttributeDefinition(
+            name = "Cache Write Expiration",
+            description = "The number of seconds since an entry was cached after which it is removed from the cache, even if it is " +
+                    "still accessed. Only used if the \"Cache Refresh Time\" is enabled; values lower than the refresh time are " +
+                    "raised to it."
+    )
+    int expireAfterWriteTime() default 3600;
+
+    @AttributeDefinition(
+            name = "Binary Cache Size",
+            description = "The number of megabytes of remote file contents to be stored on disk by each registered Resource Provider. 0 " +
+                    "or a negative value disable the cache."
+    )
+    int binaryCacheSize() default 100;
+
+    @AttributeDefinition(
+            name = "Binary Cache Directory",
+            description = "The directory where the binary cache stores its files. If empty, the bundle's data area or, if not " +
+                    "available, the system's temporary directory will be used."
+    )
+    String binaryCacheDirectory() default "";
+
+    @AttributeDefinition(
+            name = "Children Resolution Concurrency",
+            description = "The maximum number of threads used to resolve the children of a remote directory in parallel, including the " +
+                    "requesting thread. A value of 1 or lower resolves the children sequentially."
+    )
+    int childrenResolutionConcurrency() default 8;
+
 }
@@ -0,0 +1,59 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Publishes the statistics of an {@link InMemoryResourceCache} as gauges, named {@code <prefix>.hitRate}, {@code <prefix>.hitCount},
+ * {@code <prefix>.missCount}, {@code <prefix>.evictionCount}, {@code <prefix>.size} and {@code <prefix>.estimatedBytes}.
+ */
+final class ResourceCacheMetrics {
+
+    private final MetricRegistry metricRegistry;
+    private final String prefix;
+
+    ResourceCacheMetrics(@NotNull MetricRegistry metricRegistry, @NotNull String prefix, @NotNull InMemoryResourceCache cache) {
+        this.metricRegistry = metricRegistry;
+        this.prefix = prefix;
+        unregister();
+        metricRegistry.register(MetricRegistry.name(prefix, "hitRate"), (Gauge<Double>) () -> cache.stats().hitRate());
+        metricRegistry.register(MetricRegistry.name(prefix, "hitCount"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metricRegistry.register(MetricRegistry.name(prefix, "missCount"), (Gauge<Long>) () -> cache.stats().missCount());
+        metricRegistry.register(MetricRegistry.name(prefix, "evictionCount"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(MetricRegistry.name(prefix, "size"), (Gauge<Long>) cache::size);
+        metricRegistry.register(MetricRegistry.name(prefix, "estimatedBytes"), (Gauge<Long>) cache::estimatedBytes);
+    }
+
+    /**
+     * Returns the metrics prefix for the resource provider mounted at {@code root}, e.g.
+     * {@code sling.remote.resourceprovider.content.dropbox.cache} for {@code /content/dropbox}.
+     */
+    @NotNull
+    static String prefix(@NotNull String root) {
+        String name = root.replaceAll("^/+|/+$", "").replace('/', '.');
+        return MetricRegistry.name("sling.remote.resourceprovider", name.isEmpty() ? "root" : name, "cache");
+    }
+
+    void unregister() {
+        metricRegistry.removeMatching((name, metric) -> name.startsWith(prefix + "."));
+    }
+}
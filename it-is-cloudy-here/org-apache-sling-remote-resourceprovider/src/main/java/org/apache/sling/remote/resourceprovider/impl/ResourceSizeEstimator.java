@@ -0,0 +1,111 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.lang.reflect.Array;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Roughly estimates the heap retained by a {@link CacheableResource}, assuming a 64-bit JVM with compressed references and compact
+ * strings. Children are only accounted for by their references, since they are cached as separate entries.
+ */
+final class ResourceSizeEstimator {
+
+    private static final long OBJECT = 16;
+    private static final long REFERENCE = 4;
+    private static final long STRING = 40;
+    private static final long BOXED = 16;
+    private static final long CALENDAR = 450;
+    private static final long MAP = 48;
+    private static final long MAP_ENTRY = 32 + REFERENCE;
+    private static final long LINKED_MAP_ENTRY = 40 + REFERENCE;
+    // path, resource types, provider, reference, value map, metadata and children fields, plus the reference object itself
+    private static final long RESOURCE = OBJECT + 7 * REFERENCE + 64;
+    private static final int MAX_DEPTH = 8;
+
+    private ResourceSizeEstimator() {
+    }
+
+    static long estimate(@NotNull CacheableResource resource) {
+        long size = RESOURCE;
+        size += estimate(resource.getPath(), 0);
+        size += estimate(resource.getResourceType(), 0);
+        size += estimate(resource.getResourceSuperType(), 0);
+        size += estimate(resource.getResourceMetadata(), 0);
+        size += estimate(resource.getValueMap(), 0);
+        Set<CacheableResource> children = resource.getChildrenSet();
+        if (children != null) {
+            size += MAP + OBJECT + (long) children.size() * LINKED_MAP_ENTRY;
+        }
+        return size;
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (depth > MAX_DEPTH) {
+            return OBJECT;
+        }
+        if (value instanceof String) {
+            return STRING + ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return BOXED;
+        }
+        if (value instanceof Calendar) {
+            return CALENDAR;
+        }
+        if (value instanceof Date) {
+            return 24;
+        }
+        if (value instanceof Map) {
+            long size = MAP;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += MAP_ENTRY + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = OBJECT + 8;
+            for (Object element : (Collection<?>) value) {
+                size += REFERENCE + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (value.getClass().getComponentType().isPrimitive()) {
+                return OBJECT + (long) length * 8;
+            }
+            long size = OBJECT + (long) length * REFERENCE;
+            for (int i = 0; i < length; i++) {
+                size += estimate(Array.get(value, i), depth + 1);
+            }
+            return size;
+        }
+        return OBJECT + 2 * REFERENCE;
+    }
+}
@@ -0,0 +1,150 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskBinaryCacheTest {
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @TempDir
+    Path temporaryFolder;
+
+    @Test
+    void testCacheHit() throws IOException {
+        DiskBinaryCache cache = new DiskBinaryCache(temporaryFolder.resolve("binaries"), 1024 * 1024);
+        assertEquals("hello", read(cache.getInputStream(new TestFile("/a.txt", "1", "hello"))));
+        assertEquals("hello", read(cache.getInputStream(new TestFile("/a.txt", "1", "hello"))));
+        assertEquals(1, downloads.get(), "Expected the second read to be served from disk.");
+    }
+
+    @Test
+    void testRevisionChange() throws IOException {
+        Path directory = temporaryFolder.resolve("binaries");
+        DiskBinaryCache cache = new DiskBinaryCache(directory, 1024 * 1024);
+        assertEquals("hello", read(cache.getInputStream(new TestFile("/a.txt", "1", "hello"))));
+        assertEquals("world", read(cache.getInputStream(new TestFile("/a.txt", "2", "world"))));
+        assertEquals(2, downloads.get());
+        assertEquals(1, Files.list(directory).count(), "Expected the outdated copy to be deleted.");
+    }
+
+    @Test
+    void testRemoveAndClear() throws IOException {
+        Path directory = temporaryFolder.resolve("binaries");
+        DiskBinaryCache cache = new DiskBinaryCache(directory, 1024 * 1024);
+        read(cache.getInputStream(new TestFile("/a.txt", "1", "hello")));
+        read(cache.getInputStream(new TestFile("/b.txt", "1", "world")));
+        cache.remove("/a.txt");
+        read(cache.getInputStream(new TestFile("/a.txt", "1", "hello")));
+        assertEquals(3, downloads.get());
+        cache.clear();
+        assertFalse(Files.exists(directory));
+        read(cache.getInputStream(new TestFile("/b.txt", "1", "world")));
+        assertEquals(4, downloads.get());
+    }
+
+    @Test
+    void testDisabled() throws IOException {
+        DiskBinaryCache cache = new DiskBinaryCache(temporaryFolder, 0);
+        read(cache.getInputStream(new TestFile("/a.txt", "1", "hello")));
+        read(cache.getInputStream(new TestFile("/a.txt", "1", "hello")));
+        assertEquals(2, downloads.get());
+        cache.clear();
+        assertTrue(Files.exists(temporaryFolder), "A disabled cache should not remove its directory.");
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        try (InputStream is = inputStream) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    private class TestFile implements File {
+
+        private final String path;
+        private final String revision;
+        private final byte[] contents;
+
+        TestFile(String path, String revision, String contents) {
+            this.path = path;
+            this.revision = revision;
+            this.contents = contents.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public @NotNull InputStream getInputStream() {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream(contents);
+        }
+
+        @Override
+        public @Nullable String getMimeType() {
+            return null;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.FILE;
+        }
+
+        @Override
+        public RemoteStorageProvider getProvider() {
+            return null;
+        }
+
+        @Override
+        public @NotNull String getPath() {
+            return path;
+        }
+
+        @Override
+        public long getCreated() {
+            return 0;
+        }
+
+        @Override
+        public long getSize() {
+            return contents.length;
+        }
+
+        @Override
+        public @Nullable String getRevision() {
+            return revision;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ ~ Licensed to the Apache Software Foundation (ASF) under one
+ ~ or more contributor license agreements.  See the NOTICE file
+ ~ distributed with this work for additional information
+ ~ regarding copyright ownership.  The ASF licenses this file
+ ~ to you under the Apache License, Version 2.0 (the
+ ~ "License"); you may not use this file except in compliance
+ ~ with the License.  You may obtain a copy of the License at
+ ~
+ ~   http://www.apache.org/licenses/LICENSE-2.0
+ ~
+ ~ Unless required by applicable law or agreed to in writing,
+ ~ software distributed under the License is distributed on an
+ ~ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ ~ KIND, either express or implied.  See the License for the
+ ~ specific language governing permissions and limitations
+ ~ under the License.
+ ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
+package org.apache.sling.remote.resourceprovider.impl;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteResourceReference;
+import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteStorageProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryResourceCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private CacheableResource resource;
+
+    @BeforeEach
+    void beforeEach() {
+        MockRemoteStorageProvider remoteStorageProvider = new MockRemoteStorageProvider();
+        resource = new CacheableResource(remoteStorageProvider,
+                new MockRemoteResourceReference(remoteStorageProvider, new File("src/test/resources/content")), "/content",
+                Map.of(ResourceResolver.PROPERTY_RESOURCE_TYPE, "sling:Folder"));
+    }
+
+    @Test
+    void testStaleWhileRevalidate() {
+        InMemoryResourceCache cache = new InMemoryResourceCache(InMemoryResourceCache.Capacity.entries(100), 10, 60, TimeUnit.SECONDS,
+                now::get);
+        cache.put("/content", resource);
+        assertFalse(cache.startRefresh("/content"), "A fresh entry should not be refreshed.");
+
+        advance(11);
+        assertSame(resource, cache.get("/content"), "A stale entry should still be served.");
+        assertTrue(cache.startRefresh("/content"));
+        assertFalse(cache.startRefresh("/content"), "A stale entry should only be refreshed once at a time.");
+        cache.touch("/content");
+        cache.endRefresh("/content");
+        assertFalse(cache.startRefresh("/content"), "A touched entry should be fresh again.");
+
+        advance(48);
+        assertSame(resource, cache.get("/content"));
+        advance(2);
+        assertNull(cache.get("/content"), "Touching an entry should not extend its hard expiration time.");
+    }
+
+    @Test
+    void testAccessExpirationMode() {
+        InMemoryResourceCache cache = new InMemoryResourceCache(100, 5);
+        cache.put("/content", resource);
+        assertSame(resource, cache.get("/content"));
+        assertFalse(cache.startRefresh("/content"), "Entries are never refreshed when expiring on access.");
+    }
+
+    @Test
+    void testMemoryWeightedCapacity() {
+        InMemoryResourceCache cache = new InMemoryResourceCache(InMemoryResourceCache.Capacity.megabytes(1), 5);
+        cache.put("/content", resource);
+        long bytes = cache.estimatedBytes();
+        assertTrue(bytes > 0, "Expected a positive size estimation for a cached resource.");
+
+        LinkedHashSet<CacheableResource> children = new LinkedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            children.add(new CacheableResource(resource.getRemoteStorageProvider(), resource.getRemoteResourceReference(),
+                    "/content/child-" + i, Map.of(ResourceResolver.PROPERTY_RESOURCE_TYPE, "sling:Folder")));
+        }
+        resource.setChildren(children);
+        cache.updated("/content");
+        assertTrue(cache.estimatedBytes() > bytes, "Expected the children to be accounted for once the entry is updated.");
+        assertSame(resource, cache.get("/content"));
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testEstimatedBytesWithEntriesCapacity() {
+        InMemoryResourceCache cache = new InMemoryResourceCache(2, 5);
+        long bytes = ResourceSizeEstimator.estimate(resource);
+        cache.put("/a", resource);
+        cache.put("/a", resource);
+        assertEquals(bytes, cache.estimatedBytes(), "Expected replaced entries to be accounted for once.");
+
+        cache.put("/b", resource);
+        cache.put("/c", resource);
+        assertEquals(2 * bytes, cache.estimatedBytes(), "Expected evicted entries to be discounted.");
+
+        cache.remove("/b");
+        cache.remove("/c");
+        assertEquals(0, cache.estimatedBytes());
+    }
+
+    private void advance(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
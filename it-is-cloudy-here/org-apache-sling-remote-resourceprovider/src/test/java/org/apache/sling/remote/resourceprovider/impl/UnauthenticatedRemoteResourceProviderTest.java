@@ -20,25 +20,40 @@ package org.apache.sling.remote.resourceprovider.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.apache.sling.contentparser.api.ContentParser;
 import org.apache.sling.contentparser.json.internal.JSONContentParser;
+import org.apache.sling.remote.resourceprovider.File;
+import org.apache.sling.remote.resourceprovider.RemoteResourceReference;
 import org.apache.sling.remote.resourceprovider.RemoteStorageProvider;
 import org.apache.sling.remote.resourceprovider.impl.mocks.MockRemoteStorageProvider;
 import org.apache.sling.spi.resource.provider.ResourceProvider;
 import org.apache.sling.testing.mock.osgi.junit5.OsgiContextExtension;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -49,7 +64,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(OsgiContextExtension.class)
 @ExtendWith(MockitoExtension.class)
@@ -135,4 +156,106 @@ class UnauthenticatedRemoteResourceProviderTest extends RemoteResourceProviderTe
         assertNotNull(inputStream, "Expected to be able to retrieve an InputStream from a Resource identifying a binary file.");
         assertEquals("A simple text file\n", IOUtils.toString(inputStream));
     }
+
+    @Test
+    void testParallelChildrenResolution() throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            ThreadPool threadPool = mock(ThreadPool.class);
+            when(threadPool.submit(any(Runnable.class)))
+                    .thenAnswer(invocation -> executorService.submit((Runnable) invocation.getArgument(0)));
+            ThreadPoolManager threadPoolManager = mock(ThreadPoolManager.class);
+            when(threadPoolManager.get(anyString())).thenReturn(threadPool);
+            RemoteResourceProvider parallelProvider = new RemoteResourceProvider(threadPoolManager, new JSONContentParser(),
+                    new InMemoryResourceCache(1000, 5), new DiskBinaryCache(Files.createTempDirectory("binaries"), 0),
+                    new MockRemoteStorageProvider(), false, 4);
+
+            Resource test_1 = resourceProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+            Resource parallelTest_1 = parallelProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+            assertNotNull(test_1);
+            assertNotNull(parallelTest_1);
+            List<String> expected = new ArrayList<>();
+            resourceProvider.listChildren(resolveContext, test_1).forEachRemaining(child -> expected.add(child.getPath()));
+            List<String> actual = new ArrayList<>();
+            parallelProvider.listChildren(resolveContext, parallelTest_1).forEachRemaining(child -> actual.add(child.getPath()));
+            assertEquals(expected, actual, "Expected the same children, in the same order, as for a sequential resolution.");
+            verify(threadPool, atLeastOnce()).submit(any(Runnable.class));
+            parallelProvider.cleanup();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStaleDirectoryChildren() throws IOException {
+        ThreadPool threadPool = mock(ThreadPool.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(threadPool).execute(any(Runnable.class));
+        ThreadPoolManager threadPoolManager = mock(ThreadPoolManager.class);
+        when(threadPoolManager.get(anyString())).thenReturn(threadPool);
+        AtomicLong now = new AtomicLong();
+        InMemoryResourceCache cache = new InMemoryResourceCache(InMemoryResourceCache.Capacity.entries(1000), 10, 60,
+                TimeUnit.SECONDS, now::get);
+        RemoteResourceProvider refreshingProvider = new RemoteResourceProvider(threadPoolManager, new JSONContentParser(), cache,
+                new DiskBinaryCache(Files.createTempDirectory("binaries"), 0), new MockRemoteStorageProvider(), false, 1);
+
+        Resource test_1 = refreshingProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+        assertNotNull(test_1);
+        List<String> expected = new ArrayList<>();
+        refreshingProvider.listChildren(resolveContext, test_1).forEachRemaining(child -> expected.add(child.getPath()));
+        assertNotNull(cache.get("/content/test-1").getChildrenSet());
+
+        // the directory did not change, but its children may have, so they are listed again
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        test_1 = refreshingProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+        assertNotNull(test_1);
+        assertNull(cache.get("/content/test-1").getChildrenSet(), "Expected the children of a refreshed directory to be dropped.");
+        List<String> actual = new ArrayList<>();
+        refreshingProvider.listChildren(resolveContext, test_1).forEachRemaining(child -> actual.add(child.getPath()));
+        assertEquals(expected, actual);
+        refreshingProvider.cleanup();
+    }
+
+    @Test
+    void testBatchRequests() throws IOException {
+        AtomicInteger singleFileRequests = new AtomicInteger();
+        AtomicInteger batchFileRequests = new AtomicInteger();
+        MockRemoteStorageProvider batchingStorageProvider = new MockRemoteStorageProvider() {
+            @Override
+            public @Nullable File getFile(@NotNull RemoteResourceReference reference, @Nullable Map<String, Object> authenticationInfo) {
+                singleFileRequests.incrementAndGet();
+                return super.getFile(reference, authenticationInfo);
+            }
+
+            @Override
+            public @NotNull Map<String, File> getFiles(@NotNull Collection<RemoteResourceReference> references,
+                                                       @NotNull Map<String, Object> authenticationInfo) {
+                batchFileRequests.incrementAndGet();
+                Map<String, File> files = new LinkedHashMap<>();
+                for (RemoteResourceReference reference : references) {
+                    files.put(reference.getPath(), super.getFile(reference, authenticationInfo));
+                }
+                return files;
+            }
+
+            @Override
+            public boolean supportsBatchRequests() {
+                return true;
+            }
+        };
+        RemoteResourceProvider batchingProvider = new RemoteResourceProvider(mock(ThreadPoolManager.class), new JSONContentParser(),
+                new InMemoryResourceCache(1000, 5), new DiskBinaryCache(Files.createTempDirectory("binaries"), 0),
+                batchingStorageProvider, false, 1);
+        Resource test_1 = batchingProvider.getResource(resolveContext, "/content/test-1", resourceContext, null);
+        assertNotNull(test_1);
+        singleFileRequests.set(0);
+        List<String> children = new ArrayList<>();
+        batchingProvider.listChildren(resolveContext, test_1).forEachRemaining(child -> children.add(child.getName()));
+        assertEquals(Set.of("hey", "little", "test-1.txt"), new HashSet<>(children));
+        assertEquals(0, singleFileRequests.get(), "Expected the files to be retrieved through a batch request.");
+        assertEquals(1, batchFileRequests.get());
+        batchingProvider.cleanup();
+    }
 }
@@ -19,7 +19,10 @@
 package org.apache.sling.commons.batch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -35,6 +38,8 @@ public class Batch {
 
         private List<ExecutionStrategy> strategies;
 
+        private List<BatchListener> listeners;
+
         private Builder() {
         }
 
@@ -68,8 +73,21 @@ public class Batch {
             return this;
         }
 
+        public Builder addListener(BatchListener listener) {
+            if (this.listeners == null) {
+                this.listeners = new ArrayList<>();
+            }
+            this.listeners.add(listener);
+            return this;
+        }
+
+        public Builder setListeners(List<BatchListener> listeners) {
+            this.listeners = listeners;
+            return this;
+        }
+
         public Batch build() {
-            return new Batch(operations, strategies);
+            return new Batch(operations, strategies, listeners);
         }
 
     }
@@ -82,21 +100,27 @@ public class Batch {
 
     private final List<ExecutionStrategy> strategies;
 
-    private STATUS status;
+    private final List<BatchListener> listeners;
+
+    private volatile STATUS status;
 
-    private Batch(List<Operation> operations, List<ExecutionStrategy> strategies) {
+    private Batch(List<Operation> operations, List<ExecutionStrategy> strategies, List<BatchListener> listeners) {
         this.operations = operations;
         this.strategies = strategies;
+        this.listeners = listeners != null ? listeners : Collections.emptyList();
         this.status = STATUS.NOT_STARTED;
     }
 
     public void execute() {
         this.status = STATUS.IN_PROGRESS;
         for (ExecutionStrategy strategy : strategies) {
+            long start = System.nanoTime();
             try {
                 log.debug("Executing strategy: {}", strategy);
                 Result result = strategy.execute(this);
                 log.debug("Recieved result: {}", result);
+                long duration = System.nanoTime() - start;
+                notifyListeners(l -> l.strategyCompleted(strategy, result, duration));
                 if (result.getStatus() == Result.STATUS.SUCCEEDED) {
                     log.info("Strategy {} executed successfully!", strategy);
                     this.status = STATUS.COMPLETE;
@@ -107,6 +131,9 @@ public class Batch {
                 }
             } catch (Exception e) {
                 log.error("Uncaught exception from strategy: {}", strategy, e);
+                long duration = System.nanoTime() - start;
+                notifyListeners(l -> l.strategyCompleted(strategy,
+                        Result.failed("Uncaught exception from strategy: " + strategy, e), duration));
                 strategy.reset(this);
             }
         }
@@ -115,6 +142,74 @@ public class Batch {
         this.status = STATUS.FAILED;
     }
 
+    /**
+     * Executes an operation of this batch on behalf of a strategy, notifying
+     * the listeners. Uncaught exceptions fail the operation.
+     * 
+     * @param operation the operation to execute
+     * @return the result of the operation
+     */
+    public Result executeOperation(Operation operation) {
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = operation.execute();
+        } catch (Exception e) {
+            log.error("Uncaught exception executing operation: {}", operation, e);
+            operation.setStatus(Operation.STATUS.FAILED);
+            result = Result.failed("Uncaught exception executing operation: " + operation, e);
+        }
+        long duration = System.nanoTime() - start;
+        Result completed = result;
+        notifyListeners(l -> l.operationCompleted(operation, completed, duration));
+        return result;
+    }
+
+    /**
+     * Calls the finalizer of a strategy, e.g. committing the changes, notifying
+     * the listeners. Uncaught exceptions fail the finalization.
+     * 
+     * @param finalizer the finalizer to call
+     * @return the result of finalizing
+     */
+    public Result runFinalizer(Supplier<Result> finalizer) {
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = finalizer.get();
+        } catch (Exception e) {
+            log.error("Uncaught exception calling finalizer", e);
+            result = Result.failed("Uncaught exception calling finalizer", e);
+        }
+        long duration = System.nanoTime() - start;
+        Result completed = result;
+        notifyListeners(l -> l.finalized(completed, duration));
+        return result;
+    }
+
+    private void notifyListeners(Consumer<BatchListener> event) {
+        for (BatchListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (Exception e) {
+                log.warn("Uncaught exception from listener: {}", listener, e);
+            }
+        }
+    }
+
+    /**
+     * @return the fraction of operations which have either succeeded or failed,
+     *         from 0.0 to 1.0
+     */
+    public double getProgress() {
+        if (operations.isEmpty()) {
+            return 1.0;
+        }
+        long done = operations.stream().map(Operation::getStatus)
+                .filter(s -> s == Operation.STATUS.SUCCEEDED || s == Operation.STATUS.FAILED).count();
+        return (double) done / operations.size();
+    }
+
     public boolean allOperationsSucceeded() {
         return operations.stream().allMatch(op -> op.getStatus() == Operation.STATUS.SUCCEEDED);
     }
@@ -141,4 +236,8 @@ public class Batch {
         return this.strategies;
     }
 
+    public List<BatchListener> getListeners() {
+        return this.listeners;
+    }
+
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch;
+
+/**
+ * Listener notified about the progress of a batch, e.g. to collect metrics.
+ * Listeners may be notified concurrently by strategies executing operations
+ * in parallel. All durations are in nanoseconds.
+ */
+public interface BatchListener {
+
+    /**
+     * Called after a strategy was executed.
+     * 
+     * @param strategy the strategy
+     * @param result   the result of the strategy
+     * @param duration the time it took to execute the strategy
+     */
+    default void strategyCompleted(ExecutionStrategy strategy, Result result, long duration) {
+    }
+
+    /**
+     * Called after an operation was executed.
+     * 
+     * @param operation the operation
+     * @param result    the result of the operation
+     * @param duration  the time it took to execute the operation
+     */
+    default void operationCompleted(Operation operation, Result result, long duration) {
+    }
+
+    /**
+     * Called after a strategy finalized operations, e.g. committed the changes
+     * to the repository.
+     * 
+     * @param result   the result of finalizing
+     * @param duration the time it took to finalize
+     */
+    default void finalized(Result result, long duration) {
+    }
+}
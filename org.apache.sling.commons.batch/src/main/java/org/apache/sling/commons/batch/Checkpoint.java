@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch;
+
+import java.util.BitSet;
+
+/**
+ * The persisted state of a {@link StreamingBatch}: the number of operations
+ * executed by completed windows and which of them succeeded or failed.
+ */
+public class Checkpoint {
+
+    private final int processed;
+    private final BitSet succeeded;
+    private final BitSet failed;
+
+    public Checkpoint(int processed, BitSet succeeded, BitSet failed) {
+        this.processed = processed;
+        this.succeeded = (BitSet) succeeded.clone();
+        this.failed = (BitSet) failed.clone();
+    }
+
+    /**
+     * @return the number of operations executed by the completed windows
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return the indexes of the operations which succeeded
+     */
+    public BitSet getSucceeded() {
+        return (BitSet) succeeded.clone();
+    }
+
+    /**
+     * @return the indexes of the operations which failed
+     */
+    public BitSet getFailed() {
+        return (BitSet) failed.clone();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Checkpoint [processed=" + processed + ", succeeded=" + succeeded.cardinality() + ", failed="
+                + failed.cardinality() + "]";
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch;
+
+import java.io.IOException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persists the checkpoints of streaming batches, so a batch re-run with the
+ * same id skips the operations already executed.
+ */
+public interface CheckpointStore {
+
+    /**
+     * Loads the checkpoint of a batch.
+     * 
+     * @param id the id of the batch
+     * @return the checkpoint or null if there is none
+     * @throws IOException an exception occurs loading the checkpoint
+     */
+    @Nullable
+    Checkpoint load(@NotNull String id) throws IOException;
+
+    /**
+     * Saves the checkpoint of a batch, replacing any previous checkpoint.
+     * 
+     * @param id         the id of the batch
+     * @param checkpoint the checkpoint to save
+     * @throws IOException an exception occurs saving the checkpoint
+     */
+    void save(@NotNull String id, @NotNull Checkpoint checkpoint) throws IOException;
+
+    /**
+     * Removes the checkpoint of a batch, so the batch will be executed from the
+     * start.
+     * 
+     * @param id the id of the batch
+     * @throws IOException an exception occurs removing the checkpoint
+     */
+    void remove(@NotNull String id) throws IOException;
+}
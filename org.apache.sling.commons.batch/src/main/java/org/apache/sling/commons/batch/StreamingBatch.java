@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A batch which pulls its operations lazily from an iterator and executes
+ * them in windows of windowSize operations, so the operations of huge batches
+ * never need to be held in memory at once. Each window is executed as a
+ * {@link Batch} with the configured strategies, after which only the outcome
+ * of each operation is kept, as a bit per operation index.
+ * 
+ * If no strategy succeeds for a window, the remaining operations are not
+ * executed and the batch fails.
+ * 
+ * With a {@link CheckpointStore}, a checkpoint is saved after each completed
+ * window. Re-running a batch with the same id and operations skips the
+ * operations of the completed windows, so long running batches can be resumed
+ * after a restart. Once the batch is complete its checkpoint is removed, so
+ * running a batch with the same id again executes all of its operations.
+ */
+public class StreamingBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingBatch.class);
+
+    public static final int DEFAULT_WINDOW_SIZE = 1000;
+
+    public static class Builder {
+
+        private Iterator<? extends Operation> operations;
+
+        private List<ExecutionStrategy> strategies;
+
+        private List<BatchListener> listeners;
+
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+
+        private long expectedSize = -1;
+
+        private String id;
+
+        private CheckpointStore checkpointStore;
+
+        private Builder() {
+        }
+
+        public static Builder getInstance() {
+            return new Builder();
+        }
+
+        public Builder setOperations(Iterator<? extends Operation> operations) {
+            this.operations = operations;
+            return this;
+        }
+
+        public Builder setOperations(Spliterator<? extends Operation> operations) {
+            this.operations = Spliterators.iterator(operations);
+            this.expectedSize = operations.getExactSizeIfKnown();
+            return this;
+        }
+
+        public Builder setOperations(Stream<? extends Operation> operations) {
+            return setOperations(operations.spliterator());
+        }
+
+        /**
+         * Sets the number of operations expected, used to calculate the progress
+         * if the size of the operations is not known up front.
+         */
+        public Builder setExpectedSize(long expectedSize) {
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        public Builder addStrategy(ExecutionStrategy strategy) {
+            if (this.strategies == null) {
+                this.strategies = new ArrayList<>();
+            }
+            this.strategies.add(strategy);
+            return this;
+        }
+
+        public Builder setStrategies(List<ExecutionStrategy> strategies) {
+            this.strategies = strategies;
+            return this;
+        }
+
+        public Builder addListener(BatchListener listener) {
+            if (this.listeners == null) {
+                this.listeners = new ArrayList<>();
+            }
+            this.listeners.add(listener);
+            return this;
+        }
+
+        public Builder setListeners(List<BatchListener> listeners) {
+            this.listeners = listeners;
+            return this;
+        }
+
+        /**
+         * Saves a checkpoint of the batch with the id in the store after every
+         * window, resuming from the last checkpoint when executed.
+         */
+        public Builder setCheckpoint(String id, CheckpointStore checkpointStore) {
+            this.id = id;
+            this.checkpointStore = checkpointStore;
+            return this;
+        }
+
+        public Builder setWindowSize(int windowSize) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("Window size must be at least 1, was: " + windowSize);
+            }
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public StreamingBatch build() {
+            return new StreamingBatch(this);
+        }
+
+    }
+
+    private final Iterator<? extends Operation> operations;
+
+    private final List<ExecutionStrategy> strategies;
+
+    private final List<BatchListener> listeners;
+
+    private final int windowSize;
+
+    private final long expectedSize;
+
+    private final String id;
+
+    private final CheckpointStore checkpointStore;
+
+    private final BitSet succeeded = new BitSet();
+
+    private final BitSet failed = new BitSet();
+
+    private volatile int processed;
+
+    private volatile Batch.STATUS status;
+
+    private StreamingBatch(Builder builder) {
+        this.operations = builder.operations;
+        this.strategies = builder.strategies;
+        this.listeners = builder.listeners;
+        this.windowSize = builder.windowSize;
+        this.expectedSize = builder.expectedSize;
+        this.id = builder.id;
+        this.checkpointStore = builder.checkpointStore;
+        this.status = Batch.STATUS.NOT_STARTED;
+    }
+
+    public void execute() {
+        this.status = Batch.STATUS.IN_PROGRESS;
+        if (checkpointStore != null && !resume()) {
+            this.status = Batch.STATUS.FAILED;
+            return;
+        }
+        while (operations.hasNext()) {
+            List<Operation> window = new ArrayList<>(windowSize);
+            while (window.size() < windowSize && operations.hasNext()) {
+                window.add(operations.next());
+            }
+            log.debug("Executing window of {} operations starting at {}", window.size(), processed);
+            Batch batch = Batch.Builder.getInstance().setOperations(window).setStrategies(strategies)
+                    .setListeners(listeners).build();
+            batch.execute();
+            for (Operation op : window) {
+                if (op.getStatus() == Operation.STATUS.SUCCEEDED) {
+                    succeeded.set(processed);
+                } else {
+                    failed.set(processed);
+                }
+                processed++;
+            }
+            if (batch.getStatus() == Batch.STATUS.FAILED) {
+                log.warn("Window ending at {} failed, batch failed", processed);
+                this.status = Batch.STATUS.FAILED;
+                return;
+            }
+            saveCheckpoint();
+        }
+        log.info("Executed {} operations, {} failed", processed, failed.cardinality());
+        this.status = Batch.STATUS.COMPLETE;
+        removeCheckpoint();
+    }
+
+    private boolean resume() {
+        Checkpoint checkpoint;
+        try {
+            checkpoint = checkpointStore.load(id);
+        } catch (IOException e) {
+            log.error("Failed to load checkpoint of batch {}", id, e);
+            return false;
+        }
+        if (checkpoint != null) {
+            log.info("Resuming batch {} from {}", id, checkpoint);
+            succeeded.or(checkpoint.getSucceeded());
+            failed.or(checkpoint.getFailed());
+            while (processed < checkpoint.getProcessed() && operations.hasNext()) {
+                operations.next();
+                processed++;
+            }
+        }
+        return true;
+    }
+
+    private void saveCheckpoint() {
+        if (checkpointStore != null) {
+            try {
+                checkpointStore.save(id, new Checkpoint(processed, succeeded, failed));
+            } catch (IOException e) {
+                log.warn("Failed to save checkpoint of batch {}, continuing without", id, e);
+            }
+        }
+    }
+
+    private void removeCheckpoint() {
+        if (checkpointStore != null) {
+            try {
+                checkpointStore.remove(id);
+            } catch (IOException e) {
+                log.warn("Failed to remove checkpoint of batch {}", id, e);
+            }
+        }
+    }
+
+    public boolean allOperationsSucceeded() {
+        return failed.isEmpty() && !operations.hasNext();
+    }
+
+    /**
+     * @return the indexes of the operations which were executed and did not
+     *         succeed
+     */
+    public IntStream getFailedOperations() {
+        return failed.stream();
+    }
+
+    public int getFailedCount() {
+        return failed.cardinality();
+    }
+
+    /**
+     * @return the indexes of the operations which succeeded
+     */
+    public IntStream getSucceededOperations() {
+        return succeeded.stream();
+    }
+
+    public int getSucceededCount() {
+        return succeeded.cardinality();
+    }
+
+    public boolean isSucceeded(int index) {
+        return succeeded.get(index);
+    }
+
+    /**
+     * @return the fraction of the expected operations which have been executed,
+     *         from 0.0 to 1.0, or -1 if the number of operations is not known
+     */
+    public double getProgress() {
+        if (status == Batch.STATUS.COMPLETE) {
+            return 1.0;
+        }
+        if (expectedSize < 0) {
+            return -1;
+        }
+        return expectedSize == 0 ? 1.0 : Math.min(1.0, (double) processed / expectedSize);
+    }
+
+    /**
+     * @return the number of operations pulled from the iterator and executed so
+     *         far
+     */
+    public int getProcessedCount() {
+        return processed;
+    }
+
+    public Batch.STATUS getStatus() {
+        return status;
+    }
+
+    public List<ExecutionStrategy> getStrategies() {
+        return this.strategies;
+    }
+
+    public List<BatchListener> getListeners() {
+        return this.listeners;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.apache.sling.commons.batch.BatchListener;
+import org.apache.sling.commons.batch.ExecutionStrategy;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Publishes the progress of batches as Dropwizard metrics, all named with the
+ * provided prefix:
+ * 
+ * <ul>
+ * <li>operations - timer of the operations, including their throughput</li>
+ * <li>operations.failed.[cause] - counters of the failed operations</li>
+ * <li>strategy.[strategy] - timers of the strategies executed</li>
+ * <li>finalize - timer of finalizing, e.g. committing, operations</li>
+ * <li>finalize.failed.[cause] - counters of the failed finalizations</li>
+ * <li>progress - gauge of the percent complete of a registered batch</li>
+ * </ul>
+ * 
+ * The cause of a failure is the class of the exception causing it, or
+ * "result" if the failed result has no cause.
+ */
+public class BatchMetrics implements BatchListener {
+
+    private final MetricRegistry registry;
+
+    private final String prefix;
+
+    public BatchMetrics(MetricRegistry registry, String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Publishes the progress of a batch as a gauge, e.g.
+     * <code>metrics.registerProgress(batch::getProgress)</code>. Replaces the
+     * progress of a previously registered batch.
+     * 
+     * @param progress the supplier of the progress, from 0.0 to 1.0
+     */
+    public void registerProgress(DoubleSupplier progress) {
+        String name = MetricRegistry.name(prefix, "progress");
+        registry.remove(name);
+        registry.register(name, (Gauge<Double>) () -> progress.getAsDouble() * 100);
+    }
+
+    @Override
+    public void strategyCompleted(ExecutionStrategy strategy, Result result, long duration) {
+        registry.timer(MetricRegistry.name(prefix, "strategy", strategy.getClass().getSimpleName()))
+                .update(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void operationCompleted(Operation operation, Result result, long duration) {
+        registry.timer(MetricRegistry.name(prefix, "operations")).update(duration, TimeUnit.NANOSECONDS);
+        if (result.getStatus() != Result.STATUS.SUCCEEDED) {
+            registry.counter(MetricRegistry.name(prefix, "operations", "failed", getCause(result))).inc();
+        }
+    }
+
+    @Override
+    public void finalized(Result result, long duration) {
+        registry.timer(MetricRegistry.name(prefix, "finalize")).update(duration, TimeUnit.NANOSECONDS);
+        if (result.getStatus() != Result.STATUS.SUCCEEDED) {
+            registry.counter(MetricRegistry.name(prefix, "finalize", "failed", getCause(result))).inc();
+        }
+    }
+
+    private static String getCause(Result result) {
+        return result.getCause() != null ? result.getCause().getClass().getSimpleName() : "result";
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.provided;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.sling.commons.batch.Batch;
+import org.apache.sling.commons.batch.ExecutionStrategy;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-executes the operations of the batch which have not succeeded, finalizing
+ * them together. If an operation or finalizing fails the operations are reset,
+ * split in halves and each half is executed and finalized on its own, until the
+ * failing operation is isolated, so one poison operation does not fail the
+ * others and operations which only failed transiently succeed on the next try.
+ * 
+ * Intended as a fallback after other strategies, e.g. the
+ * {@link FinalizeOnceStrategy}, which resets every operation when it fails, or
+ * the {@link FinalizePerChunkStrategy}, which marks the operations it isolated
+ * as failed. The strategy succeeds once every operation has been attempted,
+ * operations which failed on their own are marked as failed.
+ */
+public class BisectingStrategy implements ExecutionStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(BisectingStrategy.class);
+
+    private final Supplier<Result> finalizer;
+    private final Runnable resetter;
+
+    public BisectingStrategy(Supplier<Result> finalizer, Runnable resetter) {
+        this.finalizer = finalizer;
+        this.resetter = resetter;
+    }
+
+    @Override
+    public Result execute(Batch batch) {
+        List<Operation> operations = batch.getFailedOperations();
+        log.debug("Retrying {} operations which have not succeeded", operations.size());
+        operations.forEach(Operation::reset);
+        bisect(batch, operations);
+        return Result.succeeded("Retried " + operations.size() + " operations, "
+                + batch.getFailedOperations().size() + " failed");
+    }
+
+    private void bisect(Batch batch, List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (executeAll(batch, operations)) {
+            Result result = batch.runFinalizer(finalizer);
+            if (result.getStatus() == Result.STATUS.SUCCEEDED) {
+                log.debug("Finalizing {} operations succeeded: {}", operations.size(), result);
+                return;
+            }
+            log.warn("Finalizing {} operations failed: {}", operations.size(), result);
+        }
+        resetter.run();
+        if (operations.size() == 1) {
+            log.warn("Isolated failing operation {}", operations.get(0));
+            operations.get(0).setStatus(Operation.STATUS.FAILED);
+        } else {
+            operations.forEach(Operation::reset);
+            int middle = operations.size() / 2;
+            bisect(batch, operations.subList(0, middle));
+            bisect(batch, operations.subList(middle, operations.size()));
+        }
+    }
+
+    private boolean executeAll(Batch batch, List<Operation> operations) {
+        for (Operation op : operations) {
+            Result result = batch.executeOperation(op);
+            if (result.getStatus() != Result.STATUS.SUCCEEDED) {
+                log.warn("Executing operation {} failed: {}", op, result);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset(Batch batch) {
+        resetter.run();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.provided;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Properties;
+
+import org.apache.sling.commons.batch.Checkpoint;
+import org.apache.sling.commons.batch.CheckpointStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores checkpoints as properties files in a local directory, one file per
+ * batch id. Files are replaced atomically, so a crash while saving leaves the
+ * previous checkpoint intact.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final String PN_PROCESSED = "processed";
+    private static final String PN_SUCCEEDED = "succeeded";
+    private static final String PN_FAILED = "failed";
+
+    private final Path directory;
+
+    public FileCheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public @Nullable Checkpoint load(@NotNull String id) throws IOException {
+        Path file = getFile(id);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        }
+        try {
+            return new Checkpoint(Integer.parseInt(properties.getProperty(PN_PROCESSED)),
+                    decode(properties.getProperty(PN_SUCCEEDED)), decode(properties.getProperty(PN_FAILED)));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Invalid checkpoint file: " + file, e);
+        }
+    }
+
+    @Override
+    public void save(@NotNull String id, @NotNull Checkpoint checkpoint) throws IOException {
+        Files.createDirectories(directory);
+        Properties properties = new Properties();
+        properties.setProperty(PN_PROCESSED, String.valueOf(checkpoint.getProcessed()));
+        properties.setProperty(PN_SUCCEEDED, encode(checkpoint.getSucceeded()));
+        properties.setProperty(PN_FAILED, encode(checkpoint.getFailed()));
+        Path file = getFile(id);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                properties.store(os, "Checkpoint of batch " + id);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void remove(@NotNull String id) throws IOException {
+        Files.deleteIfExists(getFile(id));
+    }
+
+    private Path getFile(String id) {
+        return directory.resolve(URLEncoder.encode(id, StandardCharsets.UTF_8) + ".properties");
+    }
+
+    private static String encode(BitSet bits) {
+        return Base64.getEncoder().encodeToString(bits.toByteArray());
+    }
+
+    private static BitSet decode(String value) {
+        return BitSet.valueOf(Base64.getDecoder().decode(value));
+    }
+
+}
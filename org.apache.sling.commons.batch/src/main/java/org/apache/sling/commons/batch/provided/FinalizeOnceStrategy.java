@@ -42,21 +42,9 @@ public class FinalizeOnceStrategy implements ExecutionStrategy {
     @Override
     public Result execute(Batch batch) {
         boolean succeeded = batch.getOperations().stream().filter(op -> op.getStatus() == Operation.STATUS.NOT_STARTED)
-                .map(op -> {
-                    try {
-                        return op.execute();
-                    } catch (Exception e) {
-                        log.error("Uncaught exception executing operation: {}", op, e);
-                        return Result.failed("Uncaught exception executing operation: " + op, e);
-                    }
-                }).allMatch(r -> r.getStatus() == Result.STATUS.SUCCEEDED);
+                .map(batch::executeOperation).allMatch(r -> r.getStatus() == Result.STATUS.SUCCEEDED);
         if (succeeded) {
-            try {
-                return finalizer.get();
-            } catch (Exception e) {
-                log.error("Uncaught exception calling finalizer", e);
-                return Result.failed("Uncaught exception calling finalizer", e);
-            }
+            return batch.runFinalizer(finalizer);
         } else {
             log.warn("Not all operations succeeded, strategy failed");
             return Result.failed("Not all operations succeeded");
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.provided;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import org.apache.sling.commons.batch.Batch;
+import org.apache.sling.commons.batch.ExecutionStrategy;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the operations of the batch in chunks, finalizing once per chunk.
+ * A chunk is closed once it contains chunkSize operations or the weight of
+ * its operations, e.g. the number of bytes they will change, reaches
+ * maxChunkWeight.
+ * 
+ * When a chunk fails only that chunk is reset and retried: if an operation
+ * failed it is marked as failed and the operations before and after it are
+ * retried as separate chunks, if finalizing failed the chunk is split in
+ * halves until the failing operation is isolated. Chunks which were already
+ * finalized are not affected.
+ * 
+ * The strategy succeeds once every chunk has been attempted, the operations
+ * which failed are available from {@link Batch#getFailedOperations()}.
+ */
+public class FinalizePerChunkStrategy implements ExecutionStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(FinalizePerChunkStrategy.class);
+
+    private final Supplier<Result> finalizer;
+    private final Runnable resetter;
+    private final int chunkSize;
+    private final long maxChunkWeight;
+    private final ToLongFunction<Operation> weigher;
+
+    public FinalizePerChunkStrategy(Supplier<Result> finalizer, Runnable resetter, int chunkSize) {
+        this(finalizer, resetter, chunkSize, Long.MAX_VALUE, op -> 0L);
+    }
+
+    public FinalizePerChunkStrategy(Supplier<Result> finalizer, Runnable resetter, int chunkSize,
+            long maxChunkWeight, ToLongFunction<Operation> weigher) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, was: " + chunkSize);
+        }
+        this.finalizer = finalizer;
+        this.resetter = resetter;
+        this.chunkSize = chunkSize;
+        this.maxChunkWeight = maxChunkWeight;
+        this.weigher = weigher;
+    }
+
+    @Override
+    public Result execute(Batch batch) {
+        int chunks = 0;
+        List<Operation> chunk = new ArrayList<>();
+        long weight = 0;
+        for (Operation op : batch.getOperations()) {
+            if (op.getStatus() != Operation.STATUS.NOT_STARTED) {
+                continue;
+            }
+            chunk.add(op);
+            weight += weigher.applyAsLong(op);
+            if (chunk.size() >= chunkSize || weight >= maxChunkWeight) {
+                log.debug("Executing chunk {} with {} operations and weight {}", chunks, chunk.size(), weight);
+                executeChunk(batch, chunk);
+                chunks++;
+                chunk = new ArrayList<>();
+                weight = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            log.debug("Executing chunk {} with {} operations and weight {}", chunks, chunk.size(), weight);
+            executeChunk(batch, chunk);
+            chunks++;
+        }
+        // as with finalizing per operation, failed operations do not fail the
+        // strategy, they are reported through the listeners and the batch
+        return Result.succeeded("Executed " + chunks + " chunks");
+    }
+
+    private void executeChunk(Batch batch, List<Operation> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            Operation op = chunk.get(i);
+            if (batch.executeOperation(op).getStatus() != Result.STATUS.SUCCEEDED) {
+                log.warn("Operation {} failed, retrying the rest of the chunk", op);
+                resetter.run();
+                op.setStatus(Operation.STATUS.FAILED);
+                List<Operation> before = chunk.subList(0, i);
+                before.forEach(Operation::reset);
+                executeChunk(batch, before);
+                executeChunk(batch, chunk.subList(i + 1, chunk.size()));
+                return;
+            }
+        }
+        Result result = batch.runFinalizer(finalizer);
+        if (result.getStatus() == Result.STATUS.SUCCEEDED) {
+            log.debug("Finalizing chunk of {} operations succeeded: {}", chunk.size(), result);
+            return;
+        }
+        log.warn("Finalizing chunk of {} operations failed: {}", chunk.size(), result);
+        resetter.run();
+        if (chunk.size() == 1) {
+            chunk.get(0).setStatus(Operation.STATUS.FAILED);
+        } else {
+            chunk.forEach(Operation::reset);
+            int middle = chunk.size() / 2;
+            executeChunk(batch, chunk.subList(0, middle));
+            executeChunk(batch, chunk.subList(middle, chunk.size()));
+        }
+    }
+
+    @Override
+    public void reset(Batch batch) {
+        resetter.run();
+    }
+
+}
@@ -43,7 +43,7 @@ public class FinalizePerOperationStrategy implements ExecutionStrategy {
     public Result execute(Batch batch) {
         batch.getOperations().stream().filter(op -> op.getStatus() == Operation.STATUS.NOT_STARTED).forEach(op -> {
             try {
-                executeOperation(op);
+                executeOperation(batch, op);
             } catch (Exception e) {
                 log.error("Uncaught exception executing operation: {}", op, e);
                 op.setStatus(Operation.STATUS.FAILED);
@@ -53,12 +53,12 @@ public class FinalizePerOperationStrategy implements ExecutionStrategy {
         return Result.succeeded();
     }
 
-    private void executeOperation(Operation op) {
-        Result opResult = op.execute();
+    private void executeOperation(Batch batch, Operation op) {
+        Result opResult = batch.executeOperation(op);
         log.debug("Retrived result {} from operation: {}", opResult, op);
         if (opResult.getStatus() == Result.STATUS.SUCCEEDED) {
             log.debug("Finalizing operation");
-            Result result = finalizer.get();
+            Result result = batch.runFinalizer(finalizer);
             if (result.getStatus() != Result.STATUS.SUCCEEDED) {
                 log.warn("Finalizing operation failed: {}", result);
                 op.setStatus(Operation.STATUS.FAILED);
@@ -68,6 +68,7 @@ public class FinalizePerOperationStrategy implements ExecutionStrategy {
             }
         } else {
             log.warn("Executing operation {} failed: {}", op, opResult);
+            op.setStatus(Operation.STATUS.FAILED);
             this.resetter.run();
         }
     }
@@ -21,6 +21,7 @@ package org.apache.sling.commons.batch.provided;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.sling.commons.batch.Operation;
 import org.apache.sling.commons.batch.Result;
@@ -45,6 +46,14 @@ public class FunctionalOperation<T> implements Operation {
         return value.stream().map(v -> new FunctionalOperation<>(v, function)).collect(Collectors.toList());
     }
 
+    /**
+     * Lazily maps the values to operations, for use with a
+     * {@link org.apache.sling.commons.batch.StreamingBatch}.
+     */
+    public static <T> Stream<FunctionalOperation<T>> newOperations(Stream<T> values, Function<T, Result> function) {
+        return values.map(v -> new FunctionalOperation<>(v, function));
+    }
+
     @Override
     public void reset() {
         this.setStatus(Operation.STATUS.NOT_STARTED);
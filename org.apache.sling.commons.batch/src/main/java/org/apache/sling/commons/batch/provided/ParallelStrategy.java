@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.provided;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.sling.commons.batch.Batch;
+import org.apache.sling.commons.batch.ExecutionStrategy;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the operations of the batch concurrently on an executor and
+ * finalizes once all of them succeeded. At most maxConcurrency operations are
+ * in flight at a time, so blocking operations can be run on any executor, e.g.
+ * a virtual thread per task executor, without overwhelming the systems they
+ * call. Operations must be independent of each other.
+ * 
+ * As with the {@link FinalizeOnceStrategy}, no further operations are started
+ * once an operation failed and resetting resets all operations.
+ */
+public class ParallelStrategy implements ExecutionStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelStrategy.class);
+
+    private final Supplier<Result> finalizer;
+    private final Runnable resetter;
+    private final Executor executor;
+    private final int maxConcurrency;
+
+    public ParallelStrategy(Supplier<Result> finalizer, Runnable resetter, int maxConcurrency) {
+        this(finalizer, resetter, ForkJoinPool.commonPool(), maxConcurrency);
+    }
+
+    public ParallelStrategy(Supplier<Result> finalizer, Runnable resetter, Executor executor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1, was: " + maxConcurrency);
+        }
+        this.finalizer = finalizer;
+        this.resetter = resetter;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public Result execute(Batch batch) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Operation op : batch.getOperations()) {
+            if (op.getStatus() != Operation.STATUS.NOT_STARTED) {
+                continue;
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                log.warn("Interrupted submitting operations, strategy failed");
+                Thread.currentThread().interrupt();
+                failed.set(true);
+            }
+            if (failed.get()) {
+                break;
+            }
+            try {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        if (batch.executeOperation(op).getStatus() != Result.STATUS.SUCCEEDED) {
+                            failed.set(true);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                }, executor));
+            } catch (RejectedExecutionException e) {
+                log.error("Executor rejected operation: {}", op, e);
+                permits.release();
+                failed.set(true);
+            }
+        }
+        log.debug("Waiting for {} operations to complete", futures.size());
+        futures.forEach(CompletableFuture::join);
+        if (!failed.get()) {
+            return batch.runFinalizer(finalizer);
+        } else {
+            log.warn("Not all operations succeeded, strategy failed");
+            return Result.failed("Not all operations succeeded");
+        }
+    }
+
+    @Override
+    public void reset(Batch batch) {
+        batch.getOperations().stream().forEach(Operation::reset);
+        resetter.run();
+    }
+
+}
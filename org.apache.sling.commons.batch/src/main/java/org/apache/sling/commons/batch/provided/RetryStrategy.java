@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.provided;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import org.apache.sling.commons.batch.Batch;
+import org.apache.sling.commons.batch.ExecutionStrategy;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates another strategy, resetting and retrying it up to maxAttempts
+ * times if it fails. Strategies which isolate failures, e.g. the
+ * {@link FinalizePerChunkStrategy} and {@link FinalizePerOperationStrategy},
+ * succeed with operations marked as failed, in which case only the failed
+ * operations are reset and retried. The delay between attempts doubles with
+ * each attempt, starting at initialDelay and capped at maxDelay milliseconds,
+ * and is randomized by up to half, so concurrent batches with conflicting
+ * writes do not retry in lockstep.
+ */
+public class RetryStrategy implements ExecutionStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryStrategy.class);
+
+    private final ExecutionStrategy delegate;
+    private final int maxAttempts;
+    private final long initialDelay;
+    private final long maxDelay;
+
+    public RetryStrategy(ExecutionStrategy delegate, int maxAttempts, long initialDelay, long maxDelay) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1, was: " + maxAttempts);
+        }
+        if (initialDelay < 0) {
+            throw new IllegalArgumentException("Initial delay must not be negative, was: " + initialDelay);
+        }
+        if (maxDelay < initialDelay) {
+            throw new IllegalArgumentException(
+                    "Max delay must be at least the initial delay " + initialDelay + ", was: " + maxDelay);
+        }
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public Result execute(Batch batch) {
+        for (int attempt = 1;; attempt++) {
+            Result result = executeDelegate(batch);
+            if (attempt >= maxAttempts) {
+                return result;
+            }
+            long delay = getDelay(attempt);
+            if (result.getStatus() == Result.STATUS.SUCCEEDED) {
+                List<Operation> failed = batch.getOperations().stream()
+                        .filter(op -> op.getStatus() == Operation.STATUS.FAILED).collect(Collectors.toList());
+                if (failed.isEmpty()) {
+                    return result;
+                }
+                failed.forEach(Operation::reset);
+                log.info("Attempt {} of {} failed {} operations, retrying them in {}ms", attempt, maxAttempts,
+                        failed.size(), delay);
+            } else {
+                delegate.reset(batch);
+                log.info("Attempt {} of {} failed, retrying in {}ms: {}", attempt, maxAttempts, delay, result);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                log.warn("Interrupted waiting to retry strategy: {}", delegate);
+                Thread.currentThread().interrupt();
+                return Result.failed("Interrupted waiting to retry", e);
+            }
+        }
+    }
+
+    private Result executeDelegate(Batch batch) {
+        try {
+            return delegate.execute(batch);
+        } catch (Exception e) {
+            log.error("Uncaught exception from strategy: {}", delegate, e);
+            return Result.failed("Uncaught exception from strategy: " + delegate, e);
+        }
+    }
+
+    private long getDelay(int attempt) {
+        int shift = Math.min(attempt - 1, Long.SIZE - 2);
+        long delay = initialDelay > maxDelay >> shift ? maxDelay : initialDelay << shift;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    @Override
+    public void reset(Batch batch) {
+        delegate.reset(batch);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RetryStrategy [delegate=" + delegate + ", maxAttempts=" + maxAttempts + "]";
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.sling;
+
+import java.util.function.ToLongFunction;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.batch.Operation;
+import org.apache.sling.commons.batch.Result;
+import org.apache.sling.commons.batch.provided.FinalizePerChunkStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Commits the changes of the batch every chunkSize operations, or once the
+ * weight of the pending operations, e.g. the size of the binaries they write,
+ * reaches maxChunkWeight, keeping the transient space bounded.
+ */
+public class CommitPerChunkStrategy extends FinalizePerChunkStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitPerChunkStrategy.class);
+
+    public CommitPerChunkStrategy(final ResourceResolver resolver, int chunkSize) {
+        this(resolver, chunkSize, Long.MAX_VALUE, op -> 0L);
+    }
+
+    public CommitPerChunkStrategy(final ResourceResolver resolver, int chunkSize, long maxChunkWeight,
+            ToLongFunction<Operation> weigher) {
+        super(() -> {
+            try {
+                resolver.commit();
+                return Result.succeeded();
+            } catch (PersistenceException pe) {
+                log.warn("Failed to commit chunk", pe);
+                return Result.failed("Failed to commit chunk", pe);
+            }
+        }, () -> {
+            resolver.revert();
+            resolver.refresh();
+        }, chunkSize, maxChunkWeight, weigher);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.sling;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.batch.Checkpoint;
+import org.apache.sling.commons.batch.CheckpointStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores checkpoints as resources under a parent path, one resource per batch
+ * id, committing each change. The resolver should not be the one used by the
+ * operations of the batch, so saving a checkpoint does not commit their
+ * pending changes.
+ */
+public class ResourceCheckpointStore implements CheckpointStore {
+
+    private static final String PN_PROCESSED = "processed";
+    private static final String PN_SUCCEEDED = "succeeded";
+    private static final String PN_FAILED = "failed";
+    private static final String RESOURCE_TYPE = "sling:Folder";
+
+    private final ResourceResolver resolver;
+    private final String parentPath;
+
+    public ResourceCheckpointStore(ResourceResolver resolver, String parentPath) {
+        this.resolver = resolver;
+        this.parentPath = parentPath;
+    }
+
+    @Override
+    public @Nullable Checkpoint load(@NotNull String id) throws IOException {
+        Resource resource = resolver.getResource(getPath(id));
+        if (resource == null) {
+            return null;
+        }
+        ValueMap properties = resource.getValueMap();
+        try {
+            return new Checkpoint(properties.get(PN_PROCESSED, 0), decode(properties.get(PN_SUCCEEDED, "")),
+                    decode(properties.get(PN_FAILED, "")));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid checkpoint resource: " + resource.getPath(), e);
+        }
+    }
+
+    @Override
+    public void save(@NotNull String id, @NotNull Checkpoint checkpoint) throws IOException {
+        try {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, RESOURCE_TYPE);
+            Resource resource = ResourceUtil.getOrCreateResource(resolver, getPath(id), properties, RESOURCE_TYPE,
+                    false);
+            ModifiableValueMap mvm = resource.adaptTo(ModifiableValueMap.class);
+            if (mvm == null) {
+                throw new IOException("Cannot modify checkpoint resource: " + resource.getPath());
+            }
+            mvm.put(PN_PROCESSED, checkpoint.getProcessed());
+            mvm.put(PN_SUCCEEDED, encode(checkpoint.getSucceeded()));
+            mvm.put(PN_FAILED, encode(checkpoint.getFailed()));
+            resolver.commit();
+        } catch (PersistenceException pe) {
+            resolver.revert();
+            throw new IOException("Failed to save checkpoint of batch " + id, pe);
+        }
+    }
+
+    @Override
+    public void remove(@NotNull String id) throws IOException {
+        Resource resource = resolver.getResource(getPath(id));
+        if (resource != null) {
+            try {
+                resolver.delete(resource);
+                resolver.commit();
+            } catch (PersistenceException pe) {
+                resolver.revert();
+                throw new IOException("Failed to remove checkpoint of batch " + id, pe);
+            }
+        }
+    }
+
+    private String getPath(String id) {
+        return parentPath + "/" + URLEncoder.encode(id, StandardCharsets.UTF_8).replace("*", "%2A");
+    }
+
+    private static String encode(BitSet bits) {
+        return Base64.getEncoder().encodeToString(bits.toByteArray());
+    }
+
+    private static BitSet decode(String value) {
+        return BitSet.valueOf(Base64.getDecoder().decode(value));
+    }
+
+}
@@ -18,22 +18,45 @@
  */
 package org.apache.sling.commons.batch;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.sling.commons.batch.Batch.Builder;
+import org.apache.sling.commons.batch.provided.BisectingStrategy;
+import org.apache.sling.commons.batch.provided.FileCheckpointStore;
 import org.apache.sling.commons.batch.provided.FinalizeOnceStrategy;
+import org.apache.sling.commons.batch.provided.FinalizePerChunkStrategy;
 import org.apache.sling.commons.batch.provided.FinalizePerOperationStrategy;
 import org.apache.sling.commons.batch.provided.FunctionalOperation;
+import org.apache.sling.commons.batch.provided.ParallelStrategy;
+import org.apache.sling.commons.batch.provided.RetryStrategy;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class BatchTest {
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testBuilder() {
 
@@ -109,4 +132,428 @@ public class BatchTest {
         assertEquals(1, bad.getFailedOperations().size());
     }
 
+    @Test
+    public void testParallel() {
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicInteger finalized = new AtomicInteger();
+        List<Integer> values = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(FunctionalOperation.newOperations(values, (value) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            return Result.succeeded();
+        })));
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            bob.addStrategy(new ParallelStrategy(() -> {
+                finalized.incrementAndGet();
+                return Result.succeeded();
+            }, () -> {
+            }, executor, 4));
+
+            Batch batch = bob.build();
+            batch.execute();
+
+            assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+            assertTrue(batch.allOperationsSucceeded());
+            assertEquals(100, batch.getSucceededOperations().size());
+            assertEquals(1, finalized.get());
+            assertTrue("Expected at most 4 concurrent operations, was " + maxActive.get(), maxActive.get() <= 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelFallback() {
+
+        List<String> messages = new ArrayList<>();
+        AtomicInteger finalized = new AtomicInteger();
+        Builder bob = Batch.Builder.getInstance();
+        bob.addOperation(new FunctionalOperation<String>("Hello World", (msg) -> {
+            synchronized (messages) {
+                messages.add(msg);
+            }
+            return Result.succeeded();
+        }));
+        bob.addOperation(new FunctionalOperation<String>(null, (msg) -> {
+            throw new IllegalStateException("Because I feel like it!");
+        }));
+
+        bob.addStrategy(new ParallelStrategy(() -> {
+            finalized.incrementAndGet();
+            return Result.succeeded();
+        }, () -> {
+            messages.clear();
+        }, 2));
+        bob.addStrategy(new FinalizePerOperationStrategy(() -> {
+            return Result.succeeded();
+        }, () -> {
+        }));
+
+        Batch bad = bob.build();
+        bad.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, bad.getStatus());
+        assertEquals(0, finalized.get());
+        assertEquals(1, messages.size());
+        assertEquals(1, bad.getSucceededOperations().size());
+        assertEquals(1, bad.getFailedOperations().size());
+    }
+
+    @Test
+    public void testChunked() {
+
+        List<String> pending = new ArrayList<>();
+        List<String> committed = new ArrayList<>();
+        AtomicInteger commits = new AtomicInteger();
+        List<String> values = IntStream.range(0, 10)
+                .mapToObj(i -> i == 5 ? "fail" : i == 7 ? "poison" : "value" + i).collect(Collectors.toList());
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(FunctionalOperation.newOperations(values, (value) -> {
+            if ("fail".equals(value)) {
+                return Result.failed("Because I feel like it!");
+            }
+            pending.add(value);
+            return Result.succeeded();
+        })));
+
+        // a commit fails while the poison value is pending
+        bob.addStrategy(new FinalizePerChunkStrategy(() -> {
+            commits.incrementAndGet();
+            if (pending.contains("poison")) {
+                return Result.failed("Conflict");
+            }
+            committed.addAll(pending);
+            pending.clear();
+            return Result.succeeded();
+        }, pending::clear, 4));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(8, batch.getSucceededOperations().size());
+        assertEquals(2, batch.getFailedOperations().size());
+        assertEquals(8, committed.size());
+        assertFalse(committed.contains("poison"));
+
+        // the first chunk is committed once, only the failed chunks are retried
+        assertEquals("value0", committed.get(0));
+        assertEquals(6, commits.get());
+    }
+
+    @Test
+    public void testChunkWeight() {
+
+        AtomicInteger commits = new AtomicInteger();
+        List<Integer> values = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(FunctionalOperation.newOperations(values, (value) -> Result.succeeded())));
+        bob.addStrategy(new FinalizePerChunkStrategy(() -> {
+            commits.incrementAndGet();
+            return Result.succeeded();
+        }, () -> {
+        }, 100, 250, op -> 100));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertTrue(batch.allOperationsSucceeded());
+        assertEquals(4, commits.get());
+    }
+
+    @Test
+    public void testRetry() {
+
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger finalized = new AtomicInteger();
+        Builder bob = Batch.Builder.getInstance();
+        bob.addOperation(new FunctionalOperation<String>("Hello World", (msg) -> {
+            executions.incrementAndGet();
+            return Result.succeeded();
+        }));
+
+        // fails twice due to "conflicts", then succeeds
+        bob.addStrategy(new RetryStrategy(new FinalizeOnceStrategy(() -> {
+            return finalized.incrementAndGet() < 3 ? Result.failed("Conflict") : Result.succeeded();
+        }, () -> {
+        }), 3, 1, 10));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertTrue(batch.allOperationsSucceeded());
+        assertEquals(3, finalized.get());
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    public void testBisect() {
+
+        List<String> pending = new ArrayList<>();
+        List<String> committed = new ArrayList<>();
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(
+                FunctionalOperation.newOperations(Arrays.asList("a", "b", "poison", "c"), (value) -> {
+                    pending.add(value);
+                    return Result.succeeded();
+                })));
+
+        Supplier<Result> finalizer = () -> {
+            if (pending.contains("poison")) {
+                return Result.failed("Conflict");
+            }
+            committed.addAll(pending);
+            pending.clear();
+            return Result.succeeded();
+        };
+        bob.addStrategy(new RetryStrategy(new FinalizeOnceStrategy(finalizer, pending::clear), 2, 1, 10));
+        bob.addStrategy(new BisectingStrategy(finalizer, pending::clear));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(Arrays.asList("a", "b", "c"), committed);
+        assertEquals(1, batch.getFailedOperations().size());
+        assertEquals(3, batch.getSucceededOperations().size());
+    }
+
+    @Test
+    public void testBisectTransient() {
+
+        List<String> pending = new ArrayList<>();
+        List<String> committed = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(
+                FunctionalOperation.newOperations(Arrays.asList("a", "flaky", "b", "c"), (value) -> {
+                    // the flaky operation fails once, then succeeds
+                    if ("flaky".equals(value) && attempts.incrementAndGet() == 1) {
+                        return Result.failed("Because I feel like it!");
+                    }
+                    pending.add(value);
+                    return Result.succeeded();
+                })));
+        bob.addStrategy(new BisectingStrategy(() -> {
+            committed.addAll(pending);
+            pending.clear();
+            return Result.succeeded();
+        }, pending::clear));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertTrue(batch.allOperationsSucceeded());
+        assertEquals(Arrays.asList("a", "flaky", "b", "c"), committed);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testBisectAfterChunked() {
+
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger attempts = new AtomicInteger();
+        Builder bob = Batch.Builder.getInstance();
+        bob.setOperations(new ArrayList<>(
+                FunctionalOperation.newOperations(Arrays.asList("a", "flaky", "b"), (value) -> {
+                    executions.incrementAndGet();
+                    return "flaky".equals(value) && attempts.incrementAndGet() == 1
+                            ? Result.failed("Because I feel like it!")
+                            : Result.succeeded();
+                })));
+        bob.addStrategy(new FinalizePerChunkStrategy(() -> Result.succeeded(), () -> {
+        }, 10));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(1, batch.getFailedOperations().size());
+        assertEquals(4, executions.get());
+
+        // only the operation the chunked strategy marked as failed is executed again
+        Result result = new BisectingStrategy(() -> Result.succeeded(), () -> {
+        }).execute(batch);
+
+        assertSame(Result.STATUS.SUCCEEDED, result.getStatus());
+        assertTrue(batch.allOperationsSucceeded());
+        assertEquals(5, executions.get());
+    }
+
+    @Test
+    public void testRetryFailedOperations() {
+
+        List<Supplier<ExecutionStrategy>> strategies = Arrays.asList(
+                () -> new FinalizePerChunkStrategy(() -> Result.succeeded(), () -> {
+                }, 2), () -> new FinalizePerOperationStrategy(() -> Result.succeeded(), () -> {
+                }));
+        for (Supplier<ExecutionStrategy> strategy : strategies) {
+            AtomicInteger attempts = new AtomicInteger();
+            Builder bob = Batch.Builder.getInstance();
+            bob.setOperations(new ArrayList<>(
+                    FunctionalOperation.newOperations(Arrays.asList("a", "flaky", "b"), (value) -> {
+                        return "flaky".equals(value) && attempts.incrementAndGet() == 1
+                                ? Result.failed("Because I feel like it!")
+                                : Result.succeeded();
+                    })));
+            bob.addStrategy(new RetryStrategy(strategy.get(), 2, 1, 10));
+
+            Batch batch = bob.build();
+            batch.execute();
+
+            // the strategies succeed with the flaky operation failed, which is retried
+            assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+            assertTrue(batch.allOperationsSucceeded());
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    @Test
+    public void testRetryDelays() {
+        ExecutionStrategy delegate = new FinalizeOnceStrategy(() -> Result.succeeded(), () -> {
+        });
+        try {
+            new RetryStrategy(delegate, 3, -1, 10);
+            fail("Negative initial delay accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new RetryStrategy(delegate, 3, 10, 5);
+            fail("Max delay below initial delay accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // the backoff is capped at the max delay instead of overflowing
+        AtomicInteger attempts = new AtomicInteger();
+        Builder bob = Batch.Builder.getInstance();
+        bob.addOperation(new FunctionalOperation<String>("Hello World", (msg) -> Result.succeeded()));
+        bob.addStrategy(new RetryStrategy(new FinalizeOnceStrategy(() -> {
+            return attempts.incrementAndGet() < 70 ? Result.failed("Conflict") : Result.succeeded();
+        }, () -> {
+        }), 70, 1, 1));
+
+        Batch batch = bob.build();
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(70, attempts.get());
+    }
+
+    @Test
+    public void testStreaming() {
+
+        AtomicInteger finalized = new AtomicInteger();
+        StreamingBatch batch = StreamingBatch.Builder.getInstance().setWindowSize(10)
+                .setOperations(FunctionalOperation.newOperations(IntStream.range(0, 95).boxed(), (value) -> {
+                    return value % 20 == 7 ? Result.failed("Because I feel like it!") : Result.succeeded();
+                })).addStrategy(new FinalizeOnceStrategy(() -> {
+                    finalized.incrementAndGet();
+                    return Result.succeeded();
+                }, () -> {
+                })).addStrategy(new FinalizePerOperationStrategy(() -> {
+                    return Result.succeeded();
+                }, () -> {
+                })).build();
+
+        assertSame(Batch.STATUS.NOT_STARTED, batch.getStatus());
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(95, batch.getProcessedCount());
+        assertEquals(90, batch.getSucceededCount());
+        assertEquals(5, batch.getFailedCount());
+        assertArrayEquals(new int[] { 7, 27, 47, 67, 87 }, batch.getFailedOperations().toArray());
+        assertTrue(batch.isSucceeded(8));
+        assertFalse(batch.isSucceeded(27));
+        assertFalse(batch.allOperationsSucceeded());
+
+        // windows without a failure are finalized at once
+        assertEquals(5, finalized.get());
+    }
+
+    @Test
+    public void testStreamingFailure() {
+
+        Iterator<Operation> operations = FunctionalOperation
+                .newOperations(Arrays.asList("a", null, "b"), (value) -> {
+                    return value != null ? Result.succeeded() : Result.failed("Because I feel like it!");
+                }).stream().map(Operation.class::cast).iterator();
+        StreamingBatch batch = StreamingBatch.Builder.getInstance().setWindowSize(2).setOperations(operations)
+                .addStrategy(new FinalizeOnceStrategy(() -> {
+                    return Result.succeeded();
+                }, () -> {
+                })).build();
+
+        batch.execute();
+
+        assertSame(Batch.STATUS.FAILED, batch.getStatus());
+        assertEquals(2, batch.getProcessedCount());
+        assertTrue(operations.hasNext());
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+
+        CheckpointStore store = new FileCheckpointStore(folder.getRoot().toPath());
+        AtomicInteger executions = new AtomicInteger();
+        AtomicBoolean crash = new AtomicBoolean(true);
+
+        StreamingBatch batch = createCheckpointedBatch(store, executions, crash);
+        batch.execute();
+
+        assertSame(Batch.STATUS.FAILED, batch.getStatus());
+        assertEquals(20, store.load("import/1").getProcessed());
+
+        // the re-run resumes with the window which failed
+        crash.set(false);
+        executions.set(0);
+        batch = createCheckpointedBatch(store, executions, crash);
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(30, executions.get());
+        assertEquals(50, batch.getProcessedCount());
+        assertEquals(50, batch.getSucceededCount());
+
+        // the checkpoint is removed once complete, so the next run starts over
+        assertNull(store.load("import/1"));
+        executions.set(0);
+        batch = createCheckpointedBatch(store, executions, crash);
+        batch.execute();
+
+        assertSame(Batch.STATUS.COMPLETE, batch.getStatus());
+        assertEquals(50, executions.get());
+        assertEquals(50, batch.getProcessedCount());
+        assertNull(store.load("import/1"));
+    }
+
+    private StreamingBatch createCheckpointedBatch(CheckpointStore store, AtomicInteger executions,
+            AtomicBoolean crash) {
+        return StreamingBatch.Builder.getInstance().setWindowSize(10).setCheckpoint("import/1", store)
+                .setOperations(FunctionalOperation.newOperations(IntStream.range(0, 50).boxed(), (value) -> {
+                    executions.incrementAndGet();
+                    if (crash.get() && value == 25) {
+                        throw new IllegalStateException("Crashed");
+                    }
+                    return Result.succeeded();
+                })).addStrategy(new FinalizeOnceStrategy(() -> {
+                    return Result.succeeded();
+                }, () -> {
+                })).build();
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.batch.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.sling.commons.batch.Batch;
+import org.apache.sling.commons.batch.Result;
+import org.apache.sling.commons.batch.provided.FinalizeOnceStrategy;
+import org.apache.sling.commons.batch.provided.FinalizePerOperationStrategy;
+import org.apache.sling.commons.batch.provided.FunctionalOperation;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class BatchMetricsTest {
+
+    @Test
+    public void testMetrics() {
+
+        MetricRegistry registry = new MetricRegistry();
+        BatchMetrics metrics = new BatchMetrics(registry, "batch.test");
+
+        Batch batch = Batch.Builder.getInstance()
+                .setOperations(new ArrayList<>(
+                        FunctionalOperation.newOperations(Arrays.asList("a", null, "b"), (value) -> {
+                            if (value == null) {
+                                throw new IllegalArgumentException("Because I feel like it!");
+                            }
+                            return Result.succeeded();
+                        })))
+                .addStrategy(new FinalizeOnceStrategy(() -> {
+                    return Result.succeeded();
+                }, () -> {
+                })).addStrategy(new FinalizePerOperationStrategy(() -> {
+                    return Result.failed("Conflict");
+                }, () -> {
+                })).addListener(metrics).build();
+        metrics.registerProgress(batch::getProgress);
+
+        assertEquals(0.0, (Double) registry.getGauges().get("batch.test.progress").getValue(), 0.0);
+        batch.execute();
+
+        // a and null by the first strategy, then all three by the second
+        assertEquals(5, registry.timer("batch.test.operations").getCount());
+        assertEquals(2, registry.counter("batch.test.operations.failed.IllegalArgumentException").getCount());
+        assertEquals(1, registry.timer("batch.test.strategy.FinalizeOnceStrategy").getCount());
+        assertEquals(1, registry.timer("batch.test.strategy.FinalizePerOperationStrategy").getCount());
+        assertEquals(2, registry.timer("batch.test.finalize").getCount());
+        assertEquals(2, registry.counter("batch.test.finalize.failed.result").getCount());
+        assertEquals(100.0, (Double) registry.getGauges().get("batch.test.progress").getValue(), 0.0);
+    }
+
+}
@@ -18,6 +18,7 @@ package org.apache.sling.thumbnails;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
@@ -89,4 +90,16 @@ public interface RenditionSupport {
     void setRendition(@NotNull Resource file, @NotNull String renditionName, @NotNull InputStream baos)
             throws PersistenceException;
 
+    /**
+     * Sets the content of each of the renditions, overriding any existing content,
+     * saving all of the renditions in a single commit.
+     * 
+     * @param file       the file to set the renditions on
+     * @param renditions the contents of the renditions by rendition name
+     *                   (including extension)
+     * @throws PersistenceException an exception occurs saving the renditions
+     */
+    void setRenditions(@NotNull Resource file, @NotNull Map<String, InputStream> renditions)
+            throws PersistenceException;
+
 }
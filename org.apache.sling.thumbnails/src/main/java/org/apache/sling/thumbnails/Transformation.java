@@ -18,6 +18,7 @@ package org.apache.sling.thumbnails;
 
 import java.util.List;
 
+import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
 
 /**
@@ -32,4 +33,14 @@ public interface Transformation {
     
     String getPath();
 
+    /**
+     * Get the quality to encode the renditions of this transformation with.
+     * 
+     * @return the quality from 0.0 for the highest compression to 1.0 for the
+     *         highest quality or null to use the default of the encoder
+     */
+    default @Nullable Double getQuality() {
+        return null;
+    }
+
 }
@@ -18,6 +18,7 @@ package org.apache.sling.thumbnails;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Map;
 
 import org.apache.sling.api.resource.Resource;
 import org.osgi.annotation.versioning.ProviderType;
@@ -41,4 +42,18 @@ public interface Transformer {
     void transform(Resource resource, Transformation transformation, OutputFileFormat format, OutputStream out)
             throws IOException;
 
+    /**
+     * Transforms the resource with each of the transformations, reading and
+     * decoding the resource only once.
+     * 
+     * @param resource        the resource to transform
+     * @param transformations the transformations to execute and the
+     *                        OutputStreams to which to write the result of each
+     *                        transformation
+     * @param format          the format of the streams to return
+     * @throws IOException an exception occurs transforming the resource
+     */
+    void transform(Resource resource, Map<Transformation, OutputStream> transformations, OutputFileFormat format)
+            throws IOException;
+
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.extension;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Service for encoding transformed images into the rendition output formats.
+ * Registered encoders take precedence over the built in encoder, which uses
+ * the ImageIO writers available for the format.
+ */
+@ConsumerType
+public interface ImageEncoder {
+
+    /**
+     * Returns true if the ImageEncoder can encode images in the specified
+     * format.
+     * 
+     * @param format the output format
+     * @return true if this ImageEncoder supports the format, false otherwise
+     */
+    boolean supports(@NotNull OutputFileFormat format);
+
+    /**
+     * Encode the image into the output stream.
+     * 
+     * @param image   the image to encode, must not be modified
+     * @param format  the format to encode the image in
+     * @param quality the quality to encode the image with, from 0.0 for the
+     *                highest compression to 1.0 for the highest quality, or null
+     *                to use the default of the encoder
+     * @param out     the output stream to write to, must not be closed
+     * @throws IOException an exception occurs encoding the image
+     */
+    void encode(@NotNull BufferedImage image, @NotNull OutputFileFormat format, @Nullable Double quality,
+            @NotNull OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.extension;
+
+import java.awt.Dimension;
+
+import org.jetbrains.annotations.NotNull;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * A hint passed to a {@link ThumbnailProvider} on the size of the thumbnail
+ * required by a transformation, allowing providers which render their
+ * thumbnail to render it at a lower resolution.
+ */
+@ProviderType
+@FunctionalInterface
+public interface SizeHint {
+
+    /**
+     * A hint requiring the thumbnail at full resolution.
+     */
+    SizeHint FULL = size -> size;
+
+    /**
+     * Calculates the smallest size a thumbnail can be rendered at without
+     * affecting the result of the transformation.
+     * 
+     * @param size the size of the thumbnail at full resolution
+     * @return the smallest size required, never larger than the full resolution
+     *         size
+     */
+    @NotNull
+    Dimension getRequiredSize(@NotNull Dimension size);
+
+    /**
+     * Calculates the scale to render a thumbnail at, based on the required size.
+     * 
+     * @param size the size of the thumbnail at full resolution
+     * @return the scale, between 0 exclusive and 1 inclusive
+     */
+    default double getScale(@NotNull Dimension size) {
+        Dimension required = getRequiredSize(size);
+        double scale = Math.max((double) required.width / size.width, (double) required.height / size.height);
+        return scale > 0 && scale < 1.0 ? scale : 1.0;
+    }
+
+}
@@ -49,4 +49,20 @@ public interface ThumbnailProvider {
      */
     InputStream getThumbnail(Resource resource) throws IOException;
 
-}
\ No newline at end of file
+    /**
+     * Get the thumbnail from the specified resource, at no less than the size
+     * required by the size hint. Providers which render the thumbnail should
+     * override this method to render at the lowest resolution required.
+     * 
+     * The default implementation returns the full resolution thumbnail.
+     * 
+     * @param resource the resource from which to retrieve the thumbnail
+     * @param hint     the hint on the size required
+     * @return the thumbnail
+     * @throws IOException an exception occurs retrieving the thumbnail
+     */
+    default InputStream getThumbnail(Resource resource, SizeHint hint) throws IOException {
+        return getThumbnail(resource);
+    }
+
+}
@@ -16,11 +16,20 @@
  */
 package org.apache.sling.thumbnails.extension;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import javax.imageio.ImageIO;
+
 import org.apache.sling.thumbnails.TransformationHandlerConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ConsumerType;
 
 /*
@@ -50,4 +59,87 @@ public interface TransformationHandler {
     void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException;
 
+    /**
+     * Handles the transformation of an already decoded image using the command
+     * values from the suffix segment. This allows a transformation pipeline to
+     * decode the image once and chain the handlers in memory.
+     * 
+     * The default implementation falls back to
+     * {@link #handle(InputStream, OutputStream, TransformationHandlerConfig)} by
+     * encoding the image as a PNG, so handlers which only support streams will
+     * continue to work, however handlers should override this method to avoid
+     * the additional encoding and decoding.
+     * 
+     * The image may be shared with other transformations, so handlers must not
+     * modify the image passed in.
+     * 
+     * @param image  the image to transform
+     * @param config the configuration values for the transformation
+     * @return the transformed image
+     * @throws IOException an exception occurs transforming the image
+     */
+    default BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", source)) {
+            throw new IOException("Unable to encode image for handler: " + getResourceType());
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        handle(new ByteArrayInputStream(source.toByteArray()), result, config);
+        BufferedImage transformed = ImageIO.read(new ByteArrayInputStream(result.toByteArray()));
+        if (transformed == null) {
+            throw new IOException("Unable to decode image from handler: " + getResourceType());
+        }
+        return transformed;
+    }
+
+    /**
+     * Handles the transformation of an image which may have been decoded at a
+     * reduced resolution. The source size is the size the image would have had
+     * if it were decoded at full resolution, handlers whose result depends on the
+     * size of the source image should use it rather than the size of the image.
+     * 
+     * The default implementation calls
+     * {@link #handle(BufferedImage, TransformationHandlerConfig)}, which is
+     * correct for all handlers which produce an image of an absolute size or
+     * which do not change the size of the image.
+     * 
+     * @param image      the image to transform
+     * @param sourceSize the size of the image at full resolution
+     * @param config     the configuration values for the transformation
+     * @return the transformed image
+     * @throws IOException an exception occurs transforming the image
+     */
+    default BufferedImage handle(BufferedImage image, @NotNull Dimension sourceSize,
+            TransformationHandlerConfig config) throws IOException {
+        return handle(image, config);
+    }
+
+    /**
+     * Calculates the size of the image this handler will produce from an image of
+     * the specified size. This allows the source image to be decoded at the lowest
+     * resolution which does not affect the result.
+     * 
+     * @param sourceSize the size of the image to transform
+     * @param config     the configuration values for the transformation
+     * @return the size of the transformed image or null if it cannot be
+     *         determined up front
+     */
+    default @Nullable Dimension getTargetSize(@NotNull Dimension sourceSize, TransformationHandlerConfig config) {
+        return null;
+    }
+
+    /**
+     * Calculates the region of an image of the specified size which contributes to
+     * the result of this handler, so that only this region needs to be decoded.
+     * This is only called for the first handler of a transformation.
+     * 
+     * @param sourceSize the size of the image to transform
+     * @param config     the configuration values for the transformation
+     * @return the region of the image used by this handler or null if the whole
+     *         image is required
+     */
+    default @Nullable Rectangle getSourceRegion(@NotNull Dimension sourceSize, TransformationHandlerConfig config) {
+        return null;
+    }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encodes an animated GIF frame by frame, writing each frame to the output
+ * stream as it is added so that only the current frame is kept in memory. The
+ * animation loops indefinitely.
+ */
+public class AnimatedGifEncoder implements Closeable {
+
+    private final ImageOutputStream output;
+
+    private final ImageWriter writer;
+
+    private boolean first = true;
+
+    public AnimatedGifEncoder(@NotNull OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("No GIF image writer found");
+        }
+        writer = writers.next();
+        output = ImageIO.createImageOutputStream(out);
+        writer.setOutput(output);
+        writer.prepareWriteSequence(null);
+    }
+
+    /**
+     * Add a frame to the animation.
+     * 
+     * @param frame the frame
+     * @param delay the time to display the frame for in milliseconds
+     * @throws IOException an exception occurs writing the frame
+     */
+    public void write(@NotNull BufferedImage frame, int delay) throws IOException {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame),
+                param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = getOrCreateChild(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(Math.max(Math.round(delay / 10f), 0)));
+        if (!control.hasAttribute("transparentColorFlag")) {
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("transparentColorIndex", "0");
+        }
+
+        if (first) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] { 1, 0, 0 });
+            getOrCreateChild(root, "ApplicationExtensions").appendChild(loop);
+            first = false;
+        }
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(frame, null, metadata), param);
+    }
+
+    private static IIOMetadataNode getOrCreateChild(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode child = new IIOMetadataNode(name);
+        root.appendChild(child);
+        return child;
+    }
+
+    /**
+     * Completes the animation, does not close the underlying output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!first) {
+                writer.endWriteSequence();
+            }
+            output.flush();
+        } finally {
+            writer.dispose();
+            output.close();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.apache.sling.thumbnails.BadRequestException;
+import org.apache.sling.thumbnails.internal.BulkTransformer.Result;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A servlet to render and persist renditions of many resources in a single
+ * request. The result of each rendition is streamed back as a line of JSON as
+ * soon as the resource is rendered.
+ */
+@Component(immediate = true, service = Servlet.class, property = { "sling.servlet.methods=POST",
+        "sling.servlet.paths=/bin/sling/thumbnails/bulk" })
+public class BulkTransformServlet extends SlingAllMethodsServlet {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkTransformServlet.class);
+
+    private final transient BulkTransformer bulkTransformer;
+
+    @Activate
+    public BulkTransformServlet(@Reference BulkTransformer bulkTransformer) {
+        this.bulkTransformer = bulkTransformer;
+    }
+
+    @Override
+    protected void doPost(SlingHttpServletRequest request, SlingHttpServletResponse response)
+            throws ServletException, IOException {
+        log.trace("doPost");
+
+        try {
+            List<String> paths = getParameters(request, "resource");
+            List<String> renditions = getParameters(request, "rendition");
+            if (paths.size() > bulkTransformer.getMaxResources()) {
+                throw new BadRequestException("At most " + bulkTransformer.getMaxResources()
+                        + " resources may be rendered in a single request");
+            }
+            for (String rendition : renditions) {
+                if (!RenditionPregenerator.isValidRendition(rendition)) {
+                    throw new BadRequestException("Invalid rendition: " + rendition);
+                }
+            }
+
+            response.setContentType("application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+            ObjectMapper objectMapper = new ObjectMapper();
+            PrintWriter writer = response.getWriter();
+
+            List<String> readable = new ArrayList<>();
+            for (String path : paths) {
+                if (request.getResourceResolver().getResource(path) != null) {
+                    readable.add(path);
+                } else {
+                    for (String rendition : renditions) {
+                        writer.println(objectMapper
+                                .writeValueAsString(new Result(path, rendition, false, "No resource found")));
+                    }
+                }
+            }
+            writer.flush();
+
+            log.debug("Rendering renditions {} of {} resources", renditions, readable.size());
+            bulkTransformer.transform(readable, renditions, result -> {
+                try {
+                    writer.println(objectMapper.writeValueAsString(result));
+                    writer.flush();
+                } catch (IOException e) {
+                    log.warn("Failed to write result for rendition {} of {}", result.getRendition(),
+                            result.getPath(), e);
+                }
+            });
+        } catch (BadRequestException e) {
+            log.error("Could not render renditions due to bad request", e);
+            response.sendError(400, "Could not render renditions due to bad request: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted rendering renditions");
+        }
+    }
+
+    private static List<String> getParameters(SlingHttpServletRequest request, String name) {
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(Arrays
+                .asList(Optional.ofNullable(request.getParameterValues(name)).orElse(new String[0]))));
+        if (values.isEmpty()) {
+            throw new BadRequestException("Parameter " + name + " must be supplied");
+        }
+        return values;
+    }
+
+}
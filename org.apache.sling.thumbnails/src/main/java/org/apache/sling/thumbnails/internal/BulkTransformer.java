@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.codahale.metrics.Counter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.apache.sling.thumbnails.RenditionSupport;
+import org.apache.sling.thumbnails.Transformation;
+import org.apache.sling.thumbnails.Transformer;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders and persists renditions of many resources at once. Each resource is
+ * rendered on a pool of threads, decoding the resource once for all of the
+ * renditions and persisting all of the renditions of the resource in a single
+ * commit.
+ */
+@Component(service = BulkTransformer.class)
+@Designate(ocd = BulkTransformerConfig.class)
+public class BulkTransformer {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkTransformer.class);
+
+    private final Transformer transformer;
+    private final RenditionSupport renditionSupport;
+    private final TransformationCache transformationCache;
+    private final TransformationServiceUser transformationServiceUser;
+    private final RenditionPersister renditionPersister;
+
+    private final int maxResources;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter completed;
+    private final Counter failed;
+
+    @Activate
+    public BulkTransformer(@Reference Transformer transformer, @Reference RenditionSupport renditionSupport,
+            @Reference TransformationCache transformationCache,
+            @Reference TransformationServiceUser transformationServiceUser,
+            @Reference RenditionPersister renditionPersister, @Reference ThumbnailMetrics metrics,
+            BulkTransformerConfig config) {
+        this.transformer = transformer;
+        this.renditionSupport = renditionSupport;
+        this.transformationCache = transformationCache;
+        this.transformationServiceUser = transformationServiceUser;
+        this.renditionPersister = renditionPersister;
+        this.maxResources = config.maxResources();
+
+        int threads = Math.max(1, config.threads());
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "sling-thumbnails-bulk-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.completed = metrics.counter("bulk.completed");
+        this.failed = metrics.counter("bulk.failed");
+    }
+
+    @Deactivate
+    public void deactivate() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the maximum number of resources in a single bulk request
+     */
+    public int getMaxResources() {
+        return maxResources;
+    }
+
+    /**
+     * Renders and persists the renditions of each of the resources, blocking until
+     * all resources are rendered. The listener is called on the calling thread
+     * with the result of each rendition as soon as the resource is rendered.
+     * 
+     * @param paths      the paths of the resources to render
+     * @param renditions the renditions to render, in the format
+     *                   [transformation-name].[format]
+     * @param listener   the listener to call with the result of each rendition
+     * @throws InterruptedException the calling thread was interrupted while
+     *                              waiting for the renditions
+     */
+    public void transform(List<String> paths, List<String> renditions, Consumer<Result> listener)
+            throws InterruptedException {
+        CompletionService<List<Result>> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<List<Result>>> futures = new ArrayList<>();
+        for (String path : paths) {
+            futures.add(completionService.submit(() -> render(path, renditions)));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<List<Result>> future = completionService.take();
+                try {
+                    future.get().forEach(listener);
+                } catch (ExecutionException e) {
+                    log.warn("Unexpected exception rendering bulk renditions", e);
+                }
+            }
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private List<Result> render(String path, List<String> renditions) {
+        List<Result> results = new ArrayList<>();
+        try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
+            Resource file = resolver.getResource(path);
+            if (file == null) {
+                return fail(results, path, renditions, "No resource found");
+            }
+            if (!renditionSupport.supportsRenditions(file)) {
+                return fail(results, path, renditions,
+                        "Type " + file.getResourceType() + " does not support persisting renditions");
+            }
+
+            Map<OutputFileFormat, Map<Transformation, String>> transformations = new LinkedHashMap<>();
+            for (String rendition : renditions) {
+                Optional<Transformation> transformation = transformationCache.getTransformation(resolver,
+                        "/" + StringUtils.substringBeforeLast(rendition, "."));
+                if (transformation.isPresent()) {
+                    OutputFileFormat format = OutputFileFormat.forValue(StringUtils.substringAfterLast(rendition, "."));
+                    transformations.computeIfAbsent(format, f -> new LinkedHashMap<>()).put(transformation.get(),
+                            rendition);
+                } else {
+                    fail(results, path, rendition, "Unable to find transformation");
+                }
+            }
+
+            for (Entry<OutputFileFormat, Map<Transformation, String>> entry : transformations.entrySet()) {
+                render(file, entry.getKey(), entry.getValue(), results);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to render bulk renditions of {}", path, e);
+            List<String> remaining = new ArrayList<>(renditions);
+            results.forEach(r -> remaining.remove(r.getRendition()));
+            fail(results, path, remaining, e.getMessage());
+        }
+        return results;
+    }
+
+    private void render(Resource file, OutputFileFormat format, Map<Transformation, String> renditions,
+            List<Result> results) {
+        Map<Transformation, RenditionSpool> spools = new LinkedHashMap<>();
+        Map<String, InputStream> contents = new LinkedHashMap<>();
+        try {
+            for (Transformation transformation : renditions.keySet()) {
+                spools.put(transformation, renditionPersister.newSpool());
+            }
+            log.debug("Rendering {} renditions of {} as {}", renditions.size(), file.getPath(), format);
+            transformer.transform(file, new LinkedHashMap<Transformation, OutputStream>(spools), format);
+            for (Entry<Transformation, RenditionSpool> spool : spools.entrySet()) {
+                spool.getValue().close();
+                contents.put("/" + renditions.get(spool.getKey()), spool.getValue().getInputStream());
+            }
+            renditionSupport.setRenditions(file, contents);
+            for (String rendition : renditions.values()) {
+                results.add(new Result(file.getPath(), rendition, true, null));
+                completed.inc();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to render bulk renditions {} of {}", renditions.values(), file.getPath(), e);
+            fail(results, file.getPath(), new ArrayList<>(renditions.values()), e.getMessage());
+        } finally {
+            for (InputStream content : contents.values()) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close spooled rendition", e);
+                }
+            }
+            spools.values().forEach(RenditionSpool::release);
+        }
+    }
+
+    private List<Result> fail(List<Result> results, String path, List<String> renditions, String message) {
+        renditions.forEach(rendition -> fail(results, path, rendition, message));
+        return results;
+    }
+
+    private void fail(List<Result> results, String path, String rendition, String message) {
+        results.add(new Result(path, rendition, false, message));
+        failed.inc();
+    }
+
+    /**
+     * The result of rendering a rendition of a resource.
+     */
+    public static class Result {
+
+        private final String path;
+        private final String rendition;
+        private final boolean success;
+        private final String message;
+
+        public Result(String path, String rendition, boolean success, String message) {
+            this.path = path;
+            this.rendition = rendition;
+            this.success = success;
+            this.message = message;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getRendition() {
+            return rendition;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+    }
+
+}
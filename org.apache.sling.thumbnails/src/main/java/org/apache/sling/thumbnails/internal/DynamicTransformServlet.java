@@ -16,9 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,8 +28,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.util.IOUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.resource.Resource;
@@ -62,10 +61,14 @@ public class DynamicTransformServlet extends SlingAllMethodsServlet {
 
     private final transient RenditionSupport renditionSupport;
 
+    private final transient RenditionPersister renditionPersister;
+
     @Activate
-    public DynamicTransformServlet(@Reference Transformer transformer, @Reference RenditionSupport renditionSupport) {
+    public DynamicTransformServlet(@Reference Transformer transformer, @Reference RenditionSupport renditionSupport,
+            @Reference RenditionPersister renditionPersister) {
         this.renditionSupport = renditionSupport;
         this.transformer = transformer;
+        this.renditionPersister = renditionPersister;
     }
 
     @Override
@@ -91,23 +94,36 @@ public class DynamicTransformServlet extends SlingAllMethodsServlet {
 
             Transformation transformation = getTransformation(request);
 
-            log.debug("Transforming resource: {} with transformation: {} to {}", resource, transformation, format);
-            ByteArrayOutputStream baos = transform(resource, response, format.toString(), transformation);
-
             String renditionName = request.getParameter("renditionName");
             if (renditionName != null) {
                 if (StringUtils.isBlank(renditionName) && transformation.getName() != null) {
                     renditionName = transformation.getName() + "." + format.toString().toLowerCase();
                 }
-                log.debug("Setting rendition: {}", renditionName);
-                if (renditionSupport.supportsRenditions(resource)) {
-                    renditionSupport.setRendition(resource, renditionName,
-                            new ByteArrayInputStream(baos.toByteArray()));
-                } else {
+                if (!renditionSupport.supportsRenditions(resource)) {
                     throw new BadRequestException(
                             "Type " + resource.getResourceType() + " does not support persisting renditions");
                 }
             }
+
+            log.debug("Transforming resource: {} with transformation: {} to {}", resource, transformation, format);
+            if (renditionName != null) {
+                RenditionSpool spool = renditionPersister.newSpool();
+                try {
+                    transformer.transform(resource, transformation, format, spool);
+                    spool.close();
+                    // persist before responding, so a failure to save the rendition is reported
+                    spool.tryRetain();
+                    log.debug("Setting rendition: {}", renditionName);
+                    renditionPersister.persistNow(resource.getPath(), renditionName, spool);
+                    try (InputStream contents = spool.getInputStream()) {
+                        IOUtils.copy(contents, response.getOutputStream());
+                    }
+                } finally {
+                    spool.release();
+                }
+            } else {
+                transformer.transform(resource, transformation, format, response.getOutputStream());
+            }
         } catch (BadRequestException e) {
             log.error("Could not render thumbnail due to bad request", e);
             response.sendError(400, "Could not render thumbnail due to bad request: " + e.getMessage());
@@ -125,7 +141,19 @@ public class DynamicTransformServlet extends SlingAllMethodsServlet {
                             () -> new BadRequestException("Requested invalid transformation: " + transformationPath));
 
         } else {
-            return new TransformationImpl(parsePostBody(request));
+            return new TransformationImpl(parsePostBody(request), parseQuality(request));
+        }
+    }
+
+    private Double parseQuality(SlingHttpServletRequest request) {
+        String quality = request.getParameter("quality");
+        if (StringUtils.isBlank(quality)) {
+            return null;
+        }
+        try {
+            return Double.valueOf(quality);
+        } catch (NumberFormatException nfe) {
+            throw new BadRequestException("Invalid quality: " + quality, nfe);
         }
     }
 
@@ -140,12 +168,4 @@ public class DynamicTransformServlet extends SlingAllMethodsServlet {
         }
     }
 
-    private ByteArrayOutputStream transform(Resource resource, SlingHttpServletResponse response, String format,
-            Transformation transformation) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        transformer.transform(resource, transformation, OutputFileFormat.valueOf(format.toUpperCase()), baos);
-        IOUtils.copy(new ByteArrayInputStream(baos.toByteArray()), response.getOutputStream());
-        return baos;
-    }
-
 }
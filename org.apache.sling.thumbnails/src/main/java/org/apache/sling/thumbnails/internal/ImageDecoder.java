@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+
+/**
+ * Decodes an image using ImageIO, reading the image header first so that the
+ * image can then be decoded subsampled and / or limited to a region of the
+ * source. This keeps the memory used for decoding a large image proportional to
+ * the size of the output rather than the size of the source.
+ * 
+ * Only the first frame of multi-frame images is decoded by
+ * {@link #read(Rectangle, int)}, the frames of animated GIFs and multi-page
+ * images can be read one at a time with
+ * {@link #readFrames(int, FrameHandler)}.
+ */
+public class ImageDecoder implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDecoder.class);
+
+    /**
+     * The delay in milliseconds between frames which do not specify one, e.g.
+     * pages of a TIFF image.
+     */
+    static final int DEFAULT_DELAY = 1000;
+
+    private static final String GIF_STREAM_METADATA = "javax_imageio_gif_stream_1.0";
+
+    private static final String GIF_IMAGE_METADATA = "javax_imageio_gif_image_1.0";
+
+    /**
+     * Handles the frames of a multi-frame image.
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+
+        /**
+         * Handle a frame, the frame may be reused for the next frame once this
+         * method returns.
+         * 
+         * @param frame the frame
+         * @param delay the time to display the frame for in milliseconds
+         * @throws IOException an exception occurs handling the frame
+         */
+        void handle(@NotNull BufferedImage frame, int delay) throws IOException;
+    }
+
+    private final ImageInputStream input;
+
+    private final ImageReader reader;
+
+    private final Orientation orientation;
+
+    private final Dimension size;
+
+    public ImageDecoder(InputStream inputStream) throws IOException {
+        input = ImageIO.createImageInputStream(inputStream);
+        if (input == null) {
+            throw new IOException("Unable to create image input stream");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("No suitable image reader found");
+        }
+        reader = readers.next();
+        reader.setInput(input);
+
+        Orientation exifOrientation = null;
+        try {
+            exifOrientation = ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception e) {
+            log.debug("Unable to read EXIF orientation", e);
+        }
+        orientation = exifOrientation == Orientation.TOP_LEFT ? null : exifOrientation;
+
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (isTransposed()) {
+            size = new Dimension(height, width);
+        } else {
+            size = new Dimension(width, height);
+        }
+    }
+
+    private boolean isTransposed() {
+        return orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+    }
+
+    /**
+     * @return the size of the image, after applying the EXIF orientation
+     */
+    public @NotNull Dimension getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if a region of the image can be decoded, this is not
+     *         supported for images which have to be reoriented
+     */
+    public boolean supportsRegion() {
+        return orientation == null;
+    }
+
+    /**
+     * Decode the image.
+     * 
+     * @param region      the region of the image to decode or null to decode the
+     *                    whole image
+     * @param subsampling the subsampling to apply, only every nth pixel and row
+     *                    are decoded
+     * @return the decoded image
+     * @throws IOException an exception occurs decoding the image
+     */
+    public @NotNull BufferedImage read(@Nullable Rectangle region, int subsampling) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (region != null) {
+            if (!supportsRegion()) {
+                throw new IllegalStateException("Unable to decode region of reoriented image");
+            }
+            param.setSourceRegion(region);
+        }
+        if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+        log.debug("Decoding image of size {} with region {} and subsampling {}", size, region, subsampling);
+        BufferedImage image = reader.read(0, param);
+        if (orientation != null) {
+            image = ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+        }
+        return image;
+    }
+
+    /**
+     * Checks whether the image has more than one frame, this only reads the
+     * headers of the first frames.
+     * 
+     * @return true if the image has more than one frame
+     * @throws IOException an exception occurs reading the image
+     */
+    public boolean hasMultipleFrames() throws IOException {
+        int count = reader.getNumImages(false);
+        if (count != -1) {
+            return count > 1;
+        }
+        try {
+            reader.getWidth(1);
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the frames of the image one at a time, so only a single frame is kept
+     * in memory. The frames of animated GIFs are composed onto the logical
+     * screen, so each frame is a complete image.
+     * 
+     * @param maxFrames the maximum number of frames to read
+     * @param handler   the handler for the frames
+     * @return the number of frames read
+     * @throws IOException an exception occurs reading the image or handling a
+     *                     frame
+     */
+    public int readFrames(int maxFrames, @NotNull FrameHandler handler) throws IOException {
+        if ("gif".equalsIgnoreCase(reader.getFormatName())) {
+            return readGifFrames(maxFrames, handler);
+        }
+        int index = 0;
+        for (; index < maxFrames; index++) {
+            BufferedImage frame;
+            try {
+                frame = reader.read(index);
+            } catch (IndexOutOfBoundsException e) {
+                break;
+            }
+            if (orientation != null) {
+                frame = ExifFilterUtils.getFilterForOrientation(orientation).apply(frame);
+            }
+            handler.handle(frame, DEFAULT_DELAY);
+        }
+        return index;
+    }
+
+    private int readGifFrames(int maxFrames, FrameHandler handler) throws IOException {
+        Dimension screen = getLogicalScreenSize();
+        BufferedImage canvas = new BufferedImage(screen.width, screen.height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage previous = null;
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            int index = 0;
+            for (; index < maxFrames; index++) {
+                BufferedImage frame;
+                try {
+                    frame = reader.read(index);
+                } catch (IndexOutOfBoundsException e) {
+                    break;
+                }
+                IIOMetadataNode metadata = getMetadataTree(reader.getImageMetadata(index), GIF_IMAGE_METADATA);
+                IIOMetadataNode descriptor = getChild(metadata, "ImageDescriptor");
+                IIOMetadataNode control = getChild(metadata, "GraphicControlExtension");
+                int left = getIntAttribute(descriptor, "imageLeftPosition", 0);
+                int top = getIntAttribute(descriptor, "imageTopPosition", 0);
+                String disposal = control != null ? control.getAttribute("disposalMethod") : "none";
+                int delay = getIntAttribute(control, "delayTime", 0) * 10;
+
+                if ("restoreToPrevious".equals(disposal)) {
+                    previous = copy(canvas, previous);
+                }
+                graphics.drawImage(frame, left, top, null);
+                handler.handle(canvas, delay);
+
+                if ("restoreToBackgroundColor".equals(disposal)) {
+                    graphics.setComposite(AlphaComposite.Clear);
+                    graphics.fillRect(left, top, frame.getWidth(), frame.getHeight());
+                    graphics.setComposite(AlphaComposite.SrcOver);
+                } else if ("restoreToPrevious".equals(disposal)) {
+                    copy(previous, canvas);
+                }
+            }
+            return index;
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    private Dimension getLogicalScreenSize() throws IOException {
+        IIOMetadataNode stream = getMetadataTree(reader.getStreamMetadata(), GIF_STREAM_METADATA);
+        IIOMetadataNode descriptor = getChild(stream, "LogicalScreenDescriptor");
+        int width = getIntAttribute(descriptor, "logicalScreenWidth", 0);
+        int height = getIntAttribute(descriptor, "logicalScreenHeight", 0);
+        if (width <= 0 || height <= 0) {
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        }
+        return new Dimension(width, height);
+    }
+
+    private static BufferedImage copy(BufferedImage source, BufferedImage target) {
+        if (target == null) {
+            target = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        }
+        source.copyData(target.getRaster());
+        return target;
+    }
+
+    private static IIOMetadataNode getMetadataTree(IIOMetadata metadata, String format) {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return (IIOMetadataNode) metadata.getAsTree(format);
+        } catch (IllegalArgumentException e) {
+            log.debug("Metadata format {} not supported", format, e);
+            return null;
+        }
+    }
+
+    private static IIOMetadataNode getChild(IIOMetadataNode node, String name) {
+        if (node != null) {
+            for (int i = 0; i < node.getLength(); i++) {
+                if (node.item(i).getNodeName().equals(name)) {
+                    return (IIOMetadataNode) node.item(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int getIntAttribute(IIOMetadataNode node, String name, int defaultValue) {
+        if (node == null || node.getAttribute(name).isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(node.getAttribute(name));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.awt.Dimension;
+
+import com.codahale.metrics.Counter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.thumbnails.extension.SizeHint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+
+/**
+ * A cache of the thumbnails rendered by thumbnail providers, so different
+ * transformations of the same document do not need to parse and render the
+ * document again. Thumbnails are keyed by the binary identity of the resource,
+ * its path and last modified time, and the resolution level the thumbnail was
+ * rendered at.
+ */
+@Component(service = ProviderOutputCache.class)
+@Designate(ocd = ProviderOutputCacheConfig.class)
+public class ProviderOutputCache {
+
+    /**
+     * The lowest resolution level, thumbnails are rendered at half the resolution
+     * for each level, so at most at an eighth of the full resolution.
+     */
+    public static final int MAX_LEVEL = 3;
+
+    private final Cache<String, byte[]> cache;
+
+    private final Cache<String, Dimension> sizes;
+
+    private final boolean enabled;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    @Activate
+    public ProviderOutputCache(@Reference ThumbnailMetrics metrics, ProviderOutputCacheConfig config) {
+        this.enabled = config.maxSize() > 0;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(Math.max(config.maxSize(), 0))
+                .weigher((String key, byte[] value) -> value.length).build();
+        this.sizes = CacheBuilder.newBuilder().maximumSize(10000).build();
+        this.hits = metrics.counter("provider.cache.hit");
+        this.misses = metrics.counter("provider.cache.miss");
+    }
+
+    /**
+     * Get the binary identity of the resource.
+     * 
+     * @param resource the resource to get the identity of
+     * @return the identity or null if the resource's thumbnail cannot be cached
+     */
+    public @Nullable String getIdentity(Resource resource) {
+        long lastModified = RenditionCache.getLastModified(resource);
+        if (!enabled || lastModified <= 0 || resource.getPath() == null) {
+            return null;
+        }
+        return resource.getPath() + ":" + lastModified;
+    }
+
+    /**
+     * Get the resolution level to render a thumbnail at, the highest level which
+     * still provides the size required by the hint.
+     * 
+     * @param size the full resolution size of the thumbnail
+     * @param hint the size hint
+     * @return the level, from 0 for full resolution to {@link #MAX_LEVEL}
+     */
+    public static int getLevel(@NotNull Dimension size, @NotNull SizeHint hint) {
+        double scale = hint.getScale(size);
+        int level = 0;
+        while (level < MAX_LEVEL && scale <= getScale(level + 1)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @param level the resolution level
+     * @return the scale of the full resolution to render the level at
+     */
+    public static double getScale(int level) {
+        return 1.0 / (1 << level);
+    }
+
+    /**
+     * Get the full resolution size of the thumbnail of the resource, if it was
+     * rendered before.
+     * 
+     * @param identity the binary identity of the resource
+     * @return the full resolution size or null if unknown
+     */
+    public @Nullable Dimension getSize(@Nullable String identity) {
+        return identity != null ? sizes.getIfPresent(identity) : null;
+    }
+
+    /**
+     * Get the cached thumbnail.
+     * 
+     * @param identity the binary identity of the resource
+     * @param level    the resolution level
+     * @return the cached thumbnail or null if it is not cached
+     */
+    public @Nullable byte[] get(@Nullable String identity, int level) {
+        if (identity == null) {
+            return null;
+        }
+        byte[] thumbnail = cache.getIfPresent(identity + ":" + level);
+        if (thumbnail != null) {
+            hits.inc();
+        } else {
+            misses.inc();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Cache a thumbnail rendered by a provider.
+     * 
+     * @param identity  the binary identity of the resource
+     * @param size      the full resolution size of the thumbnail
+     * @param level     the resolution level the thumbnail was rendered at
+     * @param thumbnail the thumbnail
+     */
+    public void put(@Nullable String identity, @NotNull Dimension size, int level, @NotNull byte[] thumbnail) {
+        if (identity == null) {
+            return;
+        }
+        sizes.put(identity, size);
+        cache.put(identity + ":" + level, thumbnail);
+    }
+
+    public long getCount() {
+        return cache.size();
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.codahale.metrics.Counter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.Designate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of recently served renditions, bounded by the number of bytes
+ * cached. Renditions are keyed by the resource path, the resource last modified
+ * time, the rendition name and the path and a digest of the transformation,
+ * including its handlers, so changes to the resource or transformation are
+ * picked up without explicit invalidation. The cache is still cleared when
+ * anything at or below a cached transformation is added, changed or removed,
+ * to free the renditions which can no longer be served.
+ */
+@Component(service = { RenditionCache.class, EventHandler.class }, property = {
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/ADDED",
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/CHANGED",
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/REMOVED",
+        EventConstants.EVENT_FILTER + "=(|(path=/conf/*)(path=/libs/conf/*)(path=/apps/conf/*))" })
+@Designate(ocd = RenditionCacheConfig.class)
+public class RenditionCache implements EventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionCache.class);
+
+    private static final String PN_LAST_MODIFIED = "jcr:content/jcr:lastModified";
+
+    private final Cache<String, ByteBuffer> cache;
+
+    /**
+     * The paths of the transformations renditions have been keyed by.
+     */
+    private final Set<String> transformations = ConcurrentHashMap.newKeySet();
+
+    private final boolean enabled;
+
+    private final int maxEntrySize;
+
+    private final boolean offHeap;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    @Activate
+    public RenditionCache(@Reference ThumbnailMetrics metrics, RenditionCacheConfig config) {
+        this.enabled = config.maxSize() > 0;
+        this.maxEntrySize = config.maxEntrySize();
+        this.offHeap = config.offHeap();
+        this.cache = CacheBuilder.newBuilder().maximumWeight(Math.max(config.maxSize(), 0))
+                .weigher((String key, ByteBuffer value) -> value.capacity()).build();
+        this.hits = metrics.counter("rendition.cache.hit");
+        this.misses = metrics.counter("rendition.cache.miss");
+    }
+
+    /**
+     * Get the last modified time of the resource from the resource metadata or
+     * the jcr:lastModified property of the content.
+     * 
+     * @param resource the resource to check
+     * @return the last modified time or -1 if it cannot be determined
+     */
+    public static long getLastModified(Resource resource) {
+        ResourceMetadata metadata = resource.getResourceMetadata();
+        if (metadata != null && metadata.getModificationTime() > 0) {
+            return metadata.getModificationTime();
+        }
+        ValueMap properties = resource.getValueMap();
+        Calendar lastModified = properties != null ? properties.get(PN_LAST_MODIFIED, Calendar.class) : null;
+        return lastModified != null ? lastModified.getTimeInMillis() : -1;
+    }
+
+    /**
+     * Get a digest of the transformation, covering the names and properties of
+     * the transformation and all of its descendants, such as the handlers.
+     * 
+     * @param transformation the transformation resource
+     * @return the digest of the transformation
+     */
+    static String getDigest(Resource transformation) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        digest(transformation, "", hasher);
+        return hasher.hash().toString();
+    }
+
+    private static void digest(Resource resource, String relativePath, Hasher hasher) {
+        hasher.putString(relativePath, StandardCharsets.UTF_8).putChar('\0');
+        ValueMap properties = resource.getValueMap();
+        if (properties != null) {
+            for (Map.Entry<String, Object> property : new TreeMap<>(properties).entrySet()) {
+                hasher.putString(property.getKey(), StandardCharsets.UTF_8).putChar('=')
+                        .putString(toString(property.getValue()), StandardCharsets.UTF_8).putChar('\0');
+            }
+        }
+        Iterable<Resource> children = resource.getChildren();
+        if (children != null) {
+            for (Resource child : children) {
+                digest(child, relativePath + "/" + child.getName(), hasher);
+            }
+        }
+    }
+
+    private static String toString(Object value) {
+        if (value instanceof Calendar) {
+            return String.valueOf(((Calendar) value).getTimeInMillis());
+        } else if (value instanceof Object[]) {
+            return Arrays.deepToString((Object[]) value);
+        } else if (value instanceof InputStream) {
+            // binaries cannot be compared without reading them
+            return "binary";
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Get the key for caching the rendition of the resource.
+     * 
+     * @param resource       the resource being rendered
+     * @param renditionName  the rendition name (including extension)
+     * @param transformation the transformation resource applied for the
+     *                       rendition, may be null
+     * @return the key or null if the rendition cannot be cached
+     */
+    @Nullable
+    public String getKey(Resource resource, String renditionName, @Nullable Resource transformation) {
+        long lastModified = getLastModified(resource);
+        if (lastModified <= 0 || resource.getPath() == null || transformation == null) {
+            return null;
+        }
+        transformations.add(transformation.getPath());
+        return resource.getPath() + ":" + lastModified + ":" + renditionName + ":" + transformation.getPath() + ":"
+                + getDigest(transformation);
+    }
+
+    /**
+     * Get the strong ETag for the key. As the key includes the last modified
+     * time of the resource and the digest of the transformation, the ETag changes
+     * whenever either changes and is stable across restarts and instances.
+     * 
+     * @param key the cache key
+     * @return the ETag, including quotes
+     */
+    public String getETag(String key) {
+        return "\"" + Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8) + "\"";
+    }
+
+    /**
+     * Checks if the If-None-Match header value matches the ETag.
+     * 
+     * @param ifNoneMatch the If-None-Match header value, may be null
+     * @param etag        the current ETag
+     * @return true if the ETag matches
+     */
+    public static boolean matches(@Nullable String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(",")).map(String::trim)
+                .anyMatch(tag -> "*".equals(tag) || etag.equals(tag));
+    }
+
+    /**
+     * Get the cached rendition.
+     * 
+     * @param key the cache key
+     * @return a read only buffer of the rendition or null if it is not cached
+     */
+    @Nullable
+    public ByteBuffer get(String key) {
+        ByteBuffer cached = enabled ? cache.getIfPresent(key) : null;
+        if (cached == null) {
+            misses.inc();
+            return null;
+        }
+        hits.inc();
+        return cached.duplicate();
+    }
+
+    /**
+     * Writes the buffer to the output stream.
+     * 
+     * @param buffer the buffer to write
+     * @param out    the stream to write to
+     * @throws IOException an exception occurs writing the buffer
+     */
+    public static void write(ByteBuffer buffer, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Caches the contents of the spooled rendition, if it is within the maximum
+     * entry size.
+     * 
+     * @param key   the cache key
+     * @param spool the spooled rendition
+     */
+    public void put(String key, RenditionSpool spool) {
+        if (!enabled || spool.getSize() > maxEntrySize) {
+            log.trace("Not caching rendition {} of {} bytes", key, spool.getSize());
+            return;
+        }
+        byte[] contents;
+        try (InputStream is = spool.getInputStream()) {
+            contents = IOUtils.toByteArray(is);
+        } catch (IOException e) {
+            log.warn("Failed to read spooled rendition {}", key, e);
+            return;
+        }
+        ByteBuffer buffer;
+        if (offHeap) {
+            buffer = ByteBuffer.allocateDirect(contents.length);
+            buffer.put(contents);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(contents);
+        }
+        cache.put(key, buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * @return the number of cached renditions
+     */
+    public long getCount() {
+        return cache.size();
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (path == null) {
+            return;
+        }
+        if (transformations.removeIf(t -> t.equals(path) || t.startsWith(path + "/") || path.startsWith(t + "/"))) {
+            log.debug("Transformation updated at {}, clearing cache", path);
+            cache.invalidateAll();
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Configuration for the RenditionCache
+ */
+@ObjectClassDefinition(name = "%renditioncache.name", description = "%renditioncache.description", localization = "OSGI-INF/l10n/bundle")
+public @interface RenditionCacheConfig {
+
+    @AttributeDefinition(name = "%renditioncache.maxSize.name", description = "%renditioncache.maxSize.description")
+    long maxSize() default 67108864;
+
+    @AttributeDefinition(name = "%renditioncache.maxEntrySize.name", description = "%renditioncache.maxEntrySize.description")
+    int maxEntrySize() default 1048576;
+
+    @AttributeDefinition(name = "%renditioncache.offHeap.name", description = "%renditioncache.offHeap.description")
+    boolean offHeap() default false;
+
+}
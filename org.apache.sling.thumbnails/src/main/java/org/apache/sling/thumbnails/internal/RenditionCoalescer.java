@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent requests to render the same rendition of a resource, so
+ * that only the first request renders and every other concurrent request waits
+ * for and reuses the result.
+ * 
+ * The first request streams the rendition to its output and to a spool at the
+ * same time, the waiting requests copy the spooled rendition to their output.
+ * Before sharing the spool the first request retains a reference for every
+ * waiting request, so it can release its own reference right away.
+ */
+@Component(service = RenditionCoalescer.class)
+public class RenditionCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionCoalescer.class);
+
+    /**
+     * Renders the contents of a rendition.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        void render(OutputStream out) throws IOException;
+    }
+
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final RenditionPersister renditionPersister;
+
+    private final Counter coalesced;
+
+    private final Timer waitTime;
+
+    @Activate
+    public RenditionCoalescer(@Reference RenditionPersister renditionPersister, @Reference ThumbnailMetrics metrics) {
+        this.renditionPersister = renditionPersister;
+        this.coalesced = metrics.counter("rendition.coalesced");
+        this.waitTime = metrics.timer("rendition.coalesced.wait");
+    }
+
+    /**
+     * Renders the rendition to the output, or waits for the rendering already in
+     * progress for the same resource and rendition and copies its result to the
+     * output.
+     * 
+     * @param path          the path of the resource being rendered
+     * @param renditionName the name of the rendition being rendered
+     * @param out           the stream to write the rendition to
+     * @param renderer      the renderer to invoke if no rendering is in progress
+     * @return the spooled rendition if this call rendered it, the caller is
+     *         responsible for releasing it, or null if the rendition was
+     *         copied from a concurrent rendering
+     * @throws IOException an exception occurs rendering the rendition
+     */
+    @Nullable
+    public RenditionSpool render(String path, String renditionName, OutputStream out, Renderer renderer)
+            throws IOException {
+        String key = path + ":" + renditionName;
+        while (true) {
+            InFlight rendering = new InFlight();
+            InFlight existing = inFlight.putIfAbsent(key, rendering);
+            if (existing == null) {
+                return renderAndShare(key, rendering, out, renderer);
+            }
+            if (!existing.join()) {
+                log.debug("In-flight rendering of {} completed before it could be joined", key);
+                continue;
+            }
+            log.debug("Waiting for in-flight rendering of {}", key);
+            coalesced.inc();
+            RenditionSpool spool = await(existing.future);
+            if (spool != null) {
+                try (InputStream contents = spool.getInputStream()) {
+                    IOUtils.copy(contents, out);
+                } finally {
+                    spool.release();
+                }
+                return null;
+            }
+            log.debug("Rendering of {} failed, rendering it again", key);
+        }
+    }
+
+    private RenditionSpool renderAndShare(String key, InFlight rendering, OutputStream out, Renderer renderer)
+            throws IOException {
+        RenditionSpool spool = renditionPersister.newSpool();
+        try {
+            renderer.render(new TeeOutputStream(out, spool));
+            spool.close();
+        } catch (IOException | RuntimeException e) {
+            spool.release();
+            inFlight.remove(key, rendering);
+            rendering.fail(e);
+            throw e;
+        }
+        inFlight.remove(key, rendering);
+        rendering.complete(spool);
+        return spool;
+    }
+
+    /**
+     * Waits for the in-flight rendering. Returns null if the rendering failed
+     * with an IOException, e.g. due to the rendering client disconnecting, so the
+     * waiting request can render itself, other failures are rethrown.
+     */
+    @Nullable
+    private RenditionSpool await(CompletableFuture<RenditionSpool> existing) throws IOException {
+        try (Timer.Context ctx = waitTime.time()) {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // release the reference retained for this request once done
+            existing.thenAccept(RenditionSpool::release);
+            throw new IOException("Interrupted waiting for rendition", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                log.debug("In-flight rendering failed", cause);
+                return null;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to render rendition", cause);
+        }
+    }
+
+    /**
+     * A rendering in progress. Requests join it while it is in progress, once
+     * done the spool is retained once per joined request, each of which must
+     * release its reference after reading it.
+     */
+    private static final class InFlight {
+
+        private final CompletableFuture<RenditionSpool> future = new CompletableFuture<>();
+
+        private int waiters;
+
+        private boolean done;
+
+        synchronized boolean join() {
+            if (done) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        synchronized void complete(RenditionSpool spool) {
+            done = true;
+            for (int i = 0; i < waiters; i++) {
+                spool.tryRetain();
+            }
+            future.complete(spool);
+        }
+
+        synchronized void fail(Throwable cause) {
+            done = true;
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * @return the number of renditions currently being rendered
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+}
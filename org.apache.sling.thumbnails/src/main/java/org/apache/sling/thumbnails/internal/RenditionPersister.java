@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.thumbnails.RenditionSupport;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the spools renditions are rendered into and persists the spooled
+ * renditions, either in the background once the response has been written or
+ * directly on the calling thread.
+ */
+@Component(service = RenditionPersister.class)
+@Designate(ocd = RenditionPersisterConfig.class)
+public class RenditionPersister {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionPersister.class);
+
+    private static final int MAX_PENDING = 100;
+
+    private final RenditionSupport renditionSupport;
+
+    private final TransformationServiceUser transformationServiceUser;
+
+    private final boolean async;
+
+    private final int memoryThreshold;
+
+    private final ThreadPoolExecutor executor;
+
+    @Activate
+    public RenditionPersister(@Reference RenditionSupport renditionSupport,
+            @Reference TransformationServiceUser transformationServiceUser, RenditionPersisterConfig config) {
+        this.renditionSupport = renditionSupport;
+        this.transformationServiceUser = transformationServiceUser;
+        this.async = config.async();
+        this.memoryThreshold = config.memoryThreshold();
+        this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_PENDING),
+                r -> {
+                    Thread thread = new Thread(r, "sling-thumbnails-persister");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new PersistRejectionHandler());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Deactivate
+    public void deactivate() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Timed out waiting for renditions to persist");
+            executor.shutdownNow().forEach(PersistRejectionHandler::discard);
+        }
+    }
+
+    /**
+     * @return a new spool to render a rendition into
+     */
+    public RenditionSpool newSpool() {
+        return new RenditionSpool(memoryThreshold);
+    }
+
+    /**
+     * Persists the spooled rendition and releases the spool. If the persister is
+     * asynchronous and is already persisting the maximum number of renditions,
+     * the rendition is persisted on the calling thread. Failures to persist
+     * asynchronously are only logged, use {@link #persistNow} when the caller has
+     * to know whether the rendition was saved.
+     * 
+     * @param path          the path of the resource to persist the rendition on
+     * @param renditionName the name of the rendition
+     * @param spool         the spool containing the rendition
+     * @throws IOException an exception occurs persisting synchronously
+     */
+    public void persist(String path, String renditionName, RenditionSpool spool) throws IOException {
+        if (async) {
+            executor.execute(new PersistTask(path, renditionName, spool));
+        } else {
+            doPersist(path, renditionName, spool);
+        }
+    }
+
+    /**
+     * Persists the spooled rendition on the calling thread, regardless of whether
+     * the persister is asynchronous, and releases the spool.
+     * 
+     * @param path          the path of the resource to persist the rendition on
+     * @param renditionName the name of the rendition
+     * @param spool         the spool containing the rendition
+     * @throws IOException an exception occurs persisting the rendition
+     */
+    public void persistNow(String path, String renditionName, RenditionSpool spool) throws IOException {
+        doPersist(path, renditionName, spool);
+    }
+
+    private void doPersist(String path, String renditionName, RenditionSpool spool) throws IOException {
+        try (ResourceResolver serviceResolver = transformationServiceUser.getTransformationServiceUser();
+                InputStream contents = spool.getInputStream()) {
+            Resource file = serviceResolver.getResource(path);
+            if (file == null) {
+                log.warn("Unable to persist rendition {}, no resource found at {}", renditionName, path);
+            } else {
+                log.debug("Saving rendition {} of {}", renditionName, path);
+                renditionSupport.setRendition(file, renditionName, contents);
+            }
+        } catch (LoginException le) {
+            throw new PersistenceException("Could not save due to LoginException", le);
+        } finally {
+            spool.release();
+        }
+    }
+
+    private class PersistTask implements Runnable {
+
+        private final String path;
+
+        private final String renditionName;
+
+        private final RenditionSpool spool;
+
+        PersistTask(String path, String renditionName, RenditionSpool spool) {
+            this.path = path;
+            this.renditionName = renditionName;
+            this.spool = spool;
+        }
+
+        @Override
+        public void run() {
+            try {
+                doPersist(path, renditionName, spool);
+            } catch (IOException e) {
+                log.warn("Failed to persist rendition {} of {}", renditionName, path, e);
+            }
+        }
+    }
+
+    /**
+     * Persists on the calling thread while the executor is saturated and discards
+     * the rendition, releasing its spool, once the executor has been shut down.
+     */
+    private static class PersistRejectionHandler implements RejectedExecutionHandler {
+
+        static void discard(Runnable task) {
+            if (task instanceof PersistTask) {
+                PersistTask persistTask = (PersistTask) task;
+                log.warn("Discarding rendition {} of {}, the persister has been stopped", persistTask.renditionName,
+                        persistTask.path);
+                persistTask.spool.release();
+            }
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                discard(task);
+            } else {
+                task.run();
+            }
+        }
+    }
+
+}
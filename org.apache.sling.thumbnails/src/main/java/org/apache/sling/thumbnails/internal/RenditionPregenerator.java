@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Counter;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.thumbnails.BadRequestException;
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.apache.sling.thumbnails.RenditionSupport;
+import org.apache.sling.thumbnails.ThumbnailSupport;
+import org.apache.sling.thumbnails.Transformation;
+import org.apache.sling.thumbnails.Transformer;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.Designate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders and persists the configured renditions in the background when a
+ * persistable resource is added or changed, so the first request for the
+ * rendition does not have to wait for it to render. Events are filtered by
+ * path, the type of the resource is checked by the workers, so the event thread
+ * never has to access the repository.
+ * 
+ * Renditions are rendered by a bounded pool of workers from a bounded queue
+ * prioritized by the order of the configured renditions. Renditions which are
+ * already queued are merged and renditions requested while the queue is full
+ * are dropped.
+ */
+@Component(service = { RenditionPregenerator.class, EventHandler.class }, property = {
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/ADDED",
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/CHANGED",
+        EventConstants.EVENT_FILTER + "=" + RenditionPregeneratorConfig.DEFAULT_EVENT_FILTER })
+@Designate(ocd = RenditionPregeneratorConfig.class)
+public class RenditionPregenerator implements EventHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionPregenerator.class);
+
+    private static final String JCR_CONTENT_SEGMENT = "/jcr:content";
+
+    private final ThumbnailSupport thumbnailSupport;
+    private final RenditionSupport renditionSupport;
+    private final Transformer transformer;
+    private final TransformationCache transformationCache;
+    private final TransformationServiceUser transformationServiceUser;
+    private final RenditionCoalescer renditionCoalescer;
+    private final RenditionPersister renditionPersister;
+
+    private final List<String> renditions = new ArrayList<>();
+    private final int maxQueueSize;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Counter queued;
+    private final Counter merged;
+    private final Counter dropped;
+    private final Counter completed;
+    private final Counter failed;
+
+    @Activate
+    public RenditionPregenerator(@Reference ThumbnailSupport thumbnailSupport,
+            @Reference RenditionSupport renditionSupport, @Reference Transformer transformer,
+            @Reference TransformationCache transformationCache,
+            @Reference TransformationServiceUser transformationServiceUser,
+            @Reference RenditionCoalescer renditionCoalescer, @Reference RenditionPersister renditionPersister,
+            @Reference ThumbnailMetrics metrics, RenditionPregeneratorConfig config) {
+        this.thumbnailSupport = thumbnailSupport;
+        this.renditionSupport = renditionSupport;
+        this.transformer = transformer;
+        this.transformationCache = transformationCache;
+        this.transformationServiceUser = transformationServiceUser;
+        this.renditionCoalescer = renditionCoalescer;
+        this.renditionPersister = renditionPersister;
+
+        for (String rendition : config.renditions()) {
+            if (!isValidRendition(rendition)) {
+                log.warn("Could not parse rendition from {}", rendition);
+            } else if (renditions.contains(rendition)) {
+                log.warn("Ignoring duplicate rendition: {}", rendition);
+            } else {
+                renditions.add(rendition);
+            }
+        }
+        this.maxQueueSize = config.maxQueueSize();
+
+        int threads = Math.max(1, config.threads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                new PregeneratorThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.queued = metrics.counter("pregenerate.queued");
+        this.merged = metrics.counter("pregenerate.merged");
+        this.dropped = metrics.counter("pregenerate.dropped");
+        this.completed = metrics.counter("pregenerate.completed");
+        this.failed = metrics.counter("pregenerate.failed");
+    }
+
+    static boolean isValidRendition(String rendition) {
+        if (StringUtils.isBlank(StringUtils.substringBeforeLast(rendition, "."))) {
+            return false;
+        }
+        try {
+            OutputFileFormat.forValue(StringUtils.substringAfterLast(rendition, "."));
+            return true;
+        } catch (BadRequestException e) {
+            return false;
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        executor.shutdownNow();
+        pending.clear();
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (renditions.isEmpty() || path == null || isRenditionPath(path)) {
+            return;
+        }
+        if (path.contains(JCR_CONTENT_SEGMENT)) {
+            // the event describes the content of the file, its type is checked when rendering
+            path = StringUtils.substringBefore(path, JCR_CONTENT_SEGMENT);
+        } else {
+            String resourceType = (String) event.getProperty(SlingConstants.PROPERTY_RESOURCE_TYPE);
+            if (resourceType != null && !thumbnailSupport.getPersistableTypes().contains(resourceType)) {
+                log.trace("Ignoring event for non-persistable resource {} of type {}", path, resourceType);
+                return;
+            }
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            enqueue(path, renditions.get(i), i);
+        }
+    }
+
+    private boolean isRenditionPath(String path) {
+        return thumbnailSupport.getPersistableTypes().stream().map(thumbnailSupport::getRenditionPath)
+                .anyMatch(rp -> path.contains("/" + rp + "/") || path.endsWith("/" + rp));
+    }
+
+    /**
+     * Enqueues the rendition to be rendered for the resource at the specified
+     * path.
+     * 
+     * @param path      the path of the resource to render
+     * @param rendition the rendition to render
+     * @param priority  the priority of the rendition, lower is rendered first
+     * @return true if the rendition was enqueued, false if it was merged or
+     *         dropped
+     */
+    boolean enqueue(String path, String rendition, int priority) {
+        String key = path + ":" + rendition;
+        if (pending.contains(key)) {
+            log.debug("Merging {} with queued rendition", key);
+            merged.inc();
+            return false;
+        }
+        if (executor.getQueue().size() >= maxQueueSize) {
+            log.debug("Dropping {} due to full queue", key);
+            dropped.inc();
+            return false;
+        }
+        if (!pending.add(key)) {
+            merged.inc();
+            return false;
+        }
+        queued.inc();
+        executor.execute(new PregenerateTask(key, path, rendition, priority, sequence.incrementAndGet()));
+        return true;
+    }
+
+    private void render(String path, String rendition) {
+        String renditionName = "/" + rendition;
+        try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
+            Resource file = resolver.getResource(path);
+            if (file == null || !renditionSupport.supportsRenditions(file)) {
+                log.trace("Skipping non-persistable resource {}", path);
+                return;
+            }
+            Optional<Transformation> transformation = transformationCache.getTransformation(resolver,
+                    "/" + StringUtils.substringBeforeLast(rendition, "."));
+            if (!transformation.isPresent()) {
+                log.warn("Unable to find transformation for rendition: {}", rendition);
+                failed.inc();
+                return;
+            }
+            OutputFileFormat format = OutputFileFormat.forValue(StringUtils.substringAfterLast(rendition, "."));
+            log.debug("Pregenerating rendition {} of {}", rendition, path);
+            RenditionSpool spool = renditionCoalescer.render(path, renditionName, NullOutputStream.NULL_OUTPUT_STREAM,
+                    out -> transformer.transform(file, transformation.get(), format, out));
+            if (spool != null) {
+                renditionPersister.persist(path, renditionName, spool);
+            }
+            completed.inc();
+        } catch (Exception e) {
+            log.warn("Failed to pregenerate rendition {} of {}", rendition, path, e);
+            failed.inc();
+        }
+    }
+
+    /**
+     * @return the configured renditions, in order of priority
+     */
+    public List<String> getRenditions() {
+        return Collections.unmodifiableList(renditions);
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getQueuedCount() {
+        return queued.getCount();
+    }
+
+    public long getMergedCount() {
+        return merged.getCount();
+    }
+
+    public long getDroppedCount() {
+        return dropped.getCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.getCount();
+    }
+
+    public long getFailedCount() {
+        return failed.getCount();
+    }
+
+    private class PregenerateTask implements Runnable, Comparable<PregenerateTask> {
+
+        private final String key;
+        private final String path;
+        private final String rendition;
+        private final int priority;
+        private final long order;
+
+        public PregenerateTask(String key, String path, String rendition, int priority, long order) {
+            this.key = key;
+            this.path = path;
+            this.rendition = rendition;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            pending.remove(key);
+            render(path, rendition);
+        }
+
+        @Override
+        public int compareTo(@NotNull PregenerateTask other) {
+            int result = Integer.compare(priority, other.priority);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+
+    private static class PregeneratorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, "sling-thumbnails-pregenerator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
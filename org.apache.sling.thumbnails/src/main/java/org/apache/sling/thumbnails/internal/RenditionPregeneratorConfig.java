@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Configuration for the RenditionPregenerator
+ */
+@ObjectClassDefinition(name = "%pregenerator.name", description = "%pregenerator.description", localization = "OSGI-INF/l10n/bundle")
+public @interface RenditionPregeneratorConfig {
+
+    /**
+     * Files below /content, excluding the nodes below their content such as the
+     * renditions.
+     */
+    String DEFAULT_EVENT_FILTER = "(&(path=/content/*)(!(path=*/jcr:content/*)))";
+
+    @AttributeDefinition(name = "%pregenerator.renditions.name", description = "%pregenerator.renditions.description")
+    String[] renditions() default {};
+
+    @AttributeDefinition(name = "%pregenerator.threads.name", description = "%pregenerator.threads.description")
+    int threads() default 2;
+
+    @AttributeDefinition(name = "%pregenerator.maxQueueSize.name", description = "%pregenerator.maxQueueSize.description")
+    int maxQueueSize() default 1000;
+
+    @AttributeDefinition(name = "%pregenerator.eventFilter.name", description = "%pregenerator.eventFilter.description")
+    String event_filter() default DEFAULT_EVENT_FILTER;
+
+}
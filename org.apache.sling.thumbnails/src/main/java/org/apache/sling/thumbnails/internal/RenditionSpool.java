@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An OutputStream which spools a rendition in memory up to a threshold and to
+ * a temporary file beyond it, so the rendition can be read back any number of
+ * times once written.
+ * 
+ * The spool is reference counted, the creator holds the first reference and
+ * the temporary file is deleted once every reference has been released.
+ */
+public class RenditionSpool extends OutputStream {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionSpool.class);
+
+    private final int threshold;
+
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+    private File file;
+
+    private OutputStream fileStream;
+
+    private long size;
+
+    private int references = 1;
+
+    private boolean closed;
+
+    public RenditionSpool(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkWritable(1);
+        current().write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkWritable(len);
+        current().write(b, off, len);
+        size += len;
+    }
+
+    private void checkWritable(int len) throws IOException {
+        if (closed) {
+            throw new IOException("Spool is closed");
+        }
+        if (file == null && size + len > threshold) {
+            file = File.createTempFile("sling-thumbnails-", ".spool");
+            log.debug("Spooling rendition to {}", file);
+            fileStream = Files.newOutputStream(file.toPath());
+            memory.writeTo(fileStream);
+            memory = null;
+        }
+    }
+
+    private OutputStream current() {
+        return fileStream != null ? fileStream : memory;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileStream != null) {
+            fileStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (fileStream != null) {
+                fileStream.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a new stream over the spooled contents. The spool must be closed
+     * before it is read.
+     * 
+     * @return a stream of the spooled contents
+     * @throws IOException the spool is not closed or has been released
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        if (!closed || references <= 0) {
+            throw new IOException("Spool is not readable");
+        }
+        return file != null ? Files.newInputStream(file.toPath()) : new ByteArrayInputStream(memory.toByteArray());
+    }
+
+    /**
+     * @return the number of bytes spooled
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the contents have been spooled to a temporary file
+     */
+    public boolean isOnDisk() {
+        return file != null;
+    }
+
+    /**
+     * Acquires an additional reference to the spool, if it has not already been
+     * released.
+     * 
+     * @return true if the reference was acquired, false if the spool was
+     *         released
+     */
+    public synchronized boolean tryRetain() {
+        if (references <= 0) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    /**
+     * Releases a reference to the spool, deleting the temporary file once no
+     * references remain.
+     */
+    public synchronized void release() {
+        references--;
+        if (references == 0) {
+            try {
+                close();
+                if (file != null) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete spool file {}", file, e);
+            }
+            memory = null;
+        }
+    }
+
+}
@@ -22,11 +22,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
 
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -93,24 +95,45 @@ public class RenditionSupportImpl implements RenditionSupport {
     @Override
     public void setRendition(@NotNull Resource file, @NotNull String renditionName, @NotNull InputStream contents)
             throws PersistenceException {
+        setRenditions(file, Collections.singletonMap(renditionName, contents));
+    }
+
+    @Override
+    public void setRenditions(@NotNull Resource file, @NotNull Map<String, InputStream> renditions)
+            throws PersistenceException {
+        try (ResourceResolver serviceResolver = transformationServiceUser.getTransformationServiceUser()) {
+            for (Entry<String, InputStream> rendition : renditions.entrySet()) {
+                createRendition(serviceResolver, file, rendition.getKey(), rendition.getValue());
+            }
+            serviceResolver.commit();
+        } catch (LoginException le) {
+            throw new PersistenceException("Could not save due to LoginException", le);
+        }
+    }
+
+    private void createRendition(ResourceResolver serviceResolver, Resource file, String renditionName,
+            InputStream contents) throws PersistenceException {
         if (renditionName.indexOf("/") != 0) {
             renditionName = "/" + renditionName;
         }
-        try (ResourceResolver serviceResolver = transformationServiceUser.getTransformationServiceUser()) {
-
-            Resource renditionFile = ResourceUtil.getOrCreateResource(serviceResolver,
-                    file.getPath() + "/" + thumbnailSupport.getRenditionPath(file.getResourceType()) + renditionName,
-                    Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE),
-                    JcrConstants.NT_UNSTRUCTURED, false);
+        Resource renditionFile = ResourceUtil.getOrCreateResource(serviceResolver,
+                file.getPath() + "/" + thumbnailSupport.getRenditionPath(file.getResourceType()) + renditionName,
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE),
+                JcrConstants.NT_UNSTRUCTURED, false);
+        Resource content = renditionFile.getChild(JcrConstants.JCR_CONTENT);
+        if (content != null) {
+            // replace the contents of an existing rendition, e.g. after the file changed
+            ModifiableValueMap properties = content.adaptTo(ModifiableValueMap.class);
+            if (properties == null) {
+                throw new PersistenceException("Cannot modify rendition " + content.getPath());
+            }
+            properties.put(JcrConstants.JCR_DATA, contents);
+        } else {
             Map<String, Object> properties = new HashMap<>();
             properties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
             properties.put(JcrConstants.JCR_DATA, contents);
-            ResourceUtil.getOrCreateResource(serviceResolver, renditionFile.getPath() + "/" + JcrConstants.JCR_CONTENT,
-                    properties, JcrConstants.NT_UNSTRUCTURED, true);
-        } catch (LoginException le) {
-            throw new PersistenceException("Could not save due to LoginException", le);
+            serviceResolver.create(renditionFile, JcrConstants.JCR_CONTENT, properties);
         }
-
     }
 
 }
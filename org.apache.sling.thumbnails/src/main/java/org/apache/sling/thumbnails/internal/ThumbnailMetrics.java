@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+
+/**
+ * Service for publishing the thumbnail metrics. Uses the Sling MetricRegistry
+ * if one is available, otherwise the metrics are kept in a local registry.
+ */
+@Component(service = ThumbnailMetrics.class)
+public class ThumbnailMetrics {
+
+    public static final String PREFIX = "sling.thumbnails.";
+
+    /**
+     * The number of slowest transformations to keep.
+     */
+    public static final int SLOWEST_SIZE = 10;
+
+    private final MetricRegistry registry;
+
+    private final PriorityQueue<TransformationTiming> slowest = new PriorityQueue<>(
+            Comparator.comparingLong(TransformationTiming::getDuration));
+
+    @Activate
+    public ThumbnailMetrics(
+            @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY, target = "(name=sling)") MetricRegistry registry) {
+        this.registry = registry != null ? registry : new MetricRegistry();
+    }
+
+    public Counter counter(String name) {
+        return registry.counter(PREFIX + name);
+    }
+
+    public Histogram histogram(String name) {
+        return registry.histogram(PREFIX + name);
+    }
+
+    public Timer timer(String name) {
+        return registry.timer(PREFIX + name);
+    }
+
+    /**
+     * Records the duration of a transformation, keeping it if it is one of the
+     * slowest transformations.
+     * 
+     * @param path           the path of the transformed resource
+     * @param transformation the name of the transformation
+     * @param duration       the duration of the transformation in nanoseconds
+     */
+    public void recordTransformation(String path, String transformation, long duration) {
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST_SIZE) {
+                slowest.add(new TransformationTiming(path, transformation, duration));
+            } else if (slowest.peek().getDuration() < duration) {
+                slowest.poll();
+                slowest.add(new TransformationTiming(path, transformation, duration));
+            }
+        }
+    }
+
+    /**
+     * @return the slowest transformations, slowest first
+     */
+    public List<TransformationTiming> getSlowestTransformations() {
+        List<TransformationTiming> timings;
+        synchronized (slowest) {
+            timings = new ArrayList<>(slowest);
+        }
+        timings.sort(Comparator.comparingLong(TransformationTiming::getDuration).reversed());
+        return timings;
+    }
+
+    /**
+     * @return the registry
+     */
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * The duration of a single transformation.
+     */
+    public static class TransformationTiming {
+
+        private final String path;
+        private final String transformation;
+        private final long duration;
+
+        TransformationTiming(String path, String transformation, long duration) {
+            this.path = path;
+            this.transformation = transformation;
+            this.duration = duration;
+        }
+
+        /**
+         * @return the path of the transformed resource
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the name of the transformation
+         */
+        public String getTransformation() {
+            return transformation;
+        }
+
+        /**
+         * @return the duration in nanoseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return the duration in milliseconds
+         */
+        public long getDurationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(duration);
+        }
+    }
+
+}
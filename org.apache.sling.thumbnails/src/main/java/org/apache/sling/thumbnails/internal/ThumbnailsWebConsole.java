@@ -20,16 +20,24 @@ package org.apache.sling.thumbnails.internal;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
 
 import org.apache.felix.webconsole.AbstractWebConsolePlugin;
 import org.apache.felix.webconsole.WebConsoleConstants;
+import org.apache.felix.webconsole.WebConsoleUtil;
+import org.apache.sling.thumbnails.extension.ImageEncoder;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
 import org.apache.sling.thumbnails.extension.TransformationHandler;
 import org.apache.sling.thumbnails.ThumbnailSupport;
@@ -41,7 +49,8 @@ import org.osgi.service.component.annotations.Reference;
 
 /**
  * Simple web console plugin for listing out the registered thumbnail providers
- * and transformation handler
+ * and transformation handler as well as the timings of the transformation
+ * pipeline
  */
 @Component(property = { Constants.SERVICE_DESCRIPTION + "=Web Console Plugin for Apache Sling Thumbnails",
         Constants.SERVICE_VENDOR + "=The Apache Software Foundation",
@@ -57,11 +66,16 @@ public class ThumbnailsWebConsole extends AbstractWebConsolePlugin {
 
     private final Transformer transformer;
     private final ThumbnailSupport thumbnailSupport;
+    private final RenditionPregenerator pregenerator;
+    private final ThumbnailMetrics metrics;
 
     @Activate
-    public ThumbnailsWebConsole(@Reference ThumbnailSupport thumbnailSupport, @Reference Transformer transformer) {
+    public ThumbnailsWebConsole(@Reference ThumbnailSupport thumbnailSupport, @Reference Transformer transformer,
+            @Reference RenditionPregenerator pregenerator, @Reference ThumbnailMetrics metrics) {
         this.thumbnailSupport = thumbnailSupport;
         this.transformer = transformer;
+        this.pregenerator = pregenerator;
+        this.metrics = metrics;
     }
 
     @Override
@@ -82,12 +96,12 @@ public class ThumbnailsWebConsole extends AbstractWebConsolePlugin {
         printSeparator(pw, "Supported Resource Types", true);
         pw.println("[Resource Type] => [MetaType Property Path]");
         thumbnailSupport.getSupportedTypes()
-                .forEach(st -> pw.println(st + " => " + thumbnailSupport.getMetaTypePropertyPath(st)));
+                .forEach(st -> pw.println(escape(st) + " => " + escape(thumbnailSupport.getMetaTypePropertyPath(st))));
 
         printSeparator(pw, "Persistable Resource Types", false);
         pw.println("[Resource Type] => [Rendition Path]");
         thumbnailSupport.getPersistableTypes()
-                .forEach(pt -> pw.println(pt + " => " + thumbnailSupport.getRenditionPath(pt)));
+                .forEach(pt -> pw.println(escape(pt) + " => " + escape(thumbnailSupport.getRenditionPath(pt))));
 
         printSeparator(pw, "Registered Thumbnail Providers", false);
         List<ThumbnailProvider> providers = ((TransformerImpl) transformer).getThumbnailProviders();
@@ -95,11 +109,55 @@ public class ThumbnailsWebConsole extends AbstractWebConsolePlugin {
 
         printSeparator(pw, "Registered Transformation Providers", false);
         List<TransformationHandler> handlers = ((TransformerImpl) transformer).getHandlers();
-        handlers.forEach(h -> pw.println(h.getResourceType() + "=" + h.getClass().getCanonicalName()));
+        handlers.forEach(h -> pw.println(escape(h.getResourceType()) + "=" + h.getClass().getCanonicalName()));
+
+        printSeparator(pw, "Registered Image Encoders", false);
+        List<ImageEncoder> encoders = ((TransformerImpl) transformer).getEncoders();
+        encoders.forEach(e -> pw.println(e.getClass().getName()));
+
+        printSeparator(pw, "Rendition Pregeneration", false);
+        pw.println("Renditions: " + escape(pregenerator.getRenditions()));
+        pw.println("Queue: " + pregenerator.getQueueSize() + "/" + pregenerator.getMaxQueueSize());
+        pw.println("Active: " + pregenerator.getActiveCount());
+        pw.println("Queued: " + pregenerator.getQueuedCount());
+        pw.println("Merged: " + pregenerator.getMergedCount());
+        pw.println("Dropped: " + pregenerator.getDroppedCount());
+        pw.println("Completed: " + pregenerator.getCompletedCount());
+        pw.println("Failed: " + pregenerator.getFailedCount());
+
+        printSeparator(pw, "Transformation Timings", false);
+        pw.println("[Metric] => [Count, Mean, 99th Percentile]");
+        metrics.getRegistry().getTimers((name, metric) -> name.startsWith(ThumbnailMetrics.PREFIX)).entrySet()
+                .stream().filter(e -> e.getValue().getCount() > 0)
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Timer> e) -> e.getValue().getSnapshot()
+                        .getMean()).reversed())
+                .forEach(e -> {
+                    Snapshot snapshot = e.getValue().getSnapshot();
+                    pw.println(escape(e.getKey().substring(ThumbnailMetrics.PREFIX.length())) + " => "
+                            + e.getValue().getCount() + ", " + toMillis(snapshot.getMean()) + ", "
+                            + toMillis(snapshot.get99thPercentile()));
+                });
+
+        printSeparator(pw, "Slowest Transformations", false);
+        pw.println("[Duration] => [Transformation] [Path]");
+        metrics.getSlowestTransformations().forEach(t -> pw.println(
+                t.getDurationMillis() + "ms => " + escape(t.getTransformation()) + " " + escape(t.getPath())));
         pw.println("</pre>");
         pw.println("</div>");
     }
 
+    /**
+     * Escapes values which may originate from the repository, such as paths and
+     * transformation names, before they are written into the page.
+     */
+    private static String escape(Object value) {
+        return WebConsoleUtil.escapeHtml(String.valueOf(value));
+    }
+
+    private static String toMillis(double nanos) {
+        return String.format(Locale.ENGLISH, "%.2fms", nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
     private void printSeparator(PrintWriter pw, String title, boolean first) {
         if (!first) {
             pw.println("</pre><br/>");
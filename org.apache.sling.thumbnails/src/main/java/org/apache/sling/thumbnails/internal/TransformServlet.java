@@ -16,9 +16,10 @@
  */
 package org.apache.sling.thumbnails.internal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Optional;
@@ -28,8 +29,9 @@ import javax.servlet.RequestDispatcher;
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.util.IOUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.request.RequestDispatcherOptions;
@@ -76,12 +78,22 @@ public class TransformServlet extends SlingAllMethodsServlet {
 
     private final transient TransformationCache transformationCache;
 
+    private final transient RenditionCoalescer renditionCoalescer;
+
+    private final transient RenditionPersister renditionPersister;
+
+    private final transient RenditionCache renditionCache;
+
     @Activate
     public TransformServlet(@Reference ThumbnailSupport thumbnailSupport, @Reference Transformer transformer,
             @Reference TransformationServiceUser transformationServiceUser,
             @Reference TransformationCache transformationCache, @Reference RenditionSupport renditionSupport,
-            BundleContext context) {
+            @Reference RenditionCoalescer renditionCoalescer, @Reference RenditionPersister renditionPersister,
+            @Reference RenditionCache renditionCache, BundleContext context) {
         this.renditionSupport = renditionSupport;
+        this.renditionCoalescer = renditionCoalescer;
+        this.renditionPersister = renditionPersister;
+        this.renditionCache = renditionCache;
         this.thumbnailSupport = thumbnailSupport;
         this.transformer = transformer;
         this.transformationServiceUser = transformationServiceUser;
@@ -117,15 +129,32 @@ public class TransformServlet extends SlingAllMethodsServlet {
 
         log.debug("Transforming resource: {} with transformation: {} to {}", request.getResource(), transformationName,
                 format);
-        try {
+        try (ResourceResolver serviceResolver = transformationServiceUser.getTransformationServiceUser()) {
             Resource file = request.getResource();
-            if (renditionSupport.renditionExists(file, renditionName)) {
+            String cacheKey = renditionCache.getKey(file, renditionName,
+                    transformationCache.getResource(serviceResolver, transformationName).orElse(null));
+            String etag = cacheKey != null ? renditionCache.getETag(cacheKey) : null;
+            if (etag != null && RenditionCache.matches(request.getHeader("If-None-Match"), etag)) {
+                log.debug("Rendition {} of {} not modified", renditionName, file);
+                response.setStatus(304);
+                response.setHeader("ETag", etag);
+                return;
+            }
+            ByteBuffer cached = cacheKey != null ? renditionCache.get(cacheKey) : null;
+            if (cached != null) {
+                log.debug("Serving rendition {} of {} from cache", renditionName, file);
                 response.setContentType(OutputFileFormat.forRequest(request).getMimeType());
-                IOUtils.copy(renditionSupport.getRenditionContent(file, renditionName), response.getOutputStream());
-            } else {
-                try (ResourceResolver servicResolver = transformationServiceUser.getTransformationServiceUser()) {
-                    performTransformation(request, response, transformationName, renditionName, servicResolver);
+                setCacheHeaders(response, file, cacheKey);
+                RenditionCache.write(cached, response.getOutputStream());
+            } else if (renditionSupport.renditionExists(file, renditionName)) {
+                response.setContentType(OutputFileFormat.forRequest(request).getMimeType());
+                setCacheHeaders(response, file, cacheKey);
+                try (InputStream contents = renditionSupport.getRenditionContent(file, renditionName)) {
+                    copyAndCache(contents, response.getOutputStream(), cacheKey);
                 }
+            } else {
+                performTransformation(request, response, transformationName, renditionName, serviceResolver,
+                        cacheKey);
             }
         } catch (BadRequestException e) {
             log.error("Could not render thumbnail due to bad request", e);
@@ -141,12 +170,35 @@ public class TransformServlet extends SlingAllMethodsServlet {
         }
     }
 
+    private void setCacheHeaders(SlingHttpServletResponse response, Resource file, String cacheKey) {
+        if (cacheKey != null) {
+            response.setHeader("ETag", renditionCache.getETag(cacheKey));
+            response.setDateHeader("Last-Modified", RenditionCache.getLastModified(file));
+        }
+    }
+
+    private void copyAndCache(InputStream contents, OutputStream out, String cacheKey) throws IOException {
+        if (cacheKey == null) {
+            IOUtils.copy(contents, out);
+        } else {
+            RenditionSpool spool = renditionPersister.newSpool();
+            try {
+                IOUtils.copy(contents, new TeeOutputStream(out, spool));
+                spool.close();
+                renditionCache.put(cacheKey, spool);
+            } finally {
+                spool.release();
+            }
+        }
+    }
+
     private void performTransformation(SlingHttpServletRequest request, SlingHttpServletResponse response,
-            String transformationName, String renditionName, ResourceResolver serviceResolver)
+            String transformationName, String renditionName, ResourceResolver serviceResolver, String cacheKey)
             throws IOException, ExecutionException {
         Resource file = request.getResource();
         String originalContentType = response.getContentType();
-        response.setContentType(OutputFileFormat.forRequest(request).getMimeType());
+        OutputFileFormat format = OutputFileFormat.forRequest(request);
+        response.setContentType(format.getMimeType());
         Optional<Transformation> transformationOp = transformationCache.getTransformation(serviceResolver,
                 transformationName);
         if (!transformationOp.isPresent()) {
@@ -155,21 +207,24 @@ public class TransformServlet extends SlingAllMethodsServlet {
             response.sendError(404, "Unable to find transformation: " + transformationName);
         } else {
             Transformation transformation = transformationOp.get();
-            log.debug("Transforming file...");
-            ByteArrayOutputStream baos = transform(request, response, transformation);
-            if (renditionSupport.supportsRenditions(file)) {
-                log.debug("Saving rendition...");
-                renditionSupport.setRendition(file, renditionName, new ByteArrayInputStream(baos.toByteArray()));
+            setCacheHeaders(response, file, cacheKey);
+            RenditionSpool spool = renditionCoalescer.render(file.getPath(), renditionName,
+                    response.getOutputStream(), out -> {
+                        log.debug("Transforming file...");
+                        transformer.transform(file, transformation, format, out);
+                    });
+            if (spool != null) {
+                if (cacheKey != null) {
+                    renditionCache.put(cacheKey, spool);
+                }
+                if (renditionSupport.supportsRenditions(file)) {
+                    log.debug("Saving rendition...");
+                    renditionPersister.persist(file.getPath(), renditionName, spool);
+                } else {
+                    spool.release();
+                }
             }
         }
     }
 
-    private ByteArrayOutputStream transform(SlingHttpServletRequest request, SlingHttpServletResponse response,
-            Transformation transformation) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        transformer.transform(request.getResource(), transformation, OutputFileFormat.forRequest(request), baos);
-        IOUtils.copy(new ByteArrayInputStream(baos.toByteArray()), response.getOutputStream());
-        return baos;
-    }
-
 }
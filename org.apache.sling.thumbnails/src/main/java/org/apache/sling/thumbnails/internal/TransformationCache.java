@@ -18,17 +18,23 @@
  */
 package org.apache.sling.thumbnails.internal;
 
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.jcr.query.Query;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -39,55 +45,204 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.Designate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Looks up transformations by name. The transformations are indexed once on
+ * first use and the index is then maintained from the resource events, so only
+ * names which are not indexed require querying the repository. Names which
+ * cannot be found are cached for a short time.
+ */
 @Component(service = { TransformationCache.class, EventHandler.class }, property = {
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/ADDED",
         EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/CHANGED",
-        EventConstants.EVENT_FILTER + "=(&(resourceType=sling/thumbnails/transformation))" })
+        EventConstants.EVENT_TOPIC + "=org/apache/sling/api/resource/Resource/REMOVED",
+        EventConstants.EVENT_FILTER + "=(|(resourceType=" + TransformationCache.RESOURCE_TYPE
+                + ")(&(event.topics=org/apache/sling/api/resource/Resource/REMOVED)(|(path=/conf/*)(path=/libs/conf/*)(path=/apps/conf/*))))" })
+@Designate(ocd = TransformationCacheConfig.class)
 public class TransformationCache implements EventHandler {
 
+    public static final String RESOURCE_TYPE = "sling/thumbnails/transformation";
+
+    private static final String PN_NAME = "name";
+
+    private static final String[] ROOTS = { "/conf/", "/apps/conf/", "/libs/conf/" };
+
     private static final Logger log = LoggerFactory.getLogger(TransformationCache.class);
+
+    /**
+     * Orders the paths of transformations with the same name by the precedence
+     * of their configuration root.
+     */
+    private static final Comparator<String> PRECEDENCE = Comparator
+            .comparingInt((String path) -> {
+                for (int i = 0; i < ROOTS.length; i++) {
+                    if (path.startsWith(ROOTS[i])) {
+                        return i;
+                    }
+                }
+                return ROOTS.length;
+            }).thenComparing(Comparator.naturalOrder());
+
     private final TransformationServiceUser transformationServiceUser;
 
+    private final Cache<String, Optional<String>> lookups;
+
+    /**
+     * The names of the indexed transformations by path, guarded by itself.
+     */
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * The paths of the indexed transformations by name, guarded by names.
+     */
+    private final Map<String, TreeSet<String>> paths = new HashMap<>();
+
+    private boolean indexed = false;
+
     @Activate
-    public TransformationCache(@Reference TransformationServiceUser transformationServiceUser) {
+    public TransformationCache(@Reference TransformationServiceUser transformationServiceUser,
+            TransformationCacheConfig config) {
         this.transformationServiceUser = transformationServiceUser;
+        this.lookups = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(config.negativeTtl(), 0), TimeUnit.SECONDS).build();
     }
 
-    private final LoadingCache<String, Optional<String>> cache = CacheBuilder.newBuilder()
-            .expireAfterAccess(1, TimeUnit.HOURS).build(new CacheLoader<String, Optional<String>>() {
-                @Override
-                public Optional<String> load(String name) throws LoginException {
-                    try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
-                        return findTransformation(resolver, name);
-                    }
+    private static String getQuery(String condition) {
+        return "SELECT * FROM [nt:unstructured] WHERE (ISDESCENDANTNODE([/conf]) OR ISDESCENDANTNODE([/libs/conf]) OR ISDESCENDANTNODE([/apps/conf])) AND [sling:resourceType]='"
+                + RESOURCE_TYPE + "'" + condition;
+    }
+
+    private void index() throws LoginException {
+        synchronized (names) {
+            if (indexed) {
+                return;
+            }
+            try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
+                log.debug("Indexing transformations");
+                Iterator<Resource> transformations = resolver.findResources(getQuery(""), Query.JCR_SQL2);
+                while (transformations.hasNext()) {
+                    Resource transformation = transformations.next();
+                    add(transformation.getPath(), transformation.getValueMap().get(PN_NAME, String.class));
                 }
+                log.debug("Indexed {} transformations", names.size());
+            }
+            indexed = true;
+        }
+    }
 
-                private Optional<String> findTransformation(ResourceResolver serviceResolver, String name) {
-                    name = name.substring(1).replace("'", "''");
-                    log.debug("Finding transformations with {}", name);
-                    Iterator<Resource> transformations = serviceResolver.findResources(
-                            "SELECT * FROM [nt:unstructured] WHERE (ISDESCENDANTNODE([/conf]) OR ISDESCENDANTNODE([/libs/conf]) OR ISDESCENDANTNODE([/apps/conf])) AND [sling:resourceType]='sling/thumbnails/transformation' AND [name]='"
-                                    + name + "'",
-                            Query.JCR_SQL2);
-                    if (transformations.hasNext()) {
-                        Resource transformation = transformations.next();
-                        log.debug("Found transformation resource: {}", transformation);
-                        return Optional.of(transformation.getPath());
-                    }
-                    return Optional.empty();
+    private void add(String path, String name) {
+        if (name != null) {
+            names.put(path, name);
+            paths.computeIfAbsent(name, k -> new TreeSet<>(PRECEDENCE)).add(path);
+            lookups.invalidate(name);
+        }
+    }
+
+    private void remove(String path) {
+        String name = names.remove(path);
+        if (name != null) {
+            TreeSet<String> namePaths = paths.get(name);
+            namePaths.remove(path);
+            if (namePaths.isEmpty()) {
+                paths.remove(name);
+            }
+            lookups.invalidate(name);
+        }
+    }
+
+    private Optional<String> find(String name) throws LoginException {
+        try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
+            log.debug("Finding transformations with {}", name);
+            Iterator<Resource> transformations = resolver
+                    .findResources(getQuery(" AND [name]='" + name.replace("'", "''") + "'"), Query.JCR_SQL2);
+            if (transformations.hasNext()) {
+                Resource transformation = transformations.next();
+                log.debug("Found transformation resource: {}", transformation);
+                synchronized (names) {
+                    add(transformation.getPath(), name);
                 }
-            });
+                return Optional.of(transformation.getPath());
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Get the path of the transformation with the specified name.
+     * 
+     * @param name the name of the transformation, prefixed with a slash
+     * @return the path of the transformation if one exists
+     * @throws ExecutionException an exception occurs looking up the
+     *                            transformation
+     */
+    Optional<String> getPath(String name) throws ExecutionException {
+        String key = StringUtils.removeStart(name, "/");
+        try {
+            index();
+        } catch (LoginException e) {
+            throw new ExecutionException("Failed to index transformations", e);
+        }
+        synchronized (names) {
+            TreeSet<String> namePaths = paths.get(key);
+            if (namePaths != null) {
+                return Optional.of(namePaths.first());
+            }
+        }
+        return lookups.get(key, () -> find(key));
+    }
+
+    /**
+     * Get the resource of the transformation with the specified name.
+     * 
+     * @param resolver the resolver to get the resource with
+     * @param name     the name of the transformation, prefixed with a slash
+     * @return the transformation resource if one exists
+     * @throws ExecutionException an exception occurs looking up the
+     *                            transformation
+     */
+    public Optional<Resource> getResource(ResourceResolver resolver, String name) throws ExecutionException {
+        return getPath(name).map(resolver::getResource);
+    }
 
     public Optional<Transformation> getTransformation(ResourceResolver resolver, String name)
             throws ExecutionException {
-        return cache.get(name).map(resolver::getResource).map(r -> r.adaptTo(Transformation.class));
+        return getResource(resolver, name).map(r -> r.adaptTo(Transformation.class));
     }
 
     @Override
     public void handleEvent(Event event) {
-        cache.invalidateAll();
+        String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (path == null) {
+            return;
+        }
+        synchronized (names) {
+            if (!indexed) {
+                return;
+            }
+            if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic())) {
+                log.debug("Removing transformations at or below {}", path);
+                names.keySet().stream().filter(p -> p.equals(path) || p.startsWith(path + "/"))
+                        .collect(Collectors.toList()).forEach(this::remove);
+            } else {
+                try (ResourceResolver resolver = transformationServiceUser.getTransformationServiceUser()) {
+                    Resource transformation = resolver.getResource(path);
+                    log.debug("Updating transformation {}", path);
+                    remove(path);
+                    if (transformation != null) {
+                        add(path, transformation.getValueMap().get(PN_NAME, String.class));
+                    }
+                } catch (LoginException e) {
+                    log.warn("Failed to update transformation {}, rebuilding the index on next use", path, e);
+                    names.clear();
+                    paths.clear();
+                    lookups.invalidateAll();
+                    indexed = false;
+                }
+            }
+        }
     }
 
 }
@@ -16,15 +16,24 @@
  */
 package org.apache.sling.thumbnails.internal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.thumbnails.extension.ImageEncoder;
+import org.apache.sling.thumbnails.extension.SizeHint;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
 import org.apache.sling.thumbnails.extension.TransformationHandler;
 import org.apache.sling.thumbnails.BadRequestException;
@@ -33,43 +42,90 @@ import org.apache.sling.thumbnails.ThumbnailSupport;
 import org.apache.sling.thumbnails.Transformation;
 import org.apache.sling.thumbnails.TransformationHandlerConfig;
 import org.apache.sling.thumbnails.Transformer;
+import org.apache.sling.thumbnails.internal.encoders.ImageIOEncoder;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.Designate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import net.coobird.thumbnailator.Thumbnails;
-import net.coobird.thumbnailator.Thumbnails.Builder;
+import com.codahale.metrics.Timer;
 
 @Component(service = Transformer.class)
+@Designate(ocd = TransformerConfig.class)
 public class TransformerImpl implements Transformer {
 
     private static final Logger log = LoggerFactory.getLogger(TransformerImpl.class);
 
+    /**
+     * Subsampling only picks every nth pixel, so the decoded image is kept at
+     * least this many times larger than the target size to leave the resizing
+     * handler enough pixels to interpolate from.
+     */
+    static final int SUBSAMPLING_MARGIN = 2;
+
+    /**
+     * The name used in the metrics for transformations without a name, e.g.
+     * dynamic transformations.
+     */
+    static final String DYNAMIC_TRANSFORMATION = "dynamic";
+
     private final List<TransformationHandler> handlers;
 
     private final List<ThumbnailProvider> thumbnailProviders;
 
     private final ThumbnailSupport thumbnailSupport;
 
+    private final List<ImageEncoder> encoders;
+
+    private final ImageEncoder defaultEncoder = new ImageIOEncoder();
+
+    private final ThumbnailMetrics metrics;
+
+    private final boolean animated;
+
+    private final int maxFrames;
 
     @Activate
     public TransformerImpl(
             @Reference(service = ThumbnailProvider.class, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.AT_LEAST_ONE) List<ThumbnailProvider> thumbnailProviders,
             @Reference ThumbnailSupport thumbnailSupport,
-            @Reference(service = TransformationHandler.class, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.AT_LEAST_ONE) List<TransformationHandler> handlers) {
+            @Reference(service = TransformationHandler.class, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.AT_LEAST_ONE) List<TransformationHandler> handlers,
+            @Reference(service = ImageEncoder.class, policyOption = ReferencePolicyOption.GREEDY, cardinality = ReferenceCardinality.MULTIPLE) List<ImageEncoder> encoders,
+            @Reference ThumbnailMetrics metrics, TransformerConfig config) {
         this.thumbnailProviders = thumbnailProviders;
         this.thumbnailSupport = thumbnailSupport;
         this.handlers = handlers;
+        this.encoders = encoders;
+        this.metrics = metrics;
+        this.animated = config.animated();
+        this.maxFrames = Math.max(config.maxFrames(), 1);
     }
 
     public List<TransformationHandler> getHandlers() {
         return handlers;
     }
 
+    /**
+     * @return the registered encoders, the built in encoder is used for formats
+     *         none of these support
+     */
+    public List<ImageEncoder> getEncoders() {
+        return encoders;
+    }
+
+    private ImageEncoder getEncoder(OutputFileFormat format) {
+        return encoders.stream().filter(e -> e.supports(format)).findFirst().orElseGet(() -> {
+            if (!defaultEncoder.supports(format)) {
+                throw new BadRequestException("Unsupported output format: " + format);
+            }
+            return defaultEncoder;
+        });
+    }
+
     private String getMetaType(Resource resource) {
         return resource.getValueMap().get(thumbnailSupport.getMetaTypePropertyPath(resource.getResourceType()),
                 String.class);
@@ -97,43 +153,276 @@ public class TransformerImpl implements Transformer {
         return handlers.stream().filter(h -> resourceType.equals(h.getResourceType())).findFirst().orElse(null);
     }
 
-    @Override
-    public void transform(Resource resource, Transformation transformation, OutputFileFormat format, OutputStream out)
-            throws IOException {
+    /**
+     * Get the region of the source used by the transformation, only the first
+     * handler can limit the region as any other handler may move pixels around.
+     */
+    private Rectangle getSourceRegion(Dimension sourceSize, Transformation transformation) {
+        if (transformation.getHandlers().isEmpty()) {
+            return null;
+        }
+        TransformationHandlerConfig config = transformation.getHandlers().get(0);
+        TransformationHandler handler = getTransformationHandler(config.getHandlerType());
+        if (handler == null) {
+            return null;
+        }
+        Rectangle region = handler.getSourceRegion(sourceSize, config);
+        if (region != null && (region.isEmpty() || !new Rectangle(sourceSize).contains(region))) {
+            log.debug("Ignoring invalid source region {} for image of size {}", region, sourceSize);
+            return null;
+        }
+        return region;
+    }
+
+    /**
+     * Get the factor the source image can be reduced by, based on the first
+     * handler of the transformation reducing the size of the image. Any handlers
+     * before it must be able to tell the size of the image they produce.
+     */
+    double getReduction(Dimension sourceSize, Transformation transformation) {
+        Dimension size = sourceSize;
+        for (TransformationHandlerConfig config : transformation.getHandlers()) {
+            TransformationHandler handler = getTransformationHandler(config.getHandlerType());
+            if (handler == null) {
+                continue;
+            }
+            Dimension targetSize = handler.getTargetSize(size, config);
+            if (targetSize == null) {
+                return 1;
+            }
+            if (targetSize.width < size.width || targetSize.height < size.height) {
+                double reduction = Math.min((double) size.width / Math.max(targetSize.width, 1),
+                        (double) size.height / Math.max(targetSize.height, 1)) / SUBSAMPLING_MARGIN;
+                return Math.max(reduction, 1);
+            }
+            size = targetSize;
+        }
+        return 1;
+    }
+
+    /**
+     * Get the subsampling to decode the source image with.
+     */
+    int getSubsampling(Dimension sourceSize, Transformation transformation) {
+        return (int) getReduction(sourceSize, transformation);
+    }
+
+    /**
+     * Get the size the transformation produces from a source of the specified
+     * size or null if it cannot be determined up front.
+     */
+    private Dimension getTargetSize(Dimension sourceSize, Transformation transformation) {
+        Dimension size = sourceSize;
+        for (TransformationHandlerConfig config : transformation.getHandlers()) {
+            TransformationHandler handler = getTransformationHandler(config.getHandlerType());
+            if (handler != null) {
+                size = handler.getTargetSize(size, config);
+                if (size == null) {
+                    return null;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the hint on the size of thumbnail required by the transformation.
+     * Providers may only render at a lower resolution if the size the
+     * transformation produces does not depend on the size of the thumbnail,
+     * e.g. the transformation resizes rather than scales the thumbnail.
+     */
+    SizeHint getSizeHint(Transformation transformation) {
+        return size -> {
+            Dimension targetSize = getTargetSize(size, transformation);
+            if (targetSize == null
+                    || !targetSize.equals(getTargetSize(new Dimension(size.width * 2, size.height * 2), transformation))) {
+                return size;
+            }
+            double reduction = getReduction(size, transformation);
+            return new Dimension((int) Math.ceil(size.width / reduction), (int) Math.ceil(size.height / reduction));
+        };
+    }
+
+    /**
+     * Get the hint on the size of thumbnail required by all of the
+     * transformations.
+     */
+    private SizeHint getSizeHint(Collection<Transformation> transformations) {
+        List<SizeHint> hints = transformations.stream().map(this::getSizeHint).collect(Collectors.toList());
+        return size -> hints.stream().map(hint -> hint.getRequiredSize(size))
+                .reduce((a, b) -> new Dimension(Math.max(a.width, b.width), Math.max(a.height, b.height)))
+                .orElse(size);
+    }
+
+    private void checkSupported(Resource resource) {
         if (!thumbnailSupport.getSupportedTypes().contains(resource.getResourceType())) {
             throw new BadRequestException("Unsupported resource type: " + resource.getResourceType());
         }
+    }
+
+    @Override
+    public void transform(Resource resource, Transformation transformation, OutputFileFormat format, OutputStream out)
+            throws IOException {
+        checkSupported(resource);
+        ImageEncoder encoder = getEncoder(format);
         ThumbnailProvider provider = getThumbnailProvider(resource);
         log.debug("Using thumbnail provider {} for resource {}", provider, resource);
-        try (InputStream thumbnailIs = provider.getThumbnail(resource)) {
-
-            InputStream inputStream = thumbnailIs;
-            for (TransformationHandlerConfig config : transformation.getHandlers()) {
-                log.debug("Handling command: {}", config);
-
-                TransformationHandler handler = getTransformationHandler(config.getHandlerType());
-                if (handler != null) {
-                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                    log.debug("Invoking handler {} for command {}", handler.getClass().getCanonicalName(),
-                            config.getHandlerType());
-                    handler.handle(inputStream, outputStream, config);
-                    inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-                } else {
-                    log.info("No handler found for: {}", config.getHandlerType());
+        String name = getName(transformation);
+        long start = System.nanoTime();
+        try (CountingInputStream thumbnailIs = getThumbnail(provider, resource, getSizeHint(transformation))) {
+            if (transformation.getHandlers().isEmpty() && getMetaType(resource).equals(format.getMimeType())) {
+                log.debug("No handlers or conversion required, copying thumbnail");
+                metrics.histogram("output.bytes").update(IOUtils.copyLarge(thumbnailIs, out));
+            } else {
+                try (ImageDecoder decoder = new ImageDecoder(thumbnailIs)) {
+                    if (animated && format == OutputFileFormat.GIF && decoder.hasMultipleFrames()) {
+                        transformFrames(decoder, transformation, out);
+                    } else {
+                        BufferedImage image;
+                        Dimension size;
+                        try (Timer.Context timer = metrics.timer("decode").time()) {
+                            size = decoder.getSize();
+                            Rectangle region = decoder.supportsRegion() ? getSourceRegion(size, transformation)
+                                    : null;
+                            if (region != null) {
+                                size = region.getSize();
+                            }
+                            image = decoder.read(region, getSubsampling(size, transformation));
+                        }
+                        write(apply(image, size, transformation), encoder, format, transformation.getQuality(),
+                                out);
+                    }
                 }
             }
-            if (!getMetaType(resource).equals(format.getMimeType())) {
-                log.debug("Converting to {}", format);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
-                builder.outputFormat(format.toString());
-                builder.scale(1.0);
-                builder.toOutputStream(baos);
-                inputStream = new ByteArrayInputStream(baos.toByteArray());
+            metrics.histogram("input.bytes").update(thumbnailIs.getByteCount());
+        } catch (IOException | RuntimeException e) {
+            metrics.counter("transformation.failed").inc();
+            throw e;
+        } finally {
+            record(resource, name, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void transform(Resource resource, Map<Transformation, OutputStream> transformations,
+            OutputFileFormat format) throws IOException {
+        checkSupported(resource);
+        ImageEncoder encoder = getEncoder(format);
+        ThumbnailProvider provider = getThumbnailProvider(resource);
+        log.debug("Using thumbnail provider {} for resource {} and {} transformations", provider, resource,
+                transformations.size());
+        try (CountingInputStream thumbnailIs = getThumbnail(provider, resource,
+                getSizeHint(transformations.keySet()))) {
+            BufferedImage image;
+            Dimension size;
+            try (Timer.Context timer = metrics.timer("decode").time();
+                    ImageDecoder decoder = new ImageDecoder(thumbnailIs)) {
+                Dimension sourceSize = decoder.getSize();
+                int subsampling = transformations.keySet().stream().mapToInt(t -> getSubsampling(sourceSize, t))
+                        .min().orElse(1);
+                image = decoder.read(null, subsampling);
+                size = sourceSize;
+            }
+            metrics.histogram("input.bytes").update(thumbnailIs.getByteCount());
+            for (Entry<Transformation, OutputStream> transformation : transformations.entrySet()) {
+                long start = System.nanoTime();
+                try {
+                    write(apply(image, size, transformation.getKey()), encoder, format,
+                            transformation.getKey().getQuality(), transformation.getValue());
+                } finally {
+                    record(resource, getName(transformation.getKey()), System.nanoTime() - start);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            metrics.counter("transformation.failed").inc();
+            throw e;
+        }
+    }
+
+    /**
+     * Transforms the frames of a multi-frame image one by one into an animated
+     * GIF, so only a single frame is held in memory at a time.
+     */
+    private void transformFrames(ImageDecoder decoder, Transformation transformation, OutputStream out)
+            throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try (AnimatedGifEncoder encoder = new AnimatedGifEncoder(counting)) {
+            int frames = decoder.readFrames(maxFrames, (frame, delay) -> {
+                BufferedImage transformed = apply(frame, null, transformation);
+                try (Timer.Context timer = metrics.timer("encode").time()) {
+                    encoder.write(transformed, delay);
+                }
+            });
+            log.debug("Transformed {} frames", frames);
+        }
+        metrics.histogram("output.bytes").update(counting.getByteCount());
+    }
+
+    /**
+     * Retrieves the thumbnail from the provider, timing the provider and counting
+     * the bytes read from the thumbnail.
+     */
+    private CountingInputStream getThumbnail(ThumbnailProvider provider, Resource resource, SizeHint hint)
+            throws IOException {
+        String name = "provider." + provider.getClass().getSimpleName();
+        try (Timer.Context timer = metrics.timer(name).time()) {
+            return new CountingInputStream(provider.getThumbnail(resource, hint));
+        } catch (IOException | RuntimeException e) {
+            metrics.counter(name + ".failed").inc();
+            throw e;
+        }
+    }
+
+    private static String getName(Transformation transformation) {
+        return transformation.getName() != null ? transformation.getName() : DYNAMIC_TRANSFORMATION;
+    }
+
+    private void record(Resource resource, String name, long duration) {
+        metrics.timer("transformation").update(duration, TimeUnit.NANOSECONDS);
+        metrics.timer("transformation." + name).update(duration, TimeUnit.NANOSECONDS);
+        metrics.recordTransformation(resource.getPath(), name, duration);
+    }
+
+    /**
+     * Applies the handlers of the transformation to the image.
+     * 
+     * @param image          the decoded image
+     * @param size           the full resolution size of the image
+     * @param transformation the transformation to apply
+     * @return the transformed image
+     */
+    private BufferedImage apply(BufferedImage image, Dimension size, Transformation transformation)
+            throws IOException {
+        for (TransformationHandlerConfig config : transformation.getHandlers()) {
+            log.debug("Handling command: {}", config);
+
+            TransformationHandler handler = getTransformationHandler(config.getHandlerType());
+            if (handler != null) {
+                log.debug("Invoking handler {} for command {}", handler.getClass().getCanonicalName(),
+                        config.getHandlerType());
+                if (size == null) {
+                    size = new Dimension(image.getWidth(), image.getHeight());
+                }
+                Dimension targetSize = handler.getTargetSize(size, config);
+                try (Timer.Context timer = metrics.timer("handler." + config.getHandlerType()).time()) {
+                    image = handler.handle(image, size, config);
+                }
+                size = targetSize;
+            } else {
+                log.info("No handler found for: {}", config.getHandlerType());
             }
+        }
+        return image;
+    }
 
-            IOUtils.copy(inputStream, out);
+    private void write(BufferedImage image, ImageEncoder encoder, OutputFileFormat format, Double quality,
+            OutputStream out) throws IOException {
+        log.debug("Writing image as {} with quality {} using {}", format, quality, encoder);
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try (Timer.Context timer = metrics.timer("encode").time()) {
+            encoder.encode(image, format, quality, counting);
         }
+        metrics.histogram("output.bytes").update(counting.getByteCount());
     }
 
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal.encoders;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.apache.sling.thumbnails.extension.ImageEncoder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Encodes images with the ImageIO writers registered for the MIME type of the
+ * format, so ImageIO plugins for further formats, e.g. WebP, are picked up
+ * automatically. The quality is applied as the compression quality if the
+ * writer supports compression.
+ */
+public class ImageIOEncoder implements ImageEncoder {
+
+    @Override
+    public boolean supports(@NotNull OutputFileFormat format) {
+        return ImageIO.getImageWritersByMIMEType(format.getMimeType()).hasNext();
+    }
+
+    @Override
+    public void encode(@NotNull BufferedImage image, @NotNull OutputFileFormat format, @Nullable Double quality,
+            @NotNull OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(format.getMimeType());
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer found for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null
+                        && param.getCompressionTypes().length > 0) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality((float) Math.min(Math.max(quality, 0.0), 1.0));
+            }
+            writer.write(null, new IIOImage(toSupportedType(image, format), null, null), param);
+            output.flush();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Formats without an alpha channel cannot be written from images with one,
+     * so these are drawn onto an RGB image first.
+     */
+    private static BufferedImage toSupportedType(BufferedImage image, OutputFileFormat format) {
+        if (format != OutputFileFormat.JPEG || !image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return rgb;
+    }
+
+}
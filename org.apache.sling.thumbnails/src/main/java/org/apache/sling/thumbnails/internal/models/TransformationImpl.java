@@ -27,6 +27,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.models.annotations.Model;
 import org.apache.sling.models.annotations.injectorspecific.ChildResource;
+import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;
 import org.apache.sling.models.annotations.injectorspecific.Self;
 import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;
 import org.apache.sling.thumbnails.Transformation;
@@ -38,19 +39,32 @@ public class TransformationImpl implements Transformation {
     private final List<?> handlers;
     private final String name;
     private final String path;
+    private final Double quality;
+
+    public TransformationImpl(List<?> handlers) {
+        this(handlers, null);
+    }
 
     @JsonCreator
-    public TransformationImpl(@JsonProperty("handlers") List<?> handlers) {
+    public TransformationImpl(@JsonProperty("handlers") List<?> handlers, @JsonProperty("quality") Double quality) {
         this.handlers = (List<?>) handlers;
         this.name = null;
         this.path = null;
+        this.quality = quality;
+    }
+
+    public TransformationImpl(List<TransformationHandlerConfig> handlers, String name, Resource resource) {
+        this(handlers, name, null, resource);
     }
 
     @Inject
     public TransformationImpl(@ChildResource @Named("handlers") List<TransformationHandlerConfig> handlers,
-            @ValueMapValue @Named("name") String name, @Self Resource resource) {
+            @ValueMapValue @Named("name") String name,
+            @ValueMapValue(injectionStrategy = InjectionStrategy.OPTIONAL) @Named("quality") Double quality,
+            @Self Resource resource) {
         this.handlers = handlers;
         this.name = name;
+        this.quality = quality;
         this.path = resource.getPath();
     }
 
@@ -69,4 +83,9 @@ public class TransformationImpl implements Transformation {
         return this.path;
     }
 
+    @Override
+    public Double getQuality() {
+        return this.quality;
+    }
+
 }
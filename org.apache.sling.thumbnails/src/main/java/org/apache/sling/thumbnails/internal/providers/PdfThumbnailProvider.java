@@ -16,6 +16,7 @@
  */
 package org.apache.sling.thumbnails.internal.providers;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -27,11 +28,17 @@ import javax.imageio.ImageIO;
 import com.google.common.net.MediaType;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.thumbnails.extension.SizeHint;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.internal.ProviderOutputCache;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 
 /**
  * A thumbnail provider for PDF documents.
@@ -39,6 +46,15 @@ import org.osgi.service.component.annotations.Component;
 @Component(service = ThumbnailProvider.class, immediate = true)
 public class PdfThumbnailProvider implements ThumbnailProvider {
 
+    private static final float DPI = 300;
+
+    private final ProviderOutputCache cache;
+
+    @Activate
+    public PdfThumbnailProvider(@Reference ProviderOutputCache cache) {
+        this.cache = cache;
+    }
+
     @Override
     public boolean applies(Resource resource, String metaType) {
         return MediaType.PDF.is(MediaType.parse(metaType));
@@ -46,12 +62,43 @@ public class PdfThumbnailProvider implements ThumbnailProvider {
 
     @Override
     public InputStream getThumbnail(Resource resource) throws IOException {
+        return getThumbnail(resource, SizeHint.FULL);
+    }
+
+    @Override
+    public InputStream getThumbnail(Resource resource, SizeHint hint) throws IOException {
+        String identity = cache.getIdentity(resource);
+        Dimension size = cache.getSize(identity);
+        if (size != null) {
+            byte[] cached = cache.get(identity, ProviderOutputCache.getLevel(size, hint));
+            if (cached != null) {
+                return new ByteArrayInputStream(cached);
+            }
+        }
         try (PDDocument document = PDDocument.load(resource.adaptTo(InputStream.class))) {
+            size = getSize(document.getPage(0));
+            int level = ProviderOutputCache.getLevel(size, hint);
             PDFRenderer pdfRenderer = new PDFRenderer(document);
-            BufferedImage bim = pdfRenderer.renderImageWithDPI(0, 300, ImageType.RGB);
+            BufferedImage bim = pdfRenderer.renderImageWithDPI(0, (float) (DPI * ProviderOutputCache.getScale(level)),
+                    ImageType.RGB);
             ByteArrayOutputStream os = new ByteArrayOutputStream();
             ImageIO.write(bim, "jpeg", os);
-            return new ByteArrayInputStream(os.toByteArray());
+            byte[] thumbnail = os.toByteArray();
+            cache.put(identity, size, level, thumbnail);
+            return new ByteArrayInputStream(thumbnail);
+        }
+    }
+
+    /**
+     * Get the size of the page rendered at full resolution.
+     */
+    private static Dimension getSize(PDPage page) {
+        PDRectangle box = page.getCropBox();
+        int width = (int) Math.ceil(box.getWidth() / 72 * DPI);
+        int height = (int) Math.ceil(box.getHeight() / 72 * DPI);
+        if (page.getRotation() % 180 != 0) {
+            return new Dimension(height, width);
         }
+        return new Dimension(width, height);
     }
 }
@@ -37,7 +37,9 @@ import org.apache.poi.sl.usermodel.SlideShow;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.thumbnails.extension.SizeHint;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.internal.ProviderOutputCache;
 import org.apache.sling.thumbnails.OutputFileFormat;
 import org.apache.sling.thumbnails.ThumbnailSupport;
 import org.osgi.service.component.annotations.Activate;
@@ -52,12 +54,14 @@ public class SlideShowThumbnailProvider implements ThumbnailProvider {
 
     private final DynamicClassLoaderManager classLoaderManager;
     private final ThumbnailSupport thumbnailSupport;
+    private final ProviderOutputCache cache;
 
     @Activate
     public SlideShowThumbnailProvider(@Reference DynamicClassLoaderManager classLoaderManager,
-            @Reference ThumbnailSupport thumbnailSupport) {
+            @Reference ThumbnailSupport thumbnailSupport, @Reference ProviderOutputCache cache) {
         this.classLoaderManager = classLoaderManager;
         this.thumbnailSupport = thumbnailSupport;
+        this.cache = cache;
     }
 
     @Override
@@ -68,6 +72,20 @@ public class SlideShowThumbnailProvider implements ThumbnailProvider {
 
     @Override
     public InputStream getThumbnail(Resource resource) throws IOException {
+        return getThumbnail(resource, SizeHint.FULL);
+    }
+
+    @Override
+    public InputStream getThumbnail(Resource resource, SizeHint hint) throws IOException {
+        String identity = cache.getIdentity(resource);
+        Dimension size = cache.getSize(identity);
+        if (size != null) {
+            byte[] cached = cache.get(identity, ProviderOutputCache.getLevel(size, hint));
+            if (cached != null) {
+                return new ByteArrayInputStream(cached);
+            }
+        }
+
         if (classLoaderManager != null) {
             Thread.currentThread().setContextClassLoader(classLoaderManager.getDynamicClassLoader());
         }
@@ -84,9 +102,13 @@ public class SlideShowThumbnailProvider implements ThumbnailProvider {
             }
             Dimension dim = ppt.getPageSize();
             List<? extends Slide<?, ?>> slides = ppt.getSlides();
+            int level = ProviderOutputCache.getLevel(dim, hint);
+            double scale = ProviderOutputCache.getScale(level);
 
-            BufferedImage img = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_RGB);
+            BufferedImage img = new BufferedImage((int) Math.ceil(dim.width * scale),
+                    (int) Math.ceil(dim.height * scale), BufferedImage.TYPE_INT_RGB);
             Graphics2D graphics = img.createGraphics();
+            graphics.scale(scale, scale);
             graphics.setPaint(Color.white);
             graphics.fill(new Rectangle2D.Float(0, 0, dim.width, dim.height));
 
@@ -94,8 +116,12 @@ public class SlideShowThumbnailProvider implements ThumbnailProvider {
                 slides.get(0).draw(graphics);
             }
 
+            graphics.dispose();
+
             ImageIO.write(img, OutputFileFormat.PNG.toString(), baos);
-            return new ByteArrayInputStream(baos.toByteArray());
+            byte[] thumbnail = baos.toByteArray();
+            cache.put(identity, dim, level, thumbnail);
+            return new ByteArrayInputStream(thumbnail);
         } finally {
             if (ppt != null) {
                 ppt.close();
@@ -16,18 +16,30 @@
  */
 package org.apache.sling.thumbnails.internal.providers;
 
-import java.awt.Graphics;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.AttributedString;
+import java.util.concurrent.ExecutionException;
 
 import javax.imageio.ImageIO;
-import javax.swing.JEditorPane;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.internal.RenditionCache;
 import org.apache.sling.thumbnails.OutputFileFormat;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
@@ -37,17 +49,44 @@ import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
 import org.apache.tika.sax.WriteOutContentHandler;
 import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.metatype.annotations.Designate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+/**
+ * Fallback provider rendering a preview of the text extracted from the file
+ * with Apache Tika. Parsing stops once enough text for the preview has been
+ * extracted and the extracted text is cached by the path and last modified
+ * time of the file.
+ */
 @Component(service = ThumbnailProvider.class, property = {
         Constants.SERVICE_RANKING + "=" + Integer.MIN_VALUE }, immediate = true)
+@Designate(ocd = TikaFallbackProviderConfig.class)
 public class TikaFallbackProvider implements ThumbnailProvider {
 
     private static final Logger log = LoggerFactory.getLogger(TikaFallbackProvider.class);
 
+    static final int SIZE = 500;
+
+    private static final int MARGIN = 10;
+
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+
+    private final Parser parser = new AutoDetectParser();
+
+    private final int maxChars;
+
+    private final Cache<String, String> previews;
+
+    @Activate
+    public TikaFallbackProvider(TikaFallbackProviderConfig config) {
+        this.maxChars = Math.max(config.maxChars(), 1);
+        this.previews = CacheBuilder.newBuilder().maximumSize(Math.max(config.cacheSize(), 0)).build();
+    }
+
     @Override
     public boolean applies(Resource resource, String metaType) {
         return true;
@@ -57,46 +96,93 @@ public class TikaFallbackProvider implements ThumbnailProvider {
     public InputStream getThumbnail(Resource resource) throws IOException {
 
         log.info("Extracting content thumbnail from {}", resource.getPath());
-        try {
 
-            log.debug("Extracting file contents");
-            String contents = extractContents(resource);
-
-            log.debug("Creating thumbnail of file contents");
-            int width = 500;
-            int height = 500;
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics graphics = image.createGraphics();
-            JEditorPane jep = new JEditorPane("text/html", contents);
-            jep.setSize(width, height);
-            jep.print(graphics);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, OutputFileFormat.PNG.toString(), baos);
-            return new ByteArrayInputStream(baos.toByteArray());
-        } catch (SAXException | TikaException e) {
-            throw new IOException("Failed to generate thumbnail from " + resource.getPath(), e);
+        log.debug("Extracting file contents");
+        String contents = getContents(resource);
+
+        log.debug("Creating thumbnail of file contents");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(render(contents), OutputFileFormat.PNG.toString(), baos);
+        return new ByteArrayInputStream(baos.toByteArray());
+    }
+
+    private String getContents(Resource resource) throws IOException {
+        long lastModified = RenditionCache.getLastModified(resource);
+        if (lastModified <= 0) {
+            return extractContents(resource);
+        }
+        try {
+            return previews.get(resource.getPath() + ":" + lastModified, () -> extractContents(resource));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to extract contents of " + resource.getPath(), e.getCause());
         }
     }
 
-    private String extractContents(Resource resource) throws IOException, TikaException, SAXException {
-        InputStream is = resource.adaptTo(InputStream.class);
-        Parser parser = new AutoDetectParser();
-        WriteOutContentHandler woHandler = new WriteOutContentHandler();
+    String extractContents(Resource resource) throws IOException {
+        WriteOutContentHandler woHandler = new WriteOutContentHandler(maxChars);
         BodyContentHandler bHandler = new BodyContentHandler(woHandler);
 
         Metadata md = new Metadata();
         ParseContext context = new ParseContext();
-        try {
+        try (InputStream is = resource.adaptTo(InputStream.class)) {
+            if (is == null) {
+                throw new IOException("Unable to read contents of " + resource.getPath());
+            }
             parser.parse(is, bHandler, md, context);
         } catch (SAXException se) {
             if (woHandler.isWriteLimitReached(se)) {
                 log.debug("Reached write limit for preview generation");
             } else {
-                throw se;
+                throw new IOException("Failed to generate thumbnail from " + resource.getPath(), se);
             }
+        } catch (TikaException e) {
+            throw new IOException("Failed to generate thumbnail from " + resource.getPath(), e);
         }
         return bHandler.toString();
     }
 
+    /**
+     * Lays out the text line by line until the image is full.
+     */
+    static BufferedImage render(String contents) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, SIZE, SIZE);
+            graphics.setColor(Color.BLACK);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setFont(FONT);
+            FontRenderContext frc = graphics.getFontRenderContext();
+            float lineHeight = graphics.getFontMetrics().getHeight();
+            float width = SIZE - 2f * MARGIN;
+            float y = MARGIN;
+
+            for (String paragraph : contents.replace('\t', ' ').split("\r?\n")) {
+                if (y + lineHeight > SIZE - MARGIN) {
+                    break;
+                }
+                if (paragraph.trim().isEmpty()) {
+                    y += lineHeight;
+                    continue;
+                }
+                AttributedString text = new AttributedString(paragraph);
+                text.addAttribute(TextAttribute.FONT, FONT);
+                LineBreakMeasurer measurer = new LineBreakMeasurer(text.getIterator(), frc);
+                while (measurer.getPosition() < paragraph.length() && y + lineHeight <= SIZE - MARGIN) {
+                    TextLayout layout = measurer.nextLayout(width);
+                    y += layout.getAscent();
+                    layout.draw(graphics, MARGIN, y);
+                    y += layout.getDescent() + layout.getLeading();
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
 }
@@ -17,6 +17,8 @@
 package org.apache.sling.thumbnails.internal.transformers;
 
 import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -52,6 +54,23 @@ public class ColorizeHandler implements TransformationHandler {
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
         Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
+        colorize(builder, config);
+        builder.toOutputStream(outputStream);
+    }
+
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        colorize(builder, config);
+        return builder.asBufferedImage();
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        return sourceSize;
+    }
+
+    private void colorize(Builder<?> builder, TransformationHandlerConfig config) {
         ValueMap properties = config.getProperties();
         int red = getColor(properties, PN_RED);
         int green = getColor(properties, PN_GREEN);
@@ -64,7 +83,6 @@ public class ColorizeHandler implements TransformationHandler {
 
         builder.addFilter(new Colorize(new Color(red, green, blue), alpha));
         builder.scale(1.0);
-        builder.toOutputStream(outputStream);
     }
 
     protected int getColor(ValueMap properties, String name) {
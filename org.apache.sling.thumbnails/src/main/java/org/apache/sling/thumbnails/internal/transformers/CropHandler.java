@@ -16,6 +16,10 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -48,12 +52,8 @@ public class CropHandler implements TransformationHandler {
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
         Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
-        ValueMap properties = config.getProperties();
-        resize(builder, properties);
-        String positionStr = properties.get(PN_POSITION, "CENTER").toUpperCase();
         try {
-            Positions pos = Positions.valueOf(positionStr);
-            builder.crop(pos);
+            configure(builder, config);
             builder.toOutputStream(outputStream);
         } catch (IllegalArgumentException e) {
             throw new BadRequestException("Unable to crop due to invalid configuration: \n%s", config.getProperties(),
@@ -61,7 +61,63 @@ public class CropHandler implements TransformationHandler {
         }
     }
 
-    private static void resize(Builder<? extends InputStream> builder, ValueMap properties) {
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        try {
+            configure(builder, config);
+            return builder.asBufferedImage();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unable to crop due to invalid configuration: \n%s", config.getProperties(),
+                    e);
+        }
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        int width = config.getProperties().get(ResizeHandler.PN_WIDTH, -1);
+        int height = config.getProperties().get(ResizeHandler.PN_HEIGHT, -1);
+        if (width >= 0 && height >= 0) {
+            return new Dimension(width, height);
+        }
+        return null;
+    }
+
+    /**
+     * The crop scales the image to cover the requested size and crops the
+     * remainder, so only the region with the requested aspect ratio at the
+     * requested position is used.
+     */
+    @Override
+    public Rectangle getSourceRegion(Dimension sourceSize, TransformationHandlerConfig config) {
+        ValueMap properties = config.getProperties();
+        int width = properties.get(ResizeHandler.PN_WIDTH, -1);
+        int height = properties.get(ResizeHandler.PN_HEIGHT, -1);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Positions pos;
+        try {
+            pos = Positions.valueOf(properties.get(PN_POSITION, "CENTER").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        double scale = Math.max((double) width / sourceSize.width, (double) height / sourceSize.height);
+        int regionWidth = Math.min(sourceSize.width, (int) Math.ceil(width / scale));
+        int regionHeight = Math.min(sourceSize.height, (int) Math.ceil(height / scale));
+        Point point = pos.calculate(sourceSize.width, sourceSize.height, regionWidth, regionHeight, 0, 0, 0, 0);
+        return new Rectangle(point.x, point.y, regionWidth, regionHeight);
+    }
+
+    private static void configure(Builder<?> builder, TransformationHandlerConfig config) {
+        ValueMap properties = config.getProperties();
+        resize(builder, properties);
+        String positionStr = properties.get(PN_POSITION, "CENTER").toUpperCase();
+        Positions pos = Positions.valueOf(positionStr);
+        builder.crop(pos);
+    }
+
+    private static void resize(Builder<?> builder, ValueMap properties) {
         int width = properties.get(ResizeHandler.PN_WIDTH, -1);
         int height = properties.get(ResizeHandler.PN_HEIGHT, -1);
         if (width >= 0 && height >= 0) {
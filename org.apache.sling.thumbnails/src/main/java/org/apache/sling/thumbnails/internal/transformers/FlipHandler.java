@@ -16,6 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -48,7 +50,26 @@ public class FlipHandler implements TransformationHandler {
     @Override
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
+        Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
+        builder.addFilter(getFlipper(config));
+        builder.scale(1.0);
+        builder.toOutputStream(outputStream);
+    }
+
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        builder.addFilter(getFlipper(config));
+        builder.scale(1.0);
+        return builder.asBufferedImage();
+    }
 
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        return sourceSize;
+    }
+
+    private static ImageFilter getFlipper(TransformationHandlerConfig config) {
         String direction = config.getProperties().get(PN_DIRECTION, "").toUpperCase();
 
         ImageFilter flipper = null;
@@ -59,11 +80,7 @@ public class FlipHandler implements TransformationHandler {
         } else {
             throw new BadRequestException("Could not flip image with configuration: \n%s", config.getProperties());
         }
-
-        Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
-        builder.addFilter(flipper);
-        builder.scale(1.0);
-        builder.toOutputStream(outputStream);
+        return flipper;
     }
 
 }
@@ -16,6 +16,7 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,4 +51,17 @@ public class GreyscaleHandler implements TransformationHandler {
         builder.toOutputStream(outputStream);
     }
 
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        builder.imageType(BufferedImage.TYPE_BYTE_GRAY);
+        builder.scale(1.0);
+        return builder.asBufferedImage();
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        return sourceSize;
+    }
+
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,19 +53,55 @@ public class ResizeHandler implements TransformationHandler {
         Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
 
         try {
-            resize(builder, config.getProperties());
+            configure(builder, config);
+            builder.toOutputStream(outputStream);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unable to resize due to invalid configuration: \n%s", config.getProperties(),
+                    e);
+        }
+    }
 
-            boolean keepAspectRatio = config.getProperties().get(PN_KEEP_ASPECT_RATIO, true);
-            builder.keepAspectRatio(keepAspectRatio);
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
 
-            builder.toOutputStream(outputStream);
+        try {
+            configure(builder, config);
+            return builder.asBufferedImage();
         } catch (IllegalArgumentException e) {
             throw new BadRequestException("Unable to resize due to invalid configuration: \n%s", config.getProperties(),
                     e);
         }
     }
 
-    private static void resize(Builder<? extends InputStream> builder, ValueMap properties) {
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        ValueMap properties = config.getProperties();
+        int width = properties.get(PN_WIDTH, -1);
+        int height = properties.get(PN_HEIGHT, -1);
+        if (width >= 0 && height >= 0) {
+            if (!properties.get(PN_KEEP_ASPECT_RATIO, true)) {
+                return new Dimension(width, height);
+            }
+            double scale = Math.min((double) width / sourceSize.width, (double) height / sourceSize.height);
+            return new Dimension((int) Math.round(sourceSize.width * scale),
+                    (int) Math.round(sourceSize.height * scale));
+        } else if (width >= 0) {
+            return new Dimension(width, (int) Math.round((double) sourceSize.height * width / sourceSize.width));
+        } else if (height >= 0) {
+            return new Dimension((int) Math.round((double) sourceSize.width * height / sourceSize.height), height);
+        }
+        return null;
+    }
+
+    private static void configure(Builder<?> builder, TransformationHandlerConfig config) {
+        resize(builder, config.getProperties());
+
+        boolean keepAspectRatio = config.getProperties().get(PN_KEEP_ASPECT_RATIO, true);
+        builder.keepAspectRatio(keepAspectRatio);
+    }
+
+    private static void resize(Builder<?> builder, ValueMap properties) {
         int width = properties.get(PN_WIDTH, -1);
         int height = properties.get(PN_HEIGHT, -1);
         if (width >= 0 && height >= 0) {
@@ -16,6 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -45,10 +47,30 @@ public class RotateHandler implements TransformationHandler {
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
         Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
+        rotate(builder, config);
+        builder.toOutputStream(outputStream);
+    }
+
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        rotate(builder, config);
+        return builder.asBufferedImage();
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        double radians = Math.toRadians(config.getProperties().get(DEGREES, 0.0));
+        double sin = Math.abs(Math.sin(radians));
+        double cos = Math.abs(Math.cos(radians));
+        return new Dimension((int) Math.round(sourceSize.width * cos + sourceSize.height * sin),
+                (int) Math.round(sourceSize.width * sin + sourceSize.height * cos));
+    }
+
+    private static void rotate(Builder<?> builder, TransformationHandlerConfig config) {
         double degrees = config.getProperties().get(DEGREES, 0.0);
         builder.rotate(degrees);
         builder.scale(1.0);
-        builder.toOutputStream(outputStream);
     }
 
 }
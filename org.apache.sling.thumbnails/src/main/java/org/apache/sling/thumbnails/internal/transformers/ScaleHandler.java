@@ -16,6 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -46,20 +48,9 @@ public class ScaleHandler implements TransformationHandler {
     @Override
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
-        ValueMap properties = config.getProperties();
-        double both = properties.get(PN_BOTH, -1.0);
-        double width = properties.get(ResizeHandler.PN_WIDTH, -1.0);
-        double height = properties.get(ResizeHandler.PN_HEIGHT, -1.0);
         try {
             Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
-            if (both >= 0) {
-                builder.scale(both);
-            } else if (width >= 0 && height >= 0) {
-                builder.scale(width, height);
-            } else {
-                throw new BadRequestException("Could not scale thumbnail, invalid parameters: \n%s", properties);
-            }
-
+            scale(builder, config.getProperties());
             builder.toOutputStream(outputStream);
         } catch (IllegalArgumentException e) {
             throw new BadRequestException("Unable to resize due to invalid configuration: \n%s", config.getProperties(),
@@ -67,4 +58,69 @@ public class ScaleHandler implements TransformationHandler {
         }
     }
 
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        try {
+            Builder<BufferedImage> builder = Thumbnails.of(image);
+            scale(builder, config.getProperties());
+            return builder.asBufferedImage();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unable to resize due to invalid configuration: \n%s", config.getProperties(),
+                    e);
+        }
+    }
+
+    /**
+     * The scale is relative to the size of the source, so if the image was decoded
+     * at a reduced resolution it is resized to the size the scale would have
+     * produced from the full resolution image.
+     */
+    @Override
+    public BufferedImage handle(BufferedImage image, Dimension sourceSize, TransformationHandlerConfig config)
+            throws IOException {
+        if (image.getWidth() == sourceSize.width && image.getHeight() == sourceSize.height) {
+            return handle(image, config);
+        }
+        Dimension targetSize = getTargetSize(sourceSize, config);
+        if (targetSize == null) {
+            throw new BadRequestException("Could not scale thumbnail, invalid parameters: \n%s",
+                    config.getProperties());
+        }
+        try {
+            return Thumbnails.of(image).size(targetSize.width, targetSize.height).keepAspectRatio(false)
+                    .asBufferedImage();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unable to resize due to invalid configuration: \n%s", config.getProperties(),
+                    e);
+        }
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        ValueMap properties = config.getProperties();
+        double both = properties.get(PN_BOTH, -1.0);
+        double width = properties.get(ResizeHandler.PN_WIDTH, -1.0);
+        double height = properties.get(ResizeHandler.PN_HEIGHT, -1.0);
+        if (both >= 0) {
+            return new Dimension((int) Math.round(sourceSize.width * both), (int) Math.round(sourceSize.height * both));
+        } else if (width >= 0 && height >= 0) {
+            return new Dimension((int) Math.round(sourceSize.width * width),
+                    (int) Math.round(sourceSize.height * height));
+        }
+        return null;
+    }
+
+    private static void scale(Builder<?> builder, ValueMap properties) {
+        double both = properties.get(PN_BOTH, -1.0);
+        double width = properties.get(ResizeHandler.PN_WIDTH, -1.0);
+        double height = properties.get(ResizeHandler.PN_HEIGHT, -1.0);
+        if (both >= 0) {
+            builder.scale(both);
+        } else if (width >= 0 && height >= 0) {
+            builder.scale(width, height);
+        } else {
+            throw new BadRequestException("Could not scale thumbnail, invalid parameters: \n%s", properties);
+        }
+    }
+
 }
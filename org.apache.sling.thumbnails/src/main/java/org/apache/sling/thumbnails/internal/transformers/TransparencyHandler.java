@@ -16,6 +16,8 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -47,6 +49,23 @@ public class TransparencyHandler implements TransformationHandler {
     public void handle(InputStream inputStream, OutputStream outputStream, TransformationHandlerConfig config)
             throws IOException {
         Builder<? extends InputStream> builder = Thumbnails.of(inputStream);
+        makeTransparent(builder, config);
+        builder.toOutputStream(outputStream);
+    }
+
+    @Override
+    public BufferedImage handle(BufferedImage image, TransformationHandlerConfig config) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image);
+        makeTransparent(builder, config);
+        return builder.asBufferedImage();
+    }
+
+    @Override
+    public Dimension getTargetSize(Dimension sourceSize, TransformationHandlerConfig config) {
+        return sourceSize;
+    }
+
+    private static void makeTransparent(Builder<?> builder, TransformationHandlerConfig config) {
         ValueMap properties = config.getProperties();
 
         double alpha = properties.get(ColorizeHandler.PN_ALPHA, 0.0);
@@ -57,8 +76,6 @@ public class TransparencyHandler implements TransformationHandler {
 
         builder.addFilter(new Transparency(alpha));
         builder.scale(1.0);
-
-        builder.toOutputStream(outputStream);
     }
 
 }
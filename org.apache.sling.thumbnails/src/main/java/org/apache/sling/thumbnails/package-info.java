@@ -22,5 +22,5 @@
  *
  * @since 1.0.0
  */
-@org.osgi.annotation.versioning.Version("1.0.0")
+@org.osgi.annotation.versioning.Version("1.1.0")
 package org.apache.sling.thumbnails;
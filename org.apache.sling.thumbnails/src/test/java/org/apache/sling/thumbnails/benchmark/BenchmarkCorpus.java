@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.benchmark;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.thumbnails.ThumbnailSupport;
+import org.apache.sling.thumbnails.internal.ProviderOutputCache;
+import org.apache.sling.thumbnails.internal.ProviderOutputCacheConfig;
+import org.apache.sling.thumbnails.internal.ThumbnailMetrics;
+import org.apache.sling.thumbnails.internal.TransformerConfig;
+import org.apache.sling.thumbnails.internal.providers.TikaFallbackProvider;
+import org.apache.sling.thumbnails.internal.providers.TikaFallbackProviderConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generates the documents the benchmarks run against, so that no large
+ * binaries need to be checked in. Each document type is available in a small,
+ * medium and huge size.
+ */
+public class BenchmarkCorpus {
+
+    public static final String RESOURCE_TYPE = "nt:file";
+
+    public static final String MIME_TYPE_PATH = "jcr:content/jcr:mimeType";
+
+    /**
+     * The sizes of the generated documents.
+     */
+    public enum Size {
+        SMALL(640, 480), MEDIUM(2048, 1536), HUGE(8000, 6000);
+
+        private final int width;
+        private final int height;
+
+        Size(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public Dimension getDimension() {
+            return new Dimension(width, height);
+        }
+    }
+
+    /**
+     * The types of the generated documents.
+     */
+    public enum Type {
+        JPEG("image/jpeg"), PNG("image/png"), PDF("application/pdf"),
+        PPTX("application/vnd.openxmlformats-officedocument.presentationml.presentation"), TEXT("text/plain");
+
+        private final String mimeType;
+
+        Type(String mimeType) {
+            this.mimeType = mimeType;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Creates an image with some detail, so encoders and resamplers cannot take
+     * shortcuts on uniform areas.
+     */
+    public static BufferedImage createImage(Size size) {
+        Dimension dimension = size.getDimension();
+        BufferedImage image = new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, dimension.width, dimension.height, Color.ORANGE));
+        graphics.fillRect(0, 0, dimension.width, dimension.height);
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fill(new Rectangle(random.nextInt(dimension.width), random.nextInt(dimension.height),
+                    random.nextInt(dimension.width / 4 + 1), random.nextInt(dimension.height / 4 + 1)));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    public static byte[] createDocument(Type type, Size size) throws IOException {
+        switch (type) {
+            case JPEG:
+            case PNG:
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(createImage(size), type.name().toLowerCase(), out);
+                return out.toByteArray();
+            case PDF:
+                return createPdf(size);
+            case PPTX:
+                return createSlideShow(size);
+            default:
+                return createText(size);
+        }
+    }
+
+    private static byte[] createPdf(Size size) throws IOException {
+        Dimension dimension = size.getDimension();
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            // page sizes are in points, so the sizes are scaled to typical page sizes
+            PDPage page = new PDPage(new PDRectangle(dimension.width / 4f, dimension.height / 4f));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.drawImage(LosslessFactory.createFromImage(document, createImage(Size.SMALL)), 0, 0,
+                        page.getMediaBox().getWidth(), page.getMediaBox().getHeight() / 2);
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 24);
+                content.newLineAtOffset(20, page.getMediaBox().getHeight() - 40);
+                content.showText("Apache Sling Thumbnails");
+                content.endText();
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] createSlideShow(Size size) throws IOException {
+        Dimension dimension = size.getDimension();
+        try (XMLSlideShow ppt = new XMLSlideShow(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ppt.setPageSize(new Dimension(dimension.width / 4, dimension.height / 4));
+            XSLFSlide slide = ppt.createSlide();
+            XSLFTextBox box = slide.createTextBox();
+            box.setAnchor(new Rectangle(20, 20, dimension.width / 4 - 40, dimension.height / 4 - 40));
+            box.setText("Apache Sling Thumbnails");
+            box.setFillColor(Color.LIGHT_GRAY);
+            ppt.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] createText(Size size) {
+        StringBuilder text = new StringBuilder();
+        int lines = size.getDimension().height * 10;
+        for (int i = 0; i < lines; i++) {
+            text.append("Line ").append(i).append(" of the Apache Sling Thumbnails benchmark corpus\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Resource createResource(Type type, Size size) throws IOException {
+        return new BenchmarkResource("/content/" + type.name().toLowerCase() + "-" + size.name().toLowerCase(),
+                type.getMimeType(), createDocument(type, size));
+    }
+
+    public static ThumbnailSupport createThumbnailSupport() {
+        return new ThumbnailSupport() {
+
+            @Override
+            public @NotNull String getMetaTypePropertyPath(@NotNull String resourceType) {
+                return MIME_TYPE_PATH;
+            }
+
+            @Override
+            public @NotNull Set<String> getPersistableTypes() {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public @Nullable String getRenditionPath(@NotNull String resourceType) {
+                return null;
+            }
+
+            @Override
+            public @NotNull String getServletErrorSuffix() {
+                return "error";
+            }
+
+            @Override
+            public @NotNull String getServletErrorResourcePath() {
+                return "/content/error";
+            }
+
+            @Override
+            public @NotNull Set<String> getSupportedTypes() {
+                return Collections.singleton(RESOURCE_TYPE);
+            }
+        };
+    }
+
+    /**
+     * Creates a provider output cache, disabled unless a size is specified so
+     * that providers render on every invocation.
+     */
+    public static ProviderOutputCache createProviderOutputCache(long maxSize) {
+        return new ProviderOutputCache(new ThumbnailMetrics(null), new ProviderOutputCacheConfig() {
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return ProviderOutputCacheConfig.class;
+            }
+
+            @Override
+            public long maxSize() {
+                return maxSize;
+            }
+        });
+    }
+
+    /**
+     * Creates a Tika fallback provider with the default character limit. The
+     * benchmark resources have no modification time, so the extracted text is
+     * never cached.
+     */
+    public static TikaFallbackProvider createTikaFallbackProvider() {
+        return new TikaFallbackProvider(new TikaFallbackProviderConfig() {
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return TikaFallbackProviderConfig.class;
+            }
+
+            @Override
+            public int maxChars() {
+                return 4000;
+            }
+
+            @Override
+            public int cacheSize() {
+                return 0;
+            }
+        });
+    }
+
+    public static TransformerConfig createTransformerConfig() {
+        return new TransformerConfig() {
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return TransformerConfig.class;
+            }
+
+            @Override
+            public boolean animated() {
+                return false;
+            }
+
+            @Override
+            public int maxFrames() {
+                return 100;
+            }
+        };
+    }
+
+    /**
+     * A minimal file resource serving the document from memory.
+     */
+    private static class BenchmarkResource extends AbstractResource {
+
+        private final String path;
+        private final byte[] data;
+        private final ValueMap properties;
+        private final ResourceMetadata metadata = new ResourceMetadata();
+
+        BenchmarkResource(String path, String mimeType, byte[] data) {
+            this.path = path;
+            this.data = data;
+            Map<String, Object> values = new HashMap<>();
+            values.put(MIME_TYPE_PATH, mimeType);
+            this.properties = new ValueMapDecorator(values);
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getResourceType() {
+            return RESOURCE_TYPE;
+        }
+
+        @Override
+        public String getResourceSuperType() {
+            return null;
+        }
+
+        @Override
+        public ResourceMetadata getResourceMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public ResourceResolver getResourceResolver() {
+            return null;
+        }
+
+        @Override
+        public ValueMap getValueMap() {
+            return properties;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
+            if (type == InputStream.class) {
+                return (AdapterType) new ByteArrayInputStream(data);
+            } else if (type == ValueMap.class) {
+                return (AdapterType) properties;
+            }
+            return super.adaptTo(type);
+        }
+    }
+
+}
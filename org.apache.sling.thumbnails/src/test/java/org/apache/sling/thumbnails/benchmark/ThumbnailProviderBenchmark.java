@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.benchmark;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.thumbnails.benchmark.BenchmarkCorpus.Size;
+import org.apache.sling.thumbnails.benchmark.BenchmarkCorpus.Type;
+import org.apache.sling.thumbnails.extension.SizeHint;
+import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.internal.ProviderOutputCache;
+import org.apache.sling.thumbnails.internal.providers.ImageThumbnailProvider;
+import org.apache.sling.thumbnails.internal.providers.PdfThumbnailProvider;
+import org.apache.sling.thumbnails.internal.providers.SlideShowThumbnailProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the thumbnail providers extracting the source image from documents
+ * of different sizes, both at full resolution and with a size hint for a
+ * 200x200 thumbnail. The provider output cache is disabled so every invocation
+ * renders the document.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThumbnailProviderBenchmark {
+
+    private static final SizeHint THUMBNAIL = size -> new Dimension(200, 200);
+
+    @Param({ "image", "pdf", "slideshow", "tika" })
+    public String provider;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Size size;
+
+    private ThumbnailProvider thumbnailProvider;
+
+    private Resource resource;
+
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setup() throws IOException {
+        ProviderOutputCache cache = BenchmarkCorpus.createProviderOutputCache(0);
+        switch (provider) {
+            case "image":
+                thumbnailProvider = new ImageThumbnailProvider();
+                resource = BenchmarkCorpus.createResource(Type.JPEG, size);
+                break;
+            case "pdf":
+                thumbnailProvider = new PdfThumbnailProvider(cache);
+                resource = BenchmarkCorpus.createResource(Type.PDF, size);
+                break;
+            case "slideshow":
+                thumbnailProvider = new SlideShowThumbnailProvider(null, BenchmarkCorpus.createThumbnailSupport(),
+                        cache);
+                resource = BenchmarkCorpus.createResource(Type.PPTX, size);
+                break;
+            default:
+                thumbnailProvider = BenchmarkCorpus.createTikaFallbackProvider();
+                resource = BenchmarkCorpus.createResource(Type.TEXT, size);
+        }
+    }
+
+    @Benchmark
+    public void fullResolution(Blackhole blackhole) throws IOException {
+        drain(thumbnailProvider.getThumbnail(resource, SizeHint.FULL), blackhole);
+    }
+
+    @Benchmark
+    public void thumbnail(Blackhole blackhole) throws IOException {
+        drain(thumbnailProvider.getThumbnail(resource, THUMBNAIL), blackhole);
+    }
+
+    private void drain(InputStream is, Blackhole blackhole) throws IOException {
+        try (InputStream in = is) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                blackhole.consume(read);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.benchmark;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.thumbnails.TransformationHandlerConfig;
+import org.apache.sling.thumbnails.benchmark.BenchmarkCorpus.Size;
+import org.apache.sling.thumbnails.extension.TransformationHandler;
+import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
+import org.apache.sling.thumbnails.internal.transformers.ColorizeHandler;
+import org.apache.sling.thumbnails.internal.transformers.CropHandler;
+import org.apache.sling.thumbnails.internal.transformers.FlipHandler;
+import org.apache.sling.thumbnails.internal.transformers.GreyscaleHandler;
+import org.apache.sling.thumbnails.internal.transformers.ResizeHandler;
+import org.apache.sling.thumbnails.internal.transformers.RotateHandler;
+import org.apache.sling.thumbnails.internal.transformers.ScaleHandler;
+import org.apache.sling.thumbnails.internal.transformers.TransparencyHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the individual transformation handlers against decoded images of
+ * different sizes, excluding decoding and encoding.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformationHandlerBenchmark {
+
+    @Param({ "resize", "scale", "crop", "rotate", "colorize", "transparency", "flip", "greyscale" })
+    public String handler;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Size size;
+
+    private TransformationHandler transformationHandler;
+
+    private TransformationHandlerConfig config;
+
+    private BufferedImage image;
+
+    private Dimension sourceSize;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkCorpus.createImage(size);
+        sourceSize = new Dimension(image.getWidth(), image.getHeight());
+        Map<String, Object> properties = new HashMap<>();
+        switch (handler) {
+            case "resize":
+                transformationHandler = new ResizeHandler();
+                properties.put(ResizeHandler.PN_WIDTH, 200);
+                properties.put(ResizeHandler.PN_HEIGHT, 200);
+                break;
+            case "scale":
+                transformationHandler = new ScaleHandler();
+                properties.put(ScaleHandler.PN_BOTH, 0.5);
+                break;
+            case "crop":
+                transformationHandler = new CropHandler();
+                properties.put(ResizeHandler.PN_WIDTH, 200);
+                properties.put(ResizeHandler.PN_HEIGHT, 200);
+                properties.put(CropHandler.PN_POSITION, "CENTER");
+                break;
+            case "rotate":
+                transformationHandler = new RotateHandler();
+                properties.put(RotateHandler.DEGREES, 45);
+                break;
+            case "colorize":
+                transformationHandler = new ColorizeHandler();
+                properties.put(ColorizeHandler.PN_RED, 255);
+                properties.put(ColorizeHandler.PN_GREEN, 0);
+                properties.put(ColorizeHandler.PN_BLUE, 0);
+                properties.put(ColorizeHandler.PN_ALPHA, 0.5);
+                break;
+            case "transparency":
+                transformationHandler = new TransparencyHandler();
+                properties.put(ColorizeHandler.PN_ALPHA, 0.5);
+                break;
+            case "flip":
+                transformationHandler = new FlipHandler();
+                properties.put(FlipHandler.PN_DIRECTION, "HORIZONTAL");
+                break;
+            default:
+                transformationHandler = new GreyscaleHandler();
+        }
+        config = new TransformationHandlerConfigImpl(transformationHandler.getResourceType(), properties);
+    }
+
+    @Benchmark
+    public BufferedImage handle() throws IOException {
+        return transformationHandler.handle(image, sourceSize, config);
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.apache.sling.thumbnails.Transformation;
+import org.apache.sling.thumbnails.benchmark.BenchmarkCorpus.Size;
+import org.apache.sling.thumbnails.benchmark.BenchmarkCorpus.Type;
+import org.apache.sling.thumbnails.internal.ProviderOutputCache;
+import org.apache.sling.thumbnails.internal.ThumbnailMetrics;
+import org.apache.sling.thumbnails.internal.TransformerImpl;
+import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
+import org.apache.sling.thumbnails.internal.models.TransformationImpl;
+import org.apache.sling.thumbnails.internal.providers.ImageThumbnailProvider;
+import org.apache.sling.thumbnails.internal.providers.PdfThumbnailProvider;
+import org.apache.sling.thumbnails.internal.providers.SlideShowThumbnailProvider;
+import org.apache.sling.thumbnails.internal.transformers.CropHandler;
+import org.apache.sling.thumbnails.internal.transformers.GreyscaleHandler;
+import org.apache.sling.thumbnails.internal.transformers.ResizeHandler;
+import org.apache.sling.thumbnails.internal.transformers.ScaleHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures complete transformations, from the source document to the encoded
+ * rendition, as performed by the servlets.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformerBenchmark {
+
+    @Param({ "JPEG", "PNG", "PDF", "PPTX" })
+    public Type type;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Size size;
+
+    @Param({ "PNG", "JPEG" })
+    public OutputFileFormat format;
+
+    private TransformerImpl transformer;
+
+    private Resource resource;
+
+    private Transformation thumbnail;
+
+    private Transformation chain;
+
+    private Map<Transformation, OutputStream> renditions;
+
+    @Setup
+    public void setup() throws IOException {
+        ProviderOutputCache cache = BenchmarkCorpus.createProviderOutputCache(0);
+        transformer = new TransformerImpl(
+                Arrays.asList(new ImageThumbnailProvider(), new PdfThumbnailProvider(cache),
+                        new SlideShowThumbnailProvider(null, BenchmarkCorpus.createThumbnailSupport(), cache),
+                        BenchmarkCorpus.createTikaFallbackProvider()),
+                BenchmarkCorpus.createThumbnailSupport(), Arrays.asList(new ResizeHandler(), new ScaleHandler(),
+                        new CropHandler(), new GreyscaleHandler()),
+                Collections.emptyList(),
+                new ThumbnailMetrics(null), BenchmarkCorpus.createTransformerConfig());
+        resource = BenchmarkCorpus.createResource(type, size);
+
+        thumbnail = transformation(config(CropHandler.RESOURCE_TYPE, 200, 200));
+        chain = transformation(config(ScaleHandler.RESOURCE_TYPE, ScaleHandler.PN_BOTH, 0.5),
+                config(GreyscaleHandler.RESOURCE_TYPE), config(ResizeHandler.RESOURCE_TYPE, 1000, 1000));
+
+        renditions = new LinkedHashMap<>();
+        renditions.put(thumbnail, NullOutputStream.NULL_OUTPUT_STREAM);
+        renditions.put(transformation(config(ResizeHandler.RESOURCE_TYPE, 600, 600)),
+                NullOutputStream.NULL_OUTPUT_STREAM);
+        renditions.put(transformation(config(ResizeHandler.RESOURCE_TYPE, 1200, 1200)),
+                NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    private static TransformationHandlerConfigImpl config(String handlerType, int width, int height) {
+        return config(handlerType, ResizeHandler.PN_WIDTH, width, ResizeHandler.PN_HEIGHT, height);
+    }
+
+    private static TransformationHandlerConfigImpl config(String handlerType, Object... properties) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i + 1 < properties.length; i += 2) {
+            map.put((String) properties[i], properties[i + 1]);
+        }
+        return new TransformationHandlerConfigImpl(handlerType, map);
+    }
+
+    private static Transformation transformation(TransformationHandlerConfigImpl... handlers) {
+        return new TransformationImpl(Arrays.asList(handlers));
+    }
+
+    @Benchmark
+    public void thumbnail() throws IOException {
+        transformer.transform(resource, thumbnail, format, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public void chain() throws IOException {
+        transformer.transform(resource, chain, format, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public void multipleRenditions() throws IOException {
+        transformer.transform(resource, renditions, format);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+
+public class AnimatedGifEncoderTest {
+
+    static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE };
+
+    /**
+     * Creates an animated GIF with a frame of each of the colors.
+     */
+    static byte[] createAnimation(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (AnimatedGifEncoder encoder = new AnimatedGifEncoder(out)) {
+            for (Color color : COLORS) {
+                BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = frame.createGraphics();
+                graphics.setColor(color);
+                graphics.fillRect(0, 0, width, height);
+                graphics.dispose();
+                encoder.write(frame, 200);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testEncode() throws IOException {
+        byte[] animation = createAnimation(40, 20);
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(animation))) {
+            ImageReader reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input);
+            assertEquals(COLORS.length, reader.getNumImages(true));
+            for (int i = 0; i < COLORS.length; i++) {
+                BufferedImage frame = reader.read(i);
+                assertEquals(40, frame.getWidth());
+                assertEquals(20, frame.getHeight());
+                assertEquals(COLORS[i].getRGB(), frame.getRGB(10, 10));
+
+                IIOMetadataNode metadata = (IIOMetadataNode) reader.getImageMetadata(i)
+                        .getAsTree("javax_imageio_gif_image_1.0");
+                IIOMetadataNode control = (IIOMetadataNode) metadata.getElementsByTagName("GraphicControlExtension")
+                        .item(0);
+                assertEquals("20", control.getAttribute("delayTime"));
+            }
+            reader.dispose();
+        }
+    }
+
+}
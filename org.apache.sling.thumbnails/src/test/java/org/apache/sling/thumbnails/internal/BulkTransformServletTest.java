@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import javax.servlet.ServletException;
+
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.apache.sling.thumbnails.internal.BulkTransformer.Result;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BulkTransformServletTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext();
+
+    private BulkTransformer bulkTransformer;
+
+    private BulkTransformServlet servlet;
+
+    @Before
+    public void init() {
+        ContextHelper.initContext(context);
+        bulkTransformer = mock(BulkTransformer.class);
+        when(bulkTransformer.getMaxResources()).thenReturn(2);
+        servlet = new BulkTransformServlet(bulkTransformer);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequest() throws IOException, ServletException, InterruptedException {
+        doAnswer(inv -> {
+            ((Consumer<Result>) inv.getArgument(2))
+                    .accept(new Result("/content/apache/sling-apache-org/index/apache.png", "test.png", true, null));
+            return null;
+        }).when(bulkTransformer).transform(eq(Collections.singletonList("/content/apache/sling-apache-org/index/apache.png")),
+                eq(Collections.singletonList("test.png")), any());
+
+        context.request().addRequestParameter("resource", "/content/apache/sling-apache-org/index/apache.png");
+        context.request().addRequestParameter("resource", "/content/notfound.png");
+        context.request().addRequestParameter("rendition", "test.png");
+        servlet.doPost(context.request(), context.response());
+
+        assertEquals(200, context.response().getStatus());
+        assertEquals("application/x-ndjson", context.response().getContentType());
+        String[] lines = context.response().getOutputAsString().trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"path\":\"/content/notfound.png\""));
+        assertTrue(lines[0].contains("\"success\":false"));
+        assertTrue(lines[1].contains("\"success\":true"));
+    }
+
+    @Test
+    public void testMissingParameters() throws IOException, ServletException {
+        context.request().addRequestParameter("resource", "/content/apache/sling-apache-org/index/apache.png");
+        servlet.doPost(context.request(), context.response());
+        assertEquals(400, context.response().getStatus());
+    }
+
+    @Test
+    public void testInvalidRendition() throws IOException, ServletException {
+        context.request().addRequestParameter("resource", "/content/apache/sling-apache-org/index/apache.png");
+        context.request().addRequestParameter("rendition", "test.webp");
+        servlet.doPost(context.request(), context.response());
+        assertEquals(400, context.response().getStatus());
+    }
+
+    @Test
+    public void testTooManyResources() throws IOException, ServletException {
+        context.request().addRequestParameter("resource", "/content/a.png");
+        context.request().addRequestParameter("resource", "/content/b.png");
+        context.request().addRequestParameter("resource", "/content/c.png");
+        context.request().addRequestParameter("rendition", "test.png");
+        servlet.doPost(context.request(), context.response());
+        assertEquals(400, context.response().getStatus());
+    }
+
+}
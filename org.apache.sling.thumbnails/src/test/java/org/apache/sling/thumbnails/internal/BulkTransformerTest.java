@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.apache.sling.thumbnails.ThumbnailSupport;
+import org.apache.sling.thumbnails.TransformationHandlerConfig;
+import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.extension.TransformationHandler;
+import org.apache.sling.thumbnails.internal.BulkTransformer.Result;
+import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
+import org.apache.sling.thumbnails.internal.models.TransformationImpl;
+import org.apache.sling.thumbnails.internal.providers.ImageThumbnailProvider;
+import org.apache.sling.thumbnails.internal.transformers.ResizeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BulkTransformerTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext();
+
+    private BulkTransformer bulkTransformer;
+
+    @Before
+    public void init() throws Exception {
+        ContextHelper.initContext(context);
+
+        context.create().resource("/content/slingfile.jpg",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, "sling:File"));
+        Map<String, Object> slingFileProperties = new HashMap<>();
+        slingFileProperties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+        slingFileProperties.put(JcrConstants.JCR_DATA,
+                IOUtils.toByteArray(this.getClass().getClassLoader().getResourceAsStream("apache.png")));
+        slingFileProperties.put("jcr:mimeType", "image/png");
+        context.create().resource("/content/slingfile.jpg/jcr:content", slingFileProperties);
+
+        ThumbnailSupport thumbnailSupport = mock(ThumbnailSupport.class);
+        when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.singleton("sling:File"));
+        when(thumbnailSupport.getRenditionPath("sling:File")).thenReturn("jcr:content/renditions");
+        when(thumbnailSupport.getSupportedTypes()).thenReturn(Collections.singleton("sling:File"));
+        when(thumbnailSupport.getMetaTypePropertyPath(anyString())).thenReturn("jcr:content/jcr:mimeType");
+
+        List<TransformationHandler> th = new ArrayList<>();
+        th.add(new ResizeHandler());
+        List<ThumbnailProvider> providers = new ArrayList<>();
+        providers.add(new ImageThumbnailProvider());
+        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th, Collections.emptyList(),
+                new ThumbnailMetrics(null), ContextHelper.createTransformerConfig());
+
+        TransformationCache transformationCache = mock(TransformationCache.class);
+        when(transformationCache.getTransformation(any(), eq("/small")))
+                .thenReturn(Optional.of(new TransformationImpl(resize(50))));
+        when(transformationCache.getTransformation(any(), eq("/large")))
+                .thenReturn(Optional.of(new TransformationImpl(resize(100))));
+        when(transformationCache.getTransformation(any(), eq("/missing"))).thenReturn(Optional.empty());
+
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any())).thenReturn(context.resourceResolver());
+        TransformationServiceUser tsu = new TransformationServiceUser(factory);
+
+        BulkTransformerConfig config = mock(BulkTransformerConfig.class);
+        when(config.threads()).thenReturn(1);
+        when(config.maxResources()).thenReturn(10);
+
+        RenditionSupportImpl renditionSupport = new RenditionSupportImpl(thumbnailSupport, tsu);
+        bulkTransformer = new BulkTransformer(transformer, renditionSupport, transformationCache, tsu,
+                ContextHelper.createPersister(renditionSupport, tsu), new ThumbnailMetrics(null), config);
+    }
+
+    private static List<TransformationHandlerConfig> resize(int size) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ResizeHandler.PN_WIDTH, size);
+        properties.put(ResizeHandler.PN_HEIGHT, size);
+        return Collections.singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, properties));
+    }
+
+    @After
+    public void close() {
+        bulkTransformer.deactivate();
+    }
+
+    @Test
+    public void testTransform() throws InterruptedException {
+        assertEquals(10, bulkTransformer.getMaxResources());
+
+        List<Result> results = new ArrayList<>();
+        bulkTransformer.transform(Arrays.asList("/content/slingfile.jpg", "/content/notfound.jpg"),
+                Arrays.asList("small.png", "large.jpeg", "missing.png"), results::add);
+
+        assertEquals(6, results.size());
+        assertEquals(2, results.stream().filter(Result::isSuccess).count());
+        assertTrue(results.stream().filter(Result::isSuccess)
+                .allMatch(r -> "/content/slingfile.jpg".equals(r.getPath())));
+        assertFalse(results.stream().filter(r -> "missing.png".equals(r.getRendition()))
+                .anyMatch(Result::isSuccess));
+
+        assertNotNull(context.resourceResolver().getResource("/content/slingfile.jpg/jcr:content/renditions/small.png"));
+        assertNotNull(
+                context.resourceResolver().getResource("/content/slingfile.jpg/jcr:content/renditions/large.jpeg"));
+    }
+
+}
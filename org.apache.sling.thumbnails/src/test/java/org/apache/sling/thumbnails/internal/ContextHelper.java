@@ -16,11 +16,17 @@
  */
 package org.apache.sling.thumbnails.internal;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.io.InputStream;
 import java.util.function.Function;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.apache.sling.thumbnails.RenditionSupport;
+import org.apache.sling.thumbnails.internal.providers.TikaFallbackProvider;
+import org.apache.sling.thumbnails.internal.providers.TikaFallbackProviderConfig;
 
 public class ContextHelper {
 
@@ -43,4 +49,51 @@ public class ContextHelper {
         });
 
     }
+
+    public static final RenditionPersister createPersister(RenditionSupport renditionSupport,
+            TransformationServiceUser transformationServiceUser) {
+        RenditionPersisterConfig config = mock(RenditionPersisterConfig.class);
+        when(config.async()).thenReturn(false);
+        when(config.memoryThreshold()).thenReturn(1024);
+        return new RenditionPersister(renditionSupport, transformationServiceUser, config);
+    }
+
+    public static final RenditionCache createRenditionCache(ThumbnailMetrics metrics) {
+        RenditionCacheConfig config = mock(RenditionCacheConfig.class);
+        when(config.maxSize()).thenReturn(1024L * 1024L);
+        when(config.maxEntrySize()).thenReturn(1024 * 1024);
+        when(config.offHeap()).thenReturn(false);
+        return new RenditionCache(metrics, config);
+    }
+
+    public static final ProviderOutputCache createProviderOutputCache() {
+        ProviderOutputCacheConfig config = mock(ProviderOutputCacheConfig.class);
+        when(config.maxSize()).thenReturn(1024L * 1024L * 8);
+        return new ProviderOutputCache(new ThumbnailMetrics(null), config);
+    }
+
+    public static final TransformationCacheConfig createTransformationCacheConfig() {
+        TransformationCacheConfig config = mock(TransformationCacheConfig.class);
+        when(config.negativeTtl()).thenReturn(60L);
+        return config;
+    }
+
+    public static final TikaFallbackProvider createTikaFallbackProvider() {
+        TikaFallbackProviderConfig config = mock(TikaFallbackProviderConfig.class);
+        when(config.maxChars()).thenReturn(4000);
+        when(config.cacheSize()).thenReturn(100);
+        return new TikaFallbackProvider(config);
+    }
+
+    public static final TransformerConfig createTransformerConfig() {
+        return createTransformerConfig(false);
+    }
+
+    public static final TransformerConfig createTransformerConfig(boolean animated) {
+        TransformerConfig config = mock(TransformerConfig.class);
+        when(config.animated()).thenReturn(animated);
+        when(config.maxFrames()).thenReturn(10);
+        return config;
+    }
+
 }
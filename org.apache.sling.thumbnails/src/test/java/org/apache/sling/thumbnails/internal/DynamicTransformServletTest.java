@@ -58,6 +58,8 @@ public class DynamicTransformServletTest {
 
     private DynamicTransformServlet dts;
 
+    private TransformationServiceUser tsu;
+
     @Rule
     public final SlingContext context = new SlingContext();
 
@@ -72,7 +74,7 @@ public class DynamicTransformServletTest {
 
         List<ThumbnailProvider> providers = new ArrayList<>();
         providers.add(new ImageThumbnailProvider());
-        providers.add(new PdfThumbnailProvider());
+        providers.add(new PdfThumbnailProvider(ContextHelper.createProviderOutputCache()));
 
         ThumbnailSupport thumbnailSupport = mock(ThumbnailSupport.class);
         when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.singleton("sling:File"));
@@ -83,12 +85,14 @@ public class DynamicTransformServletTest {
         when(thumbnailSupport.getSupportedTypes()).thenReturn(supportedTypes);
         when(thumbnailSupport.getMetaTypePropertyPath(anyString())).thenReturn("jcr:content/jcr:mimeType");
 
-        TransformationServiceUser tsu = mock(TransformationServiceUser.class);
+        tsu = mock(TransformationServiceUser.class);
         when(tsu.getTransformationServiceUser()).thenReturn(context.resourceResolver());
 
         RenditionSupportImpl renditionSupport = new RenditionSupportImpl(thumbnailSupport, tsu);
-        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th);
-        dts = new DynamicTransformServlet(transformer, renditionSupport);
+        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th, Collections.emptyList(),
+                new ThumbnailMetrics(null), ContextHelper.createTransformerConfig());
+        dts = new DynamicTransformServlet(transformer, renditionSupport,
+                ContextHelper.createPersister(renditionSupport, tsu));
 
     }
 
@@ -148,6 +152,31 @@ public class DynamicTransformServletTest {
                 .getResource("/content/slingfile.jpg/jcr:content/renditions/my-rendition.png"));
     }
 
+    @Test
+    public void testPersistFailure() throws IOException, ServletException, LoginException {
+
+        context.create().resource("/content/slingfile.jpg",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, "sling:File"));
+        Map<String, Object> slingFileProperties = new HashMap<>();
+        slingFileProperties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+        slingFileProperties.put(JcrConstants.JCR_DATA, context.resourceResolver()
+                .getResource("/content/apache/sling-apache-org/index/apache.png").adaptTo(InputStream.class));
+        slingFileProperties.put("jcr:mimeType", "image/jpeg");
+        context.create().resource("/content/slingfile.jpg/jcr:content", slingFileProperties);
+        when(tsu.getTransformationServiceUser()).thenThrow(new LoginException("No service user"));
+
+        context.request().addRequestParameter("resource", "/content/slingfile.jpg");
+        context.request().addRequestParameter("renditionName", "my-rendition.png");
+        context.request().addRequestParameter("format", "png");
+        context.request().setContent(
+                "[{\"handlerType\":\"sling/thumbnails/transformers/crop\",\"properties\":{\"position\":\"CENTER\",\"width\":1000,\"height\":1000}}]"
+                        .getBytes());
+        dts.doPost(context.request(), context.response());
+
+        assertEquals(500, context.response().getStatus());
+        assertEquals(0, context.response().getOutput().length);
+    }
+
     @Test
     public void testNoResource() throws IOException, ServletException {
 
@@ -277,4 +306,28 @@ public class DynamicTransformServletTest {
         assertEquals(400, context.response().getStatus());
     }
 
+    @Test
+    public void testQuality() throws IOException, ServletException {
+
+        context.request().addRequestParameter("resource", "/content/apache/sling-apache-org/index/apache.png");
+        context.request().addRequestParameter("format", "jpeg");
+        context.request().addRequestParameter("quality", "0.5");
+        context.request().setContent("[]".getBytes());
+        dts.doPost(context.request(), context.response());
+
+        assertEquals(200, context.response().getStatus());
+        assertNotEquals(0, context.response().getOutput().length);
+    }
+
+    @Test
+    public void testInvalidQuality() throws IOException, ServletException {
+
+        context.request().addRequestParameter("resource", "/content/apache/sling-apache-org/index/apache.png");
+        context.request().addRequestParameter("quality", "best");
+        context.request().setContent("[]".getBytes());
+        dts.doPost(context.request(), context.response());
+
+        assertEquals(400, context.response().getStatus());
+    }
+
 }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageDecoderTest {
+
+    private byte[] source;
+
+    @Before
+    public void init() throws IOException {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 200, 200);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(200, 0, 200, 200);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        source = out.toByteArray();
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(source))) {
+            assertEquals(new Dimension(400, 200), decoder.getSize());
+            assertTrue(decoder.supportsRegion());
+            BufferedImage image = decoder.read(null, 1);
+            assertEquals(400, image.getWidth());
+            assertEquals(200, image.getHeight());
+        }
+    }
+
+    @Test
+    public void testSubsampling() throws IOException {
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(source))) {
+            BufferedImage image = decoder.read(null, 4);
+            assertEquals(100, image.getWidth());
+            assertEquals(50, image.getHeight());
+        }
+    }
+
+    @Test
+    public void testRegion() throws IOException {
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(source))) {
+            BufferedImage image = decoder.read(new Rectangle(200, 0, 200, 200), 2);
+            assertEquals(100, image.getWidth());
+            assertEquals(100, image.getHeight());
+            assertEquals(Color.BLUE.getRGB(), image.getRGB(50, 50));
+        }
+    }
+
+    @Test
+    public void testSingleFrame() throws IOException {
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(source))) {
+            assertFalse(decoder.hasMultipleFrames());
+            assertEquals(1, decoder.readFrames(10, (frame, delay) -> {
+                assertEquals(400, frame.getWidth());
+                assertEquals(ImageDecoder.DEFAULT_DELAY, delay);
+            }));
+        }
+    }
+
+    @Test
+    public void testFrames() throws IOException {
+        byte[] animation = AnimatedGifEncoderTest.createAnimation(40, 20);
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(animation))) {
+            assertTrue(decoder.hasMultipleFrames());
+            assertEquals(Color.RED.getRGB(), decoder.read(null, 1).getRGB(10, 10));
+
+            List<Integer> colors = new ArrayList<>();
+            assertEquals(3, decoder.readFrames(10, (frame, delay) -> {
+                assertEquals(40, frame.getWidth());
+                assertEquals(20, frame.getHeight());
+                assertEquals(200, delay);
+                colors.add(frame.getRGB(10, 10));
+            }));
+            assertEquals(Color.RED.getRGB(), colors.get(0).intValue());
+            assertEquals(Color.GREEN.getRGB(), colors.get(1).intValue());
+            assertEquals(Color.BLUE.getRGB(), colors.get(2).intValue());
+        }
+    }
+
+    @Test
+    public void testMaxFrames() throws IOException {
+        byte[] animation = AnimatedGifEncoderTest.createAnimation(40, 20);
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(animation))) {
+            assertEquals(2, decoder.readFrames(2, (frame, delay) -> {
+            }));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnImage() throws IOException {
+        new ImageDecoder(new ByteArrayInputStream("not an image".getBytes()));
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Dimension;
+import java.util.Calendar;
+import java.util.Collections;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ProviderOutputCacheTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext();
+
+    private ProviderOutputCacheConfig config;
+
+    private ThumbnailMetrics metrics;
+
+    private Resource file;
+
+    @Before
+    public void init() {
+        config = mock(ProviderOutputCacheConfig.class);
+        when(config.maxSize()).thenReturn(1024L);
+        metrics = new ThumbnailMetrics(null);
+
+        Calendar lastModified = Calendar.getInstance();
+        lastModified.setTimeInMillis(1000L);
+        context.create().resource("/content/file.pdf",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE));
+        context.create().resource("/content/file.pdf/jcr:content",
+                Collections.singletonMap(JcrConstants.JCR_LASTMODIFIED, lastModified));
+        file = context.resourceResolver().getResource("/content/file.pdf");
+    }
+
+    @Test
+    public void testLevel() {
+        Dimension size = new Dimension(2000, 1000);
+        assertEquals(0, ProviderOutputCache.getLevel(size, s -> s));
+        assertEquals(0, ProviderOutputCache.getLevel(size, s -> new Dimension(1200, 600)));
+        assertEquals(1, ProviderOutputCache.getLevel(size, s -> new Dimension(1000, 500)));
+        assertEquals(2, ProviderOutputCache.getLevel(size, s -> new Dimension(400, 100)));
+        assertEquals(ProviderOutputCache.MAX_LEVEL, ProviderOutputCache.getLevel(size, s -> new Dimension(10, 10)));
+        assertEquals(0.25, ProviderOutputCache.getScale(2), 0.0);
+    }
+
+    @Test
+    public void testCache() {
+        ProviderOutputCache cache = new ProviderOutputCache(metrics, config);
+        String identity = cache.getIdentity(file);
+        assertEquals("/content/file.pdf:1000", identity);
+        assertNull(cache.getSize(identity));
+        assertNull(cache.get(identity, 1));
+
+        cache.put(identity, new Dimension(2000, 1000), 1, new byte[] { 1, 2 });
+        assertEquals(new Dimension(2000, 1000), cache.getSize(identity));
+        assertArrayEquals(new byte[] { 1, 2 }, cache.get(identity, 1));
+        assertNull(cache.get(identity, 0));
+
+        assertEquals(1, metrics.counter("provider.cache.hit").getCount());
+        assertEquals(2, metrics.counter("provider.cache.miss").getCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        when(config.maxSize()).thenReturn(0L);
+        ProviderOutputCache cache = new ProviderOutputCache(metrics, config);
+        assertNull(cache.getIdentity(file));
+        cache.put(null, new Dimension(1, 1), 0, new byte[] { 1 });
+        assertEquals(0, cache.getCount());
+    }
+
+}
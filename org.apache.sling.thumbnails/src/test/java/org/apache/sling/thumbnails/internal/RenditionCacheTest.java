@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class RenditionCacheTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext();
+
+    private RenditionCacheConfig config;
+
+    private ThumbnailMetrics metrics;
+
+    private Resource file;
+
+    private Resource transformation;
+
+    @Before
+    public void init() {
+        config = mock(RenditionCacheConfig.class);
+        when(config.maxSize()).thenReturn(10L);
+        when(config.maxEntrySize()).thenReturn(5);
+        metrics = new ThumbnailMetrics(null);
+
+        Calendar lastModified = Calendar.getInstance();
+        lastModified.setTimeInMillis(1000L);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(JcrConstants.JCR_LASTMODIFIED, lastModified);
+        context.create().resource("/content/file.png",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE));
+        context.create().resource("/content/file.png/jcr:content", properties);
+        file = context.resourceResolver().getResource("/content/file.png");
+
+        transformation = context.create().resource("/conf/global/files/transformations/test",
+                Collections.singletonMap("name", "test"));
+        Map<String, Object> crop = new HashMap<>();
+        crop.put("sling:resourceType", "sling/thumbnails/transformers/crop");
+        crop.put("width", 100);
+        context.create().resource(transformation.getPath() + "/handlers/crop", crop);
+    }
+
+    private void setHandlerWidth(int width) throws PersistenceException {
+        context.resourceResolver().getResource(transformation.getPath() + "/handlers/crop")
+                .adaptTo(ModifiableValueMap.class).put("width", width);
+        context.resourceResolver().commit();
+    }
+
+    private static RenditionSpool spool(byte... contents) throws IOException {
+        RenditionSpool spool = new RenditionSpool(1024);
+        spool.write(contents);
+        spool.close();
+        return spool;
+    }
+
+    @Test
+    public void testKey() {
+        RenditionCache cache = new RenditionCache(metrics, config);
+        assertEquals(1000L, RenditionCache.getLastModified(file));
+        assertEquals("/content/file.png:1000:/test.png:/conf/global/files/transformations/test:"
+                + RenditionCache.getDigest(transformation), cache.getKey(file, "/test.png", transformation));
+        assertNull(cache.getKey(context.create().resource("/content/nodate"), "/test.png", transformation));
+        assertNull(cache.getKey(file, "/test.png", null));
+    }
+
+    @Test
+    public void testDigest() throws PersistenceException {
+        String digest = RenditionCache.getDigest(transformation);
+        assertEquals(digest, RenditionCache.getDigest(transformation));
+
+        // changes to the handlers change the digest, but not the transformation itself
+        setHandlerWidth(200);
+        assertNotEquals(digest, RenditionCache.getDigest(transformation));
+        setHandlerWidth(100);
+        assertEquals(digest, RenditionCache.getDigest(transformation));
+
+        context.create().resource(transformation.getPath() + "/handlers/resize",
+                Collections.singletonMap("sling:resourceType", "sling/thumbnails/transformers/resize"));
+        assertNotEquals(digest, RenditionCache.getDigest(transformation));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        when(config.offHeap()).thenReturn(true);
+        RenditionCache cache = new RenditionCache(metrics, config);
+        String key = cache.getKey(file, "/test.png", transformation);
+        assertNull(cache.get(key));
+
+        cache.put(key, spool((byte) 1, (byte) 2, (byte) 3));
+        ByteBuffer cached = cache.get(key);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RenditionCache.write(cached, out);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, out.toByteArray());
+
+        assertEquals(1, metrics.counter("rendition.cache.hit").getCount());
+        assertEquals(1, metrics.counter("rendition.cache.miss").getCount());
+    }
+
+    @Test
+    public void testMaxEntrySize() throws IOException {
+        RenditionCache cache = new RenditionCache(metrics, config);
+        cache.put("large", spool(new byte[6]));
+        assertNull(cache.get("large"));
+    }
+
+    @Test
+    public void testMaxSize() throws IOException {
+        RenditionCache cache = new RenditionCache(metrics, config);
+        cache.put("first", spool(new byte[5]));
+        cache.put("second", spool(new byte[5]));
+        cache.put("third", spool(new byte[5]));
+        assertTrue(cache.getCount() <= 2);
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        when(config.maxSize()).thenReturn(0L);
+        RenditionCache cache = new RenditionCache(metrics, config);
+        cache.put("key", spool((byte) 1));
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testETag() throws PersistenceException {
+        RenditionCache cache = new RenditionCache(metrics, config);
+        String key = cache.getKey(file, "/test.png", transformation);
+        String etag = cache.getETag(key);
+        assertTrue(RenditionCache.matches(etag, etag));
+        assertTrue(RenditionCache.matches("\"other\", " + etag, etag));
+        assertTrue(RenditionCache.matches("*", etag));
+        assertFalse(RenditionCache.matches(null, etag));
+        assertFalse(RenditionCache.matches("\"other\"", etag));
+
+        // the ETag is stable across instances and changes with the transformation
+        assertEquals(etag, new RenditionCache(metrics, config).getETag(key));
+        setHandlerWidth(200);
+        assertNotEquals(etag, cache.getETag(cache.getKey(file, "/test.png", transformation)));
+    }
+
+    @Test
+    public void testTransformationEvents() throws IOException {
+        RenditionCache cache = new RenditionCache(metrics, config);
+        String key = cache.getKey(file, "/test.png", transformation);
+        cache.put(key, spool((byte) 1));
+        assertEquals(1, cache.getCount());
+
+        cache.handleEvent(new Event("org/apache/sling/api/resource/Resource/CHANGED",
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, "/conf/global/files/other")));
+        assertEquals(1, cache.getCount());
+
+        cache.handleEvent(new Event("org/apache/sling/api/resource/Resource/CHANGED",
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, transformation.getPath() + "/handlers/crop")));
+        assertEquals(0, cache.getCount());
+
+        cache.put(cache.getKey(file, "/test.png", transformation), spool((byte) 1));
+        cache.handleEvent(new Event("org/apache/sling/api/resource/Resource/REMOVED",
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, "/conf/global/files")));
+        assertEquals(0, cache.getCount());
+    }
+
+}
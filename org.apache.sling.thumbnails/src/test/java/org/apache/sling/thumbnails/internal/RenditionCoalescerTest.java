@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.thumbnails.BadRequestException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenditionCoalescerTest {
+
+    private ThumbnailMetrics metrics;
+    private RenditionCoalescer coalescer;
+
+    @Before
+    public void init() {
+        metrics = new ThumbnailMetrics(null);
+        coalescer = new RenditionCoalescer(
+                ContextHelper.createPersister(mock(RenditionSupportImpl.class), mock(TransformationServiceUser.class)),
+                metrics);
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        RenditionCoalescer.Renderer renderer = out -> {
+            renders.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write(new byte[] { 1, 2, 3 });
+        };
+
+        ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<RenditionSpool> first = executor
+                    .submit(() -> coalescer.render("/content/file.png", "test.png", firstOut, renderer));
+            started.await(10, TimeUnit.SECONDS);
+            Future<RenditionSpool> second = executor
+                    .submit(() -> coalescer.render("/content/file.png", "test.png", secondOut, renderer));
+            while (metrics.counter("rendition.coalesced").getCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            RenditionSpool spool = first.get(10, TimeUnit.SECONDS);
+            assertNotNull(spool);
+            assertNull(second.get(10, TimeUnit.SECONDS));
+            spool.release();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertArrayEquals(new byte[] { 1, 2, 3 }, firstOut.toByteArray());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, secondOut.toByteArray());
+        assertEquals(1, renders.get());
+        assertEquals(1, metrics.timer("rendition.coalesced.wait").getCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testCoalesceReleased() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RenditionCoalescer.Renderer renderer = out -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write(new byte[] { 1, 2, 3 });
+        };
+
+        ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // the first request releases its spool as soon as it is done, e.g. as
+            // the rendition is not persisted
+            Future<?> first = executor.submit(() -> {
+                coalescer.render("/content/file.png", "test.png", new ByteArrayOutputStream(), renderer).release();
+                return null;
+            });
+            started.await(10, TimeUnit.SECONDS);
+            Future<RenditionSpool> second = executor
+                    .submit(() -> coalescer.render("/content/file.png", "test.png", secondOut, renderer));
+            while (metrics.counter("rendition.coalesced").getCount() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            first.get(10, TimeUnit.SECONDS);
+            assertNull(second.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertArrayEquals(new byte[] { 1, 2, 3 }, secondOut.toByteArray());
+    }
+
+    @Test
+    public void testSequential() throws IOException {
+        AtomicInteger renders = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        coalescer.render("/content/file.png", "test.png", out, o -> o.write(renders.incrementAndGet())).release();
+        coalescer.render("/content/file.png", "test.png", out, o -> o.write(renders.incrementAndGet())).release();
+        assertEquals(2, renders.get());
+        assertArrayEquals(new byte[] { 1, 2 }, out.toByteArray());
+        assertEquals(0, metrics.counter("rendition.coalesced").getCount());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testFailure() throws IOException {
+        try {
+            coalescer.render("/content/file.png", "test.png", new ByteArrayOutputStream(), out -> {
+                throw new BadRequestException("Bad");
+            });
+        } finally {
+            assertEquals(0, coalescer.getInFlightCount());
+        }
+    }
+
+}
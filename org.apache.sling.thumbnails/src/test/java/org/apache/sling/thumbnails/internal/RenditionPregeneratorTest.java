@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.apache.sling.thumbnails.ThumbnailSupport;
+import org.apache.sling.thumbnails.TransformationHandlerConfig;
+import org.apache.sling.thumbnails.extension.ThumbnailProvider;
+import org.apache.sling.thumbnails.extension.TransformationHandler;
+import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
+import org.apache.sling.thumbnails.internal.models.TransformationImpl;
+import org.apache.sling.thumbnails.internal.providers.ImageThumbnailProvider;
+import org.apache.sling.thumbnails.internal.transformers.ResizeHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class RenditionPregeneratorTest {
+
+    @Rule
+    public final SlingContext context = new SlingContext();
+
+    private RenditionPregenerator pregenerator;
+
+    private RenditionPregeneratorConfig config;
+
+    private ThumbnailSupport thumbnailSupport;
+
+    private TransformerImpl transformer;
+
+    private TransformationCache transformationCache;
+
+    private TransformationServiceUser tsu;
+
+    private ThumbnailMetrics metrics;
+
+    @Before
+    public void init() throws Exception {
+        ContextHelper.initContext(context);
+
+        context.create().resource("/content/slingfile.jpg",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, "sling:File"));
+        Map<String, Object> slingFileProperties = new HashMap<>();
+        slingFileProperties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+        slingFileProperties.put(JcrConstants.JCR_DATA,
+                IOUtils.toByteArray(this.getClass().getClassLoader().getResourceAsStream("apache.png")));
+        slingFileProperties.put("jcr:mimeType", "image/png");
+        context.create().resource("/content/slingfile.jpg/jcr:content", slingFileProperties);
+
+        thumbnailSupport = mock(ThumbnailSupport.class);
+        when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.singleton("sling:File"));
+        when(thumbnailSupport.getRenditionPath("sling:File")).thenReturn("jcr:content/renditions");
+        when(thumbnailSupport.getSupportedTypes()).thenReturn(Collections.singleton("sling:File"));
+        when(thumbnailSupport.getMetaTypePropertyPath(anyString())).thenReturn("jcr:content/jcr:mimeType");
+
+        List<TransformationHandler> th = new ArrayList<>();
+        th.add(new ResizeHandler());
+        List<ThumbnailProvider> providers = new ArrayList<>();
+        providers.add(new ImageThumbnailProvider());
+        transformer = new TransformerImpl(providers, thumbnailSupport, th, Collections.emptyList(),
+                new ThumbnailMetrics(null), ContextHelper.createTransformerConfig());
+
+        List<TransformationHandlerConfig> handlers = new ArrayList<>();
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 50);
+        size.put(ResizeHandler.PN_HEIGHT, 50);
+        handlers.add(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size));
+        transformationCache = mock(TransformationCache.class);
+        when(transformationCache.getTransformation(any(), eq("/test")))
+                .thenReturn(Optional.of(new TransformationImpl(handlers)));
+        when(transformationCache.getTransformation(any(), eq("/missing"))).thenReturn(Optional.empty());
+
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any())).thenReturn(context.resourceResolver());
+        tsu = new TransformationServiceUser(factory);
+
+        metrics = new ThumbnailMetrics(null);
+
+        config = mock(RenditionPregeneratorConfig.class);
+        when(config.renditions()).thenReturn(new String[] { "test.png", "missing.jpeg", "invalid.webp" });
+        when(config.threads()).thenReturn(1);
+        when(config.maxQueueSize()).thenReturn(10);
+    }
+
+    @After
+    public void close() {
+        if (pregenerator != null) {
+            pregenerator.deactivate();
+        }
+    }
+
+    private RenditionPregenerator createPregenerator() {
+        RenditionSupportImpl renditionSupport = new RenditionSupportImpl(thumbnailSupport, tsu);
+        RenditionPersister persister = ContextHelper.createPersister(renditionSupport, tsu);
+        return new RenditionPregenerator(thumbnailSupport, renditionSupport, transformer, transformationCache, tsu,
+                new RenditionCoalescer(persister, metrics), persister, metrics, config);
+    }
+
+    private static Event resourceEvent(String path) {
+        return new Event("org/apache/sling/api/resource/Resource/CHANGED",
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, path));
+    }
+
+    private void awaitProcessed(long count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (pregenerator.getCompletedCount() + pregenerator.getFailedCount() < count
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testPregenerate() throws InterruptedException {
+        pregenerator = createPregenerator();
+        assertEquals(2, pregenerator.getRenditions().size());
+
+        pregenerator.handleEvent(resourceEvent("/content/slingfile.jpg/jcr:content"));
+        awaitProcessed(2);
+
+        assertEquals(1, pregenerator.getCompletedCount());
+        assertEquals(1, pregenerator.getFailedCount());
+        assertNotNull(context.resourceResolver().getResource("/content/slingfile.jpg/jcr:content/renditions/test.png"));
+    }
+
+    @Test
+    public void testIgnoreRenditions() {
+        pregenerator = createPregenerator();
+        pregenerator.handleEvent(resourceEvent("/content/slingfile.jpg/jcr:content/renditions/test.png"));
+        assertEquals(0, pregenerator.getQueuedCount());
+    }
+
+    @Test
+    public void testIgnoreNonPersistable() {
+        context.create().resource("/content/page", Collections.singletonMap("sling:resourceType", "sling/page"));
+        context.create().resource("/content/page/jcr:content", Collections.singletonMap("title", "Page"));
+        pregenerator = createPregenerator();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(SlingConstants.PROPERTY_PATH, "/content/page");
+        properties.put(SlingConstants.PROPERTY_RESOURCE_TYPE, "sling/page");
+        pregenerator.handleEvent(new Event("org/apache/sling/api/resource/Resource/ADDED", properties));
+        assertEquals(0, pregenerator.getQueuedCount());
+
+        // content events carry no type for the file, they are checked by the worker
+        pregenerator.handleEvent(resourceEvent("/content/page/jcr:content"));
+        pregenerator.handleEvent(resourceEvent("/content/missing/jcr:content"));
+        assertEquals(4, pregenerator.getQueuedCount());
+
+        properties.put(SlingConstants.PROPERTY_PATH, "/content/slingfile.jpg");
+        properties.put(SlingConstants.PROPERTY_RESOURCE_TYPE, "sling:File");
+        pregenerator.handleEvent(new Event("org/apache/sling/api/resource/Resource/ADDED", properties));
+        assertEquals(6, pregenerator.getQueuedCount());
+
+        awaitProcessed(2);
+        assertEquals(1, pregenerator.getCompletedCount());
+        assertNull(context.resourceResolver().getResource("/content/page/jcr:content/renditions"));
+    }
+
+    @Test
+    public void testMergeAndDrop() {
+        when(config.maxQueueSize()).thenReturn(1);
+        pregenerator = createPregenerator();
+
+        // block the single worker so the subsequent renditions stay queued
+        Object lock = new Object();
+        synchronized (lock) {
+            when(thumbnailSupport.getPersistableTypes()).thenAnswer(inv -> {
+                synchronized (lock) {
+                    return Collections.singleton("sling:File");
+                }
+            });
+            assertTrue(pregenerator.enqueue("/content/slingfile.jpg", "test.png", 0));
+            assertTrue(pregenerator.enqueue("/content/other.jpg", "test.png", 0));
+            assertFalse(pregenerator.enqueue("/content/other.jpg", "test.png", 0));
+            assertFalse(pregenerator.enqueue("/content/third.jpg", "test.png", 0));
+        }
+        assertEquals(2, pregenerator.getQueuedCount());
+        assertEquals(1, pregenerator.getMergedCount());
+        assertEquals(1, pregenerator.getDroppedCount());
+    }
+
+}
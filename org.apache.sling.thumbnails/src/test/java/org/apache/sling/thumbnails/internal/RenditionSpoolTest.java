@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class RenditionSpoolTest {
+
+    @Test
+    public void testInMemory() throws IOException {
+        RenditionSpool spool = new RenditionSpool(10);
+        spool.write(new byte[] { 1, 2, 3 });
+        spool.close();
+
+        assertFalse(spool.isOnDisk());
+        assertEquals(3, spool.getSize());
+        try (InputStream is = spool.getInputStream()) {
+            assertArrayEquals(new byte[] { 1, 2, 3 }, IOUtils.toByteArray(is));
+        }
+        spool.release();
+    }
+
+    @Test
+    public void testOnDisk() throws IOException {
+        RenditionSpool spool = new RenditionSpool(2);
+        spool.write(1);
+        spool.write(new byte[] { 2, 3, 4 });
+        spool.close();
+
+        assertTrue(spool.isOnDisk());
+        assertEquals(4, spool.getSize());
+        for (int i = 0; i < 2; i++) {
+            try (InputStream is = spool.getInputStream()) {
+                assertArrayEquals(new byte[] { 1, 2, 3, 4 }, IOUtils.toByteArray(is));
+            }
+        }
+        spool.release();
+    }
+
+    @Test
+    public void testReferences() throws IOException {
+        RenditionSpool spool = new RenditionSpool(2);
+        spool.write(new byte[] { 1, 2, 3 });
+        spool.close();
+
+        assertTrue(spool.tryRetain());
+        spool.release();
+        spool.getInputStream().close();
+        spool.release();
+        assertFalse(spool.tryRetain());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadReleased() throws IOException {
+        RenditionSpool spool = new RenditionSpool(2);
+        spool.close();
+        spool.release();
+        spool.getInputStream();
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOpen() throws IOException {
+        RenditionSpool spool = new RenditionSpool(2);
+        spool.getInputStream();
+    }
+
+}
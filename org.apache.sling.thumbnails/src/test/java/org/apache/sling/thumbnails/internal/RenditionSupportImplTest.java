@@ -16,6 +16,7 @@
  */
 package org.apache.sling.thumbnails.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -26,12 +27,16 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
@@ -133,6 +138,16 @@ public class RenditionSupportImplTest {
         assertNotNull(renditionSupport.getRenditionContent(slingFileResource, "myrendition.png"));
     }
 
+    @Test
+    public void testReplaceRendition() throws PersistenceException, IOException {
+        renditionSupport.setRendition(slingFileResource, "myrendition.png",
+                new ByteArrayInputStream(new byte[] { 0, 1 }));
+        renditionSupport.setRendition(slingFileResource, "myrendition.png",
+                new ByteArrayInputStream(new byte[] { 2, 3, 4 }));
+        assertArrayEquals(new byte[] { 2, 3, 4 },
+                IOUtils.toByteArray(renditionSupport.getRenditionContent(slingFileResource, "myrendition.png")));
+    }
+
     @Test
     public void testListRenditions() throws PersistenceException {
         renditionSupport.setRendition(slingFileResource, "myrendition.png",
@@ -145,6 +160,16 @@ public class RenditionSupportImplTest {
         assertNotNull(renditionSupport.listRenditions(ntFileresource));
     }
 
+    @Test
+    public void testCreateRenditions() throws PersistenceException {
+        Map<String, InputStream> renditions = new LinkedHashMap<>();
+        renditions.put("first.png", new ByteArrayInputStream(new byte[] { 0, 1 }));
+        renditions.put("/second.jpeg", new ByteArrayInputStream(new byte[] { 0, 1 }));
+        renditionSupport.setRenditions(slingFileResource, renditions);
+        assertTrue(renditionSupport.renditionExists(slingFileResource, "first.png"));
+        assertTrue(renditionSupport.renditionExists(slingFileResource, "second.jpeg"));
+    }
+
     @Test(expected = PersistenceException.class)
     public void testLoginFailure() throws PersistenceException, LoginException {
 
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.apache.sling.thumbnails.internal.ThumbnailMetrics.TransformationTiming;
+import org.junit.Test;
+
+public class ThumbnailMetricsTest {
+
+    @Test
+    public void testRegistry() {
+        MetricRegistry registry = new MetricRegistry();
+        ThumbnailMetrics metrics = new ThumbnailMetrics(registry);
+        metrics.counter("test").inc();
+
+        assertSame(registry, metrics.getRegistry());
+        assertEquals(1, registry.counter("sling.thumbnails.test").getCount());
+    }
+
+    @Test
+    public void testSlowestTransformations() {
+        ThumbnailMetrics metrics = new ThumbnailMetrics(null);
+        for (int i = 1; i <= ThumbnailMetrics.SLOWEST_SIZE * 2; i++) {
+            metrics.recordTransformation("/content/file" + i, "test", i * 1000000L);
+        }
+        metrics.recordTransformation("/content/fast", "test", 1);
+
+        List<TransformationTiming> slowest = metrics.getSlowestTransformations();
+        assertEquals(ThumbnailMetrics.SLOWEST_SIZE, slowest.size());
+        assertEquals("/content/file20", slowest.get(0).getPath());
+        assertEquals(20, slowest.get(0).getDurationMillis());
+        assertEquals("/content/file11", slowest.get(ThumbnailMetrics.SLOWEST_SIZE - 1).getPath());
+    }
+
+}
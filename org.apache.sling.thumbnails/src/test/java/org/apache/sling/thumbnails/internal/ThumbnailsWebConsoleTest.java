@@ -17,6 +17,8 @@
 package org.apache.sling.thumbnails.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -46,6 +48,8 @@ public class ThumbnailsWebConsoleTest {
 
     private ThumbnailsWebConsole wc;
 
+    private ThumbnailMetrics metrics;
+
     @Rule
     public final SlingContext context = new SlingContext();
 
@@ -58,15 +62,26 @@ public class ThumbnailsWebConsoleTest {
 
         List<ThumbnailProvider> providers = new ArrayList<>();
         providers.add(new ImageThumbnailProvider());
-        providers.add(new PdfThumbnailProvider());
+        providers.add(new PdfThumbnailProvider(ContextHelper.createProviderOutputCache()));
 
         ThumbnailSupport thumbnailSupport = mock(ThumbnailSupport.class);
         when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.emptySet());
         when(thumbnailSupport.getSupportedTypes()).thenReturn(Collections.singleton("nt:file"));
         when(thumbnailSupport.getMetaTypePropertyPath("nt:file")).thenReturn("jcr:content/jcr:mimeType");
 
-        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th);
-        wc = new ThumbnailsWebConsole(thumbnailSupport, transformer);
+        metrics = new ThumbnailMetrics(null);
+        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th, Collections.emptyList(),
+                metrics, ContextHelper.createTransformerConfig());
+        RenditionPregeneratorConfig config = mock(RenditionPregeneratorConfig.class);
+        when(config.renditions()).thenReturn(new String[] { "thumbnail.png" });
+        when(config.threads()).thenReturn(1);
+        when(config.maxQueueSize()).thenReturn(1000);
+        RenditionPersister persister = mock(RenditionPersister.class);
+        RenditionPregenerator pregenerator = new RenditionPregenerator(thumbnailSupport,
+                mock(RenditionSupportImpl.class), transformer, mock(TransformationCache.class),
+                mock(TransformationServiceUser.class), new RenditionCoalescer(persister, metrics), persister,
+                metrics, config);
+        wc = new ThumbnailsWebConsole(thumbnailSupport, transformer, pregenerator, metrics);
 
     }
 
@@ -81,6 +96,17 @@ public class ThumbnailsWebConsoleTest {
         assertEquals(expected, context.response().getOutputAsString());
     }
 
+    @Test
+    public void testEscaping() throws IOException, ServletException {
+        metrics.recordTransformation("/content/<script>alert(1)</script>.png", "<b>crop</b>", 1000000L);
+        wc.renderContent(context.request(), context.response());
+
+        String output = context.response().getOutputAsString();
+        assertFalse(output.contains("<script>"));
+        assertFalse(output.contains("<b>"));
+        assertTrue(output.contains("&lt;script&gt;"));
+    }
+
     @Test
     public void testTitle() throws IOException, ServletException {
 
@@ -16,6 +16,7 @@
  */
 package org.apache.sling.thumbnails.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
@@ -26,6 +27,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,7 +44,9 @@ import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.servlethelpers.MockRequestDispatcherFactory;
+import org.apache.sling.servlethelpers.MockSlingHttpServletResponse;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.apache.sling.thumbnails.ThumbnailSupport;
 import org.apache.sling.thumbnails.TransformationHandlerConfig;
@@ -71,6 +75,8 @@ public class TransformServletTest {
 
     private RequestDispatcher dispatcher;
 
+    private ThumbnailMetrics metrics;
+
     @Before
     public void init() throws IllegalAccessException, LoginException {
         ContextHelper.initContext(context);
@@ -94,6 +100,8 @@ public class TransformServletTest {
 
         resource = Mockito.mock(Resource.class);
         Mockito.when(resource.getPath()).thenReturn("/conf");
+        Mockito.when(resource.getValueMap())
+                .thenReturn(new ValueMapDecorator(Collections.singletonMap("name", "test")));
         Mockito.when(resource.adaptTo(Mockito.any())).thenReturn(transformation);
         Mockito.when(resolver.findResources(Mockito.anyString(), Mockito.anyString())).thenAnswer((ans) -> {
             List<Resource> resources = new ArrayList<>();
@@ -113,7 +121,7 @@ public class TransformServletTest {
 
         List<ThumbnailProvider> providers = new ArrayList<>();
         providers.add(new ImageThumbnailProvider());
-        providers.add(new PdfThumbnailProvider());
+        providers.add(new PdfThumbnailProvider(ContextHelper.createProviderOutputCache()));
 
         ThumbnailSupport thumbnailSupport = mock(ThumbnailSupport.class);
         when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.singleton("sling:File"));
@@ -125,14 +133,18 @@ public class TransformServletTest {
         when(thumbnailSupport.getMetaTypePropertyPath(anyString())).thenReturn("jcr:content/jcr:mimeType");
         when(thumbnailSupport.getServletErrorResourcePath()).thenReturn("/content");
 
-        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th);
+        TransformerImpl transformer = new TransformerImpl(providers, thumbnailSupport, th, Collections.emptyList(),
+                new ThumbnailMetrics(null), ContextHelper.createTransformerConfig());
 
         ResourceResolverFactory contextFactory = Mockito.mock(ResourceResolverFactory.class);
         Mockito.when(contextFactory.getServiceResourceResolver(Mockito.any())).thenReturn(context.resourceResolver());
         TransformationServiceUser contextTsu = new TransformationServiceUser(contextFactory);
         RenditionSupportImpl renditionSupport = new RenditionSupportImpl(thumbnailSupport, contextTsu);
+        RenditionPersister persister = ContextHelper.createPersister(renditionSupport, contextTsu);
 
-        ts = new TransformServlet(thumbnailSupport, transformer, tsu, new TransformationCache(tsu), renditionSupport,
+        metrics = new ThumbnailMetrics(null);
+        ts = new TransformServlet(thumbnailSupport, transformer, tsu, new TransformationCache(tsu, ContextHelper.createTransformationCacheConfig()), renditionSupport,
+                new RenditionCoalescer(persister, metrics), persister, ContextHelper.createRenditionCache(metrics),
                 mock(BundleContext.class));
 
         MockRequestDispatcherFactory dispatcherFactory = mock(MockRequestDispatcherFactory.class);
@@ -176,6 +188,42 @@ public class TransformServletTest {
         assertNotNull(context.resourceResolver().getResource("/content/slingfile.jpg/jcr:content/renditions/test.png"));
     }
 
+    @Test
+    public void testConditionalGet() throws IOException, ServletException {
+        Map<String, Object> fileProperties = new HashMap<>();
+        fileProperties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+        fileProperties.put(JcrConstants.JCR_DATA,
+                IOUtils.toByteArray(this.getClass().getClassLoader().getResourceAsStream("apache.png")));
+        fileProperties.put("jcr:mimeType", "image/png");
+        fileProperties.put(JcrConstants.JCR_LASTMODIFIED, Calendar.getInstance());
+        context.create().resource("/content/cached.png",
+                Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_FILE));
+        context.create().resource("/content/cached.png/jcr:content", fileProperties);
+
+        context.currentResource("/content/cached.png");
+        context.requestPathInfo().setSuffix("/test.png");
+        context.requestPathInfo().setExtension("transform");
+
+        ts.doGet(context.request(), context.response());
+        assertEquals(200, context.response().getStatus());
+        String etag = context.response().getHeader("ETag");
+        assertNotNull(etag);
+        assertNotNull(context.response().getHeader("Last-Modified"));
+        byte[] rendered = context.response().getOutput();
+
+        MockSlingHttpServletResponse cachedResponse = new MockSlingHttpServletResponse();
+        ts.doGet(context.request(), cachedResponse);
+        assertEquals(1, metrics.counter("rendition.cache.hit").getCount());
+        assertArrayEquals(rendered, cachedResponse.getOutput());
+
+        context.request().setHeader("If-None-Match", etag);
+        MockSlingHttpServletResponse notModified = new MockSlingHttpServletResponse();
+        ts.doGet(context.request(), notModified);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(etag, notModified.getHeader("ETag"));
+        assertEquals(0, notModified.getOutput().length);
+    }
+
     @Test
     public void testUnsupportedOutput() throws IOException, ServletException {
 
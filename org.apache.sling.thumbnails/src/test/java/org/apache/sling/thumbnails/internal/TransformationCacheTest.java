@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class TransformationCacheTest {
+
+    private final Map<String, Resource> resources = new LinkedHashMap<>();
+
+    private int queries;
+
+    private TransformationCache cache;
+
+    @Before
+    public void init() throws LoginException {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.findResources(anyString(), anyString())).thenAnswer(inv -> {
+            queries++;
+            String query = inv.getArgument(0, String.class);
+            return resources.values().stream()
+                    .filter(r -> !query.contains("[name]=") || query
+                            .contains("[name]='" + r.getValueMap().get("name", String.class) + "'"))
+                    .collect(Collectors.toList()).iterator();
+        });
+        when(resolver.getResource(anyString())).thenAnswer(inv -> resources.get(inv.getArgument(0, String.class)));
+
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any())).thenReturn(resolver);
+        cache = new TransformationCache(new TransformationServiceUser(factory),
+                ContextHelper.createTransformationCacheConfig());
+
+        addResource("/libs/conf/global/files/transformations/thumbnail", "thumbnail");
+        addResource("/conf/global/files/transformations/thumbnail", "thumbnail");
+        addResource("/conf/global/files/transformations/banner", "banner");
+    }
+
+    private void addResource(String path, String name) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("name", name);
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getValueMap()).thenReturn(new ValueMapDecorator(properties));
+        resources.put(path, resource);
+    }
+
+    private Event event(String topic, String path) {
+        return new Event(topic, Collections.singletonMap(SlingConstants.PROPERTY_PATH, path));
+    }
+
+    @Test
+    public void testIndex() throws ExecutionException {
+        assertEquals(Optional.of("/conf/global/files/transformations/thumbnail"), cache.getPath("/thumbnail"));
+        assertEquals(Optional.of("/conf/global/files/transformations/banner"), cache.getPath("/banner"));
+        assertEquals(1, queries);
+    }
+
+    @Test
+    public void testNegativeLookup() throws ExecutionException {
+        assertFalse(cache.getPath("/missing").isPresent());
+        assertFalse(cache.getPath("/missing").isPresent());
+        assertEquals(2, queries);
+    }
+
+    @Test
+    public void testAdded() throws ExecutionException {
+        assertFalse(cache.getPath("/hero").isPresent());
+
+        addResource("/conf/global/files/transformations/hero", "hero");
+        cache.handleEvent(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/conf/global/files/transformations/hero"));
+
+        assertEquals(Optional.of("/conf/global/files/transformations/hero"), cache.getPath("/hero"));
+        assertEquals(2, queries);
+    }
+
+    @Test
+    public void testChanged() throws ExecutionException {
+        assertEquals(Optional.of("/conf/global/files/transformations/banner"), cache.getPath("/banner"));
+
+        addResource("/conf/global/files/transformations/banner", "wide-banner");
+        cache.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED, "/conf/global/files/transformations/banner"));
+
+        assertEquals(Optional.of("/conf/global/files/transformations/banner"), cache.getPath("/wide-banner"));
+        assertEquals(Optional.of("/conf/global/files/transformations/thumbnail"), cache.getPath("/thumbnail"));
+        assertEquals(1, queries);
+        assertFalse(cache.getPath("/banner").isPresent());
+    }
+
+    @Test
+    public void testRemoved() throws ExecutionException {
+        assertEquals(Optional.of("/conf/global/files/transformations/thumbnail"), cache.getPath("/thumbnail"));
+
+        resources.remove("/conf/global/files/transformations/thumbnail");
+        resources.remove("/conf/global/files/transformations/banner");
+        cache.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED, "/conf/global/files"));
+
+        assertEquals(Optional.of("/libs/conf/global/files/transformations/thumbnail"), cache.getPath("/thumbnail"));
+        assertFalse(cache.getPath("/banner").isPresent());
+        assertEquals(2, queries);
+    }
+
+    @Test
+    public void testEventBeforeIndex() throws ExecutionException {
+        cache.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED, "/conf/global/files"));
+        assertEquals(Optional.of("/conf/global/files/transformations/thumbnail"), cache.getPath("/thumbnail"));
+    }
+
+}
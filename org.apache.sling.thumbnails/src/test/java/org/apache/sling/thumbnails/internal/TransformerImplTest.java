@@ -16,25 +16,42 @@
  */
 package org.apache.sling.thumbnails.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.apache.sling.thumbnails.BadRequestException;
 import org.apache.sling.thumbnails.OutputFileFormat;
 import org.apache.sling.thumbnails.ThumbnailSupport;
+import org.apache.sling.thumbnails.Transformation;
 import org.apache.sling.thumbnails.TransformationHandlerConfig;
 import org.apache.sling.thumbnails.Transformer;
+import org.apache.sling.thumbnails.extension.ImageEncoder;
+import org.apache.sling.thumbnails.extension.SizeHint;
 import org.apache.sling.thumbnails.extension.ThumbnailProvider;
 import org.apache.sling.thumbnails.extension.TransformationHandler;
 import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
@@ -51,6 +68,8 @@ public class TransformerImplTest {
     @Rule
     public final SlingContext context = new SlingContext();
     private Transformer transformer;
+    private ThumbnailMetrics metrics;
+    private ThumbnailSupport thumbnailSupport;
 
     @Before
     public void init() {
@@ -59,19 +78,34 @@ public class TransformerImplTest {
         List<TransformationHandler> handlers = new ArrayList<>();
         handlers.add(new CropHandler());
         handlers.add(new ResizeHandler());
+        handlers.add(new TransformationHandler() {
+
+            @Override
+            public String getResourceType() {
+                return "test/streamonly";
+            }
+
+            @Override
+            public void handle(InputStream inputStream, OutputStream outputStream,
+                    TransformationHandlerConfig config) throws IOException {
+                new ResizeHandler().handle(inputStream, outputStream, config);
+            }
+        });
 
         List<ThumbnailProvider> providers = new ArrayList<>();
         providers.add(new ImageThumbnailProvider());
-        providers.add(new PdfThumbnailProvider());
+        providers.add(new PdfThumbnailProvider(ContextHelper.createProviderOutputCache()));
 
-        ThumbnailSupport thumbnailSupport = mock(ThumbnailSupport.class);
+        thumbnailSupport = mock(ThumbnailSupport.class);
         when(thumbnailSupport.getPersistableTypes()).thenReturn(Collections.emptySet());
         when(thumbnailSupport.getSupportedTypes()).thenReturn(Collections.singleton("nt:file"));
         when(thumbnailSupport.getMetaTypePropertyPath("nt:file")).thenReturn("jcr:content/jcr:mimeType");
         when(thumbnailSupport.getServletErrorSuffix()).thenReturn("error");
         when(thumbnailSupport.getServletErrorResourcePath()).thenReturn("/content/sling/error");
 
-        transformer = new TransformerImpl(providers, thumbnailSupport, handlers);
+        metrics = new ThumbnailMetrics(null);
+        transformer = new TransformerImpl(providers, thumbnailSupport, handlers, Collections.emptyList(),
+                metrics, ContextHelper.createTransformerConfig());
 
     }
 
@@ -97,6 +131,239 @@ public class TransformerImplTest {
         assertNotNull(baos);
     }
 
+    @Test
+    public void testStreamOnlyHandler() throws IOException {
+        context.currentResource("/content/apache/sling-apache-org/index/apache.png");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<TransformationHandlerConfig> handlers = new ArrayList<>();
+
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 100);
+        size.put(ResizeHandler.PN_HEIGHT, 50);
+        size.put(ResizeHandler.PN_KEEP_ASPECT_RATIO, false);
+        handlers.add(new TransformationHandlerConfigImpl("test/streamonly", size));
+
+        TransformationImpl transformation = new TransformationImpl(handlers, "test", mock(Resource.class));
+        transformer.transform(context.currentResource(), transformation, OutputFileFormat.JPEG, baos);
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(100, result.getWidth());
+        assertEquals(50, result.getHeight());
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        context.currentResource("/content/apache/sling-apache-org/index/apache.png");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 200);
+        size.put(ResizeHandler.PN_HEIGHT, 200);
+        TransformationImpl transformation = new TransformationImpl(
+                Collections.singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size)),
+                "test", mock(Resource.class));
+        transformer.transform(context.currentResource(), transformation, OutputFileFormat.PNG, baos);
+
+        assertEquals(1, metrics.timer("transformation").getCount());
+        assertEquals(1, metrics.timer("transformation.test").getCount());
+        assertEquals(1, metrics.timer("provider.ImageThumbnailProvider").getCount());
+        assertEquals(1, metrics.timer("handler." + ResizeHandler.RESOURCE_TYPE).getCount());
+        assertEquals(1, metrics.timer("decode").getCount());
+        assertEquals(1, metrics.timer("encode").getCount());
+        assertEquals(baos.size(), metrics.histogram("output.bytes").getSnapshot().getMax());
+        assertEquals(1, metrics.histogram("input.bytes").getCount());
+        assertEquals(0, metrics.counter("transformation.failed").getCount());
+
+        assertEquals(1, metrics.getSlowestTransformations().size());
+        assertEquals("test", metrics.getSlowestTransformations().get(0).getTransformation());
+        assertEquals("/content/apache/sling-apache-org/index/apache.png",
+                metrics.getSlowestTransformations().get(0).getPath());
+    }
+
+    @Test
+    public void testFailureMetrics() throws IOException {
+        Resource resource = context.create().resource("/content/broken.png", "jcr:primaryType", "nt:file");
+        context.load().binaryResource(new ByteArrayInputStream(new byte[] { 1, 2, 3 }),
+                "/content/broken.png/jcr:content", "image/png");
+        try {
+            transformer.transform(resource, new TransformationImpl(Collections.emptyList()), OutputFileFormat.JPEG,
+                    new ByteArrayOutputStream());
+            fail("Expected the broken image to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, metrics.counter("transformation.failed").getCount());
+        assertEquals(1, metrics.timer("transformation." + TransformerImpl.DYNAMIC_TRANSFORMATION).getCount());
+    }
+
+    @Test
+    public void testMultipleTransformations() throws IOException {
+        Resource resource = context.resourceResolver().getResource("/content/apache/sling-apache-org/index/apache.png");
+        Map<Transformation, OutputStream> transformations = new LinkedHashMap<>();
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        ByteArrayOutputStream large = new ByteArrayOutputStream();
+        for (int width : new int[] { 20, 40 }) {
+            Map<String, Object> size = new HashMap<>();
+            size.put(ResizeHandler.PN_WIDTH, width);
+            size.put(ResizeHandler.PN_HEIGHT, 10);
+            size.put(ResizeHandler.PN_KEEP_ASPECT_RATIO, false);
+            transformations.put(new TransformationImpl(Collections
+                    .singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size)), "test",
+                    mock(Resource.class)), width == 20 ? small : large);
+        }
+        transformer.transform(resource, transformations, OutputFileFormat.PNG);
+
+        assertEquals(20, ImageIO.read(new ByteArrayInputStream(small.toByteArray())).getWidth());
+        assertEquals(40, ImageIO.read(new ByteArrayInputStream(large.toByteArray())).getWidth());
+    }
+
+    @Test
+    public void testSubsampling() {
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 200);
+        size.put(ResizeHandler.PN_HEIGHT, 200);
+        TransformationHandlerConfig resize = new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size);
+
+        TransformerImpl impl = (TransformerImpl) transformer;
+        Dimension sourceSize = new Dimension(8000, 6000);
+        assertEquals(20, impl.getSubsampling(sourceSize,
+                new TransformationImpl(Collections.singletonList(resize), "test", mock(Resource.class))));
+        assertEquals(1, impl.getSubsampling(new Dimension(500, 500),
+                new TransformationImpl(Collections.singletonList(resize), "test", mock(Resource.class))));
+
+        List<TransformationHandlerConfig> handlers = new ArrayList<>();
+        handlers.add(new TransformationHandlerConfigImpl("test/streamonly", size));
+        handlers.add(resize);
+        assertEquals(1, impl.getSubsampling(sourceSize, new TransformationImpl(handlers, "test", mock(Resource.class))));
+    }
+
+    @Test
+    public void testSizeHint() {
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 200);
+        size.put(ResizeHandler.PN_HEIGHT, 200);
+        TransformationHandlerConfig resize = new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size);
+
+        TransformerImpl impl = (TransformerImpl) transformer;
+        SizeHint hint = impl.getSizeHint(
+                new TransformationImpl(Collections.singletonList(resize), "test", mock(Resource.class)));
+        assertEquals(new Dimension(400, 300), hint.getRequiredSize(new Dimension(8000, 6000)));
+
+        TransformationHandlerConfig streamOnly = new TransformationHandlerConfigImpl("test/streamonly", size);
+        hint = impl.getSizeHint(
+                new TransformationImpl(Collections.singletonList(streamOnly), "test", mock(Resource.class)));
+        assertEquals(new Dimension(8000, 6000), hint.getRequiredSize(new Dimension(8000, 6000)));
+    }
+
+    @Test
+    public void testLargeImageThumbnail() throws IOException {
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4000, 2000, BufferedImage.TYPE_INT_RGB), "png", source);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("jcr:primaryType", "nt:file");
+        context.create().resource("/content/large.png", properties);
+        context.load().binaryResource(new ByteArrayInputStream(source.toByteArray()), "/content/large.png/jcr:content",
+                "image/png");
+
+        List<TransformationHandlerConfig> handlers = new ArrayList<>();
+        Map<String, Object> crop = new HashMap<>();
+        crop.put(ResizeHandler.PN_WIDTH, 100);
+        crop.put(ResizeHandler.PN_HEIGHT, 100);
+        handlers.add(new TransformationHandlerConfigImpl(CropHandler.RESOURCE_TYPE, crop));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        TransformationImpl transformation = new TransformationImpl(handlers, "test", mock(Resource.class));
+        transformer.transform(context.resourceResolver().getResource("/content/large.png"), transformation,
+                OutputFileFormat.PNG, baos);
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(100, result.getWidth());
+        assertEquals(100, result.getHeight());
+    }
+
+    private Resource createAnimation() throws IOException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("jcr:primaryType", "nt:file");
+        context.create().resource("/content/animation.gif", properties);
+        context.load().binaryResource(new ByteArrayInputStream(AnimatedGifEncoderTest.createAnimation(400, 200)),
+                "/content/animation.gif/jcr:content", "image/gif");
+        return context.resourceResolver().getResource("/content/animation.gif");
+    }
+
+    private int getFrameCount(byte[] gif) throws IOException {
+        try (ImageDecoder decoder = new ImageDecoder(new ByteArrayInputStream(gif))) {
+            return decoder.readFrames(Integer.MAX_VALUE, (frame, delay) -> {
+                assertEquals(100, frame.getWidth());
+                assertEquals(50, frame.getHeight());
+            });
+        }
+    }
+
+    @Test
+    public void testAnimated() throws IOException {
+        Resource resource = createAnimation();
+        TransformerImpl impl = (TransformerImpl) transformer;
+        TransformerImpl animatedTransformer = new TransformerImpl(impl.getThumbnailProviders(), thumbnailSupport,
+                impl.getHandlers(), impl.getEncoders(), metrics, ContextHelper.createTransformerConfig(true));
+
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 100);
+        size.put(ResizeHandler.PN_HEIGHT, 50);
+        TransformationImpl transformation = new TransformationImpl(
+                Collections.singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size)));
+
+        ByteArrayOutputStream gif = new ByteArrayOutputStream();
+        animatedTransformer.transform(resource, transformation, OutputFileFormat.GIF, gif);
+        assertEquals(3, getFrameCount(gif.toByteArray()));
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        animatedTransformer.transform(resource, transformation, OutputFileFormat.PNG, png);
+        assertEquals(100, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getWidth());
+    }
+
+    @Test
+    public void testFirstFrameOnly() throws IOException {
+        Resource resource = createAnimation();
+
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 100);
+        size.put(ResizeHandler.PN_HEIGHT, 50);
+        TransformationImpl transformation = new TransformationImpl(
+                Collections.singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size)));
+
+        ByteArrayOutputStream gif = new ByteArrayOutputStream();
+        transformer.transform(resource, transformation, OutputFileFormat.GIF, gif);
+        assertEquals(1, getFrameCount(gif.toByteArray()));
+    }
+
+    @Test
+    public void testEncoder() throws IOException {
+        context.currentResource("/content/apache/sling-apache-org/index/apache.png");
+        TransformerImpl impl = (TransformerImpl) transformer;
+        ImageEncoder encoder = mock(ImageEncoder.class);
+        when(encoder.supports(OutputFileFormat.JPEG)).thenReturn(true);
+        TransformerImpl encodingTransformer = new TransformerImpl(impl.getThumbnailProviders(), thumbnailSupport,
+                impl.getHandlers(), Collections.singletonList(encoder), metrics,
+                ContextHelper.createTransformerConfig());
+
+        Map<String, Object> size = new HashMap<>();
+        size.put(ResizeHandler.PN_WIDTH, 200);
+        size.put(ResizeHandler.PN_HEIGHT, 200);
+        Transformation transformation = new TransformationImpl(
+                Collections.singletonList(new TransformationHandlerConfigImpl(ResizeHandler.RESOURCE_TYPE, size)),
+                0.5);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        encodingTransformer.transform(context.currentResource(), transformation, OutputFileFormat.JPEG, baos);
+        verify(encoder).encode(any(BufferedImage.class), eq(OutputFileFormat.JPEG), eq(0.5),
+                any(OutputStream.class));
+
+        encodingTransformer.transform(context.currentResource(), transformation, OutputFileFormat.PNG, baos);
+        verify(encoder, never()).encode(any(BufferedImage.class), eq(OutputFileFormat.PNG), any(),
+                any(OutputStream.class));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(baos.toByteArray())));
+    }
+
     @Test(expected = BadRequestException.class)
     public void testNotFile() throws IOException {
         context.currentResource("/content/apache/sling-apache-org/index");
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.thumbnails.internal.encoders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.sling.thumbnails.OutputFileFormat;
+import org.junit.Test;
+
+public class ImageIOEncoderTest {
+
+    private final ImageIOEncoder encoder = new ImageIOEncoder();
+
+    @Test
+    public void testSupports() {
+        assertTrue(encoder.supports(OutputFileFormat.PNG));
+        assertTrue(encoder.supports(OutputFileFormat.JPEG));
+        assertTrue(encoder.supports(OutputFileFormat.GIF));
+    }
+
+    @Test
+    public void testQuality() throws IOException {
+        BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+        int low = encode(image, OutputFileFormat.JPEG, 0.1).length;
+        int high = encode(image, OutputFileFormat.JPEG, 1.0).length;
+        assertTrue("Expected " + low + " to be smaller than " + high, low < high);
+    }
+
+    @Test
+    public void testDefaultQuality() throws IOException {
+        BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(encode(image, OutputFileFormat.PNG, null)));
+        assertEquals(100, read.getWidth());
+        assertEquals(100, read.getHeight());
+    }
+
+    @Test
+    public void testAlphaToJpeg() throws IOException {
+        BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(encode(image, OutputFileFormat.JPEG, 0.8)));
+        assertEquals(100, read.getWidth());
+    }
+
+    private byte[] encode(BufferedImage image, OutputFileFormat format, Double quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, format, quality, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage createImage(int type) {
+        BufferedImage image = new BufferedImage(100, 100, type);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillRect(random.nextInt(100), random.nextInt(100), 10, 10);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+}
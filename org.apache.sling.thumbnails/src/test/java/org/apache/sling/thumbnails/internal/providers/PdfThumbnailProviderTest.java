@@ -16,12 +16,17 @@
  */
 package org.apache.sling.thumbnails.internal.providers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 
+import javax.imageio.ImageIO;
+
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.apache.sling.thumbnails.internal.ContextHelper;
@@ -51,7 +56,7 @@ public class PdfThumbnailProviderTest {
     @Test
     public void testContentTypes() throws IOException {
         log.info("testContentTypes");
-        PdfThumbnailProvider ptp = new PdfThumbnailProvider();
+        PdfThumbnailProvider ptp = new PdfThumbnailProvider(ContextHelper.createProviderOutputCache());
         assertFalse(ptp.applies(imageFile, "image/png"));
         assertTrue(ptp.applies(pdfFile, "application/pdf"));
     }
@@ -59,8 +64,18 @@ public class PdfThumbnailProviderTest {
     @Test
     public void testPDFThumbnailProvider() throws IOException {
         log.info("testPDFThumbnailProvider");
-        PdfThumbnailProvider ptp = new PdfThumbnailProvider();
+        PdfThumbnailProvider ptp = new PdfThumbnailProvider(ContextHelper.createProviderOutputCache());
         assertNotNull(ptp.getThumbnail(pdfFile));
     }
 
+    @Test
+    public void testReducedResolution() throws IOException {
+        PdfThumbnailProvider ptp = new PdfThumbnailProvider(ContextHelper.createProviderOutputCache());
+        BufferedImage full = ImageIO.read(ptp.getThumbnail(pdfFile));
+        BufferedImage reduced = ImageIO.read(ptp.getThumbnail(pdfFile,
+                size -> new Dimension(size.width / 4, size.height / 4)));
+        assertEquals(full.getWidth() / 4, reduced.getWidth(), 1);
+        assertEquals(full.getHeight() / 4, reduced.getHeight(), 1);
+    }
+
 }
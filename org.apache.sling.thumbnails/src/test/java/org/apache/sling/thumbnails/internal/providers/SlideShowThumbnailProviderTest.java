@@ -61,7 +61,7 @@ public class SlideShowThumbnailProviderTest {
         when(thumbnailSupport.getSupportedTypes()).thenReturn(Collections.singleton("sling:File"));
         when(thumbnailSupport.getMetaTypePropertyPath("sling:File")).thenReturn("jcr:content/jcr:mimeType");
 
-        provider = new SlideShowThumbnailProvider(null, thumbnailSupport);
+        provider = new SlideShowThumbnailProvider(null, thumbnailSupport, ContextHelper.createProviderOutputCache());
     }
 
     @Test
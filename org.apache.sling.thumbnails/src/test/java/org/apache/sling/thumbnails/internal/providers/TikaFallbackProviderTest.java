@@ -16,11 +16,25 @@
  */
 package org.apache.sling.thumbnails.internal.providers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
+import javax.imageio.ImageIO;
+
+import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.testing.mock.sling.junit.SlingContext;
 import org.apache.sling.thumbnails.internal.ContextHelper;
 import org.junit.Before;
@@ -50,7 +64,7 @@ public class TikaFallbackProviderTest {
     @Test
     public void testTikaProvider() throws IOException {
         log.info("testTikaProvider");
-        TikaFallbackProvider tfp = new TikaFallbackProvider();
+        TikaFallbackProvider tfp = ContextHelper.createTikaFallbackProvider();
         assertNotNull(tfp.getThumbnail(docxFile));
     }
 
@@ -58,8 +72,50 @@ public class TikaFallbackProviderTest {
     @Test
     public void testLargeFile() throws IOException {
         log.info("testLargeFile");
-        TikaFallbackProvider tfp = new TikaFallbackProvider();
+        TikaFallbackProvider tfp = ContextHelper.createTikaFallbackProvider();
         assertNotNull(tfp.getThumbnail(largeFile));
+        assertTrue(tfp.extractContents(largeFile).length() <= 4000);
+    }
+
+    @Test
+    public void testRender() throws IOException {
+        TikaFallbackProvider tfp = ContextHelper.createTikaFallbackProvider();
+        BufferedImage image = ImageIO.read(tfp.getThumbnail(docxFile));
+        assertEquals(TikaFallbackProvider.SIZE, image.getWidth());
+        assertEquals(TikaFallbackProvider.SIZE, image.getHeight());
+        boolean text = false;
+        for (int y = 0; y < image.getHeight() && !text; y++) {
+            for (int x = 0; x < image.getWidth() && !text; x++) {
+                text = image.getRGB(x, y) != image.getRGB(0, 0);
+            }
+        }
+        assertTrue("Expected text to be rendered", text);
+    }
+
+    @Test
+    public void testRenderEmpty() {
+        BufferedImage image = TikaFallbackProvider.render("");
+        assertEquals(TikaFallbackProvider.SIZE, image.getWidth());
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        byte[] text = StringUtils.repeat("Apache Sling Thumbnails\n", 1000).getBytes(StandardCharsets.UTF_8);
+        ResourceMetadata metadata = new ResourceMetadata();
+        metadata.setModificationTime(1000L);
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn("/content/file.txt");
+        when(resource.getResourceMetadata()).thenReturn(metadata);
+        when(resource.adaptTo(InputStream.class)).thenAnswer(inv -> new ByteArrayInputStream(text));
+
+        TikaFallbackProvider tfp = ContextHelper.createTikaFallbackProvider();
+        assertNotNull(tfp.getThumbnail(resource));
+        assertNotNull(tfp.getThumbnail(resource));
+        verify(resource, times(1)).adaptTo(InputStream.class);
+
+        metadata.setModificationTime(2000L);
+        assertNotNull(tfp.getThumbnail(resource));
+        verify(resource, times(2)).adaptTo(InputStream.class);
     }
 
 }
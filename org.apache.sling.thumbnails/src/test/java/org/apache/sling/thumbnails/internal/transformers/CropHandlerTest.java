@@ -16,8 +16,12 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -96,4 +100,25 @@ public class CropHandlerTest {
         cropper.handle(inputStream, outputStream, config);
     }
 
+    @Test
+    public void testSourceRegion() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(CropHandler.PN_POSITION, "top_left");
+        properties.put(ResizeHandler.PN_HEIGHT, 100);
+        properties.put(ResizeHandler.PN_WIDTH, 100);
+        TransformationHandlerConfig config = new TransformationHandlerConfigImpl("/conf", properties);
+
+        Dimension sourceSize = new Dimension(4000, 2000);
+        assertEquals(new Dimension(100, 100), cropper.getTargetSize(sourceSize, config));
+        assertEquals(new Rectangle(0, 0, 2000, 2000), cropper.getSourceRegion(sourceSize, config));
+
+        properties.put(CropHandler.PN_POSITION, "center");
+        config = new TransformationHandlerConfigImpl("/conf", properties);
+        assertEquals(new Rectangle(1000, 0, 2000, 2000), cropper.getSourceRegion(sourceSize, config));
+
+        properties.put(CropHandler.PN_POSITION, "centerz");
+        config = new TransformationHandlerConfigImpl("/conf", properties);
+        assertNull(cropper.getSourceRegion(sourceSize, config));
+    }
+
 }
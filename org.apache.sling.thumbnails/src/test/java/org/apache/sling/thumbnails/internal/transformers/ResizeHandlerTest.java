@@ -16,15 +16,19 @@
  */
 package org.apache.sling.thumbnails.internal.transformers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+
 import org.apache.sling.thumbnails.internal.models.TransformationHandlerConfigImpl;
 import org.apache.sling.thumbnails.BadRequestException;
 import org.apache.sling.thumbnails.TransformationHandlerConfig;
@@ -56,6 +60,20 @@ public class ResizeHandlerTest {
         assertNotEquals(0, outputStream.toByteArray().length);
     }
 
+    @Test
+    public void testResizeImage() throws IOException {
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ResizeHandler.PN_WIDTH, 200);
+        properties.put(ResizeHandler.PN_HEIGHT, 100);
+        properties.put(ResizeHandler.PN_KEEP_ASPECT_RATIO, false);
+
+        TransformationHandlerConfig config = new TransformationHandlerConfigImpl("/conf", properties);
+        BufferedImage resized = sizer.handle(ImageIO.read(inputStream), config);
+        assertEquals(200, resized.getWidth());
+        assertEquals(100, resized.getHeight());
+    }
+
     @Test
     public void testInvalidWidth() throws IOException {
         Map<String, Object> properties = new HashMap<>();
@@ -19,6 +19,8 @@ package org.apache.sling.thumbnails.internal.transformers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -101,4 +103,20 @@ public class ScaleHandlerTest {
         TransformationHandlerConfig config = new TransformationHandlerConfigImpl("/conf", properties);
         scaler.handle(inputStream, outputStream, config);
     }
+
+    @Test
+    public void testScaleReducedImage() throws IOException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ScaleHandler.PN_BOTH, 0.1);
+        TransformationHandlerConfig config = new TransformationHandlerConfigImpl("/conf", properties);
+
+        Dimension sourceSize = new Dimension(4000, 2000);
+        assertEquals(new Dimension(400, 200), scaler.getTargetSize(sourceSize, config));
+
+        BufferedImage reduced = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        BufferedImage result = scaler.handle(reduced, sourceSize, config);
+        assertEquals(400, result.getWidth());
+        assertEquals(200, result.getHeight());
+    }
+
 }